@@ -1,15 +1,19 @@
 package org.gitlab4j.simplecr;
 
 import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.service.WebHookReplayRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.config.annotation.PathMatchConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.util.UrlPathHelper;
 
 @SpringBootApplication
 @EnableConfigurationProperties(SimpleCrConfiguration.class)
+@EnableScheduling
 public class SimpleCrApplication implements WebMvcConfigurer {
     
 	public static void main(String[] args) {
@@ -17,7 +21,12 @@ public class SimpleCrApplication implements WebMvcConfigurer {
 	    // Set up the embedded Tomcat to allow for encoded slashes in the URLs
 	    System.setProperty("org.apache.tomcat.util.buf.UDecoder.ALLOW_ENCODED_SLASH", "true");
 
-		SpringApplication.run(SimpleCrApplication.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(SimpleCrApplication.class, args);
+
+		// A command line replay exits once it is done, with the exit code reported by the WebHookReplayRunner
+		if (context.getBean(WebHookReplayRunner.class).isReplayed()) {
+		    System.exit(SpringApplication.exit(context));
+		}
 	}
 
     /**
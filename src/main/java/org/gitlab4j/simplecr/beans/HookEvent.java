@@ -0,0 +1,72 @@
+package org.gitlab4j.simplecr.beans;
+
+/**
+ * A compact webhook event holding only the fields Simple-CR acts on.
+ */
+public abstract class HookEvent {
+
+    public static final String PUSH = "push";
+    public static final String MERGE_REQUEST = "merge_request";
+
+    private String secretToken;
+
+    private String projectName;
+    private String projectNamespace;
+    private String projectPathWithNamespace;
+    private String projectWebUrl;
+
+    /**
+     * @return the object_kind of the event
+     */
+    public abstract String getObjectKind();
+
+    /**
+     * @return the ID of the project the event is for
+     */
+    public abstract Integer getProjectId();
+
+    /**
+     * @return the name of the branch the event is for
+     */
+    public abstract String getBranch();
+
+    public String getSecretToken() {
+        return secretToken;
+    }
+
+    public void setSecretToken(String secretToken) {
+        this.secretToken = secretToken;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    public String getProjectNamespace() {
+        return projectNamespace;
+    }
+
+    public void setProjectNamespace(String projectNamespace) {
+        this.projectNamespace = projectNamespace;
+    }
+
+    public String getProjectPathWithNamespace() {
+        return projectPathWithNamespace;
+    }
+
+    public void setProjectPathWithNamespace(String projectPathWithNamespace) {
+        this.projectPathWithNamespace = projectPathWithNamespace;
+    }
+
+    public String getProjectWebUrl() {
+        return projectWebUrl;
+    }
+
+    public void setProjectWebUrl(String projectWebUrl) {
+        this.projectWebUrl = projectWebUrl;
+    }
+}
@@ -0,0 +1,187 @@
+package org.gitlab4j.simplecr.beans;
+
+import java.util.Date;
+
+import org.gitlab4j.api.models.User;
+import org.gitlab4j.api.webhook.EventProject;
+import org.gitlab4j.api.webhook.MergeRequestEvent;
+import org.gitlab4j.api.webhook.MergeRequestEvent.ObjectAttributes;
+
+/**
+ * A compact merge request event.
+ */
+public class MergeRequestHookEvent extends HookEvent {
+
+    private Integer mergeRequestId;
+    private Integer iid;
+    private Integer targetProjectId;
+    private String sourceBranch;
+    private Integer authorId;
+    private String state;
+    private String mergeStatus;
+    private Date updatedAt;
+
+    private Integer userId;
+    private String userName;
+    private String userUsername;
+    private String userEmail;
+
+    /**
+     * Creates a MergeRequestHookEvent from a full gitlab4j MergeRequestEvent.
+     *
+     * @param mergeRequestEvent the MergeRequestEvent to copy the fields from
+     * @return a MergeRequestHookEvent holding the fields of the MergeRequestEvent that Simple-CR acts on
+     */
+    public static MergeRequestHookEvent from(MergeRequestEvent mergeRequestEvent) {
+
+        MergeRequestHookEvent mergeRequestHookEvent = new MergeRequestHookEvent();
+        mergeRequestHookEvent.setSecretToken(mergeRequestEvent.getRequestSecretToken());
+
+        ObjectAttributes attributes = mergeRequestEvent.getObjectAttributes();
+        if (attributes != null) {
+            mergeRequestHookEvent.setMergeRequestId(attributes.getId());
+            mergeRequestHookEvent.setIid(attributes.getIid());
+            mergeRequestHookEvent.setTargetProjectId(attributes.getTargetProjectId());
+            mergeRequestHookEvent.setSourceBranch(attributes.getSourceBranch());
+            mergeRequestHookEvent.setAuthorId(attributes.getAuthorId());
+            mergeRequestHookEvent.setState(attributes.getState());
+            mergeRequestHookEvent.setMergeStatus(attributes.getMergeStatus());
+            mergeRequestHookEvent.setUpdatedAt(attributes.getUpdatedAt());
+        }
+
+        User user = mergeRequestEvent.getUser();
+        if (user != null) {
+            mergeRequestHookEvent.setUserId(user.getId());
+            mergeRequestHookEvent.setUserName(user.getName());
+            mergeRequestHookEvent.setUserUsername(user.getUsername());
+            mergeRequestHookEvent.setUserEmail(user.getEmail());
+        }
+
+        EventProject project = mergeRequestEvent.getProject();
+        if (project != null) {
+            mergeRequestHookEvent.setProjectName(project.getName());
+            mergeRequestHookEvent.setProjectNamespace(project.getNamespace());
+            mergeRequestHookEvent.setProjectPathWithNamespace(project.getPathWithNamespace());
+            mergeRequestHookEvent.setProjectWebUrl(project.getWebUrl());
+        }
+
+        return (mergeRequestHookEvent);
+    }
+
+    @Override
+    public String getObjectKind() {
+        return (MERGE_REQUEST);
+    }
+
+    /**
+     * @return the target project ID of the merge request
+     */
+    @Override
+    public Integer getProjectId() {
+        return (targetProjectId);
+    }
+
+    /**
+     * @return the source branch of the merge request
+     */
+    @Override
+    public String getBranch() {
+        return (sourceBranch);
+    }
+
+    public Integer getMergeRequestId() {
+        return mergeRequestId;
+    }
+
+    public void setMergeRequestId(Integer mergeRequestId) {
+        this.mergeRequestId = mergeRequestId;
+    }
+
+    public Integer getIid() {
+        return iid;
+    }
+
+    public void setIid(Integer iid) {
+        this.iid = iid;
+    }
+
+    public Integer getTargetProjectId() {
+        return targetProjectId;
+    }
+
+    public void setTargetProjectId(Integer targetProjectId) {
+        this.targetProjectId = targetProjectId;
+    }
+
+    public String getSourceBranch() {
+        return sourceBranch;
+    }
+
+    public void setSourceBranch(String sourceBranch) {
+        this.sourceBranch = sourceBranch;
+    }
+
+    public Integer getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(Integer authorId) {
+        this.authorId = authorId;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getMergeStatus() {
+        return mergeStatus;
+    }
+
+    public void setMergeStatus(String mergeStatus) {
+        this.mergeStatus = mergeStatus;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public String getUserUsername() {
+        return userUsername;
+    }
+
+    public void setUserUsername(String userUsername) {
+        this.userUsername = userUsername;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+}
@@ -0,0 +1,129 @@
+package org.gitlab4j.simplecr.beans;
+
+import org.gitlab4j.api.webhook.EventProject;
+import org.gitlab4j.api.webhook.PushEvent;
+
+/**
+ * A compact push event.
+ */
+public class PushHookEvent extends HookEvent {
+
+    private static final String REFS_HEADS = "refs/heads/";
+
+    private Integer projectId;
+    private Integer userId;
+    private String userName;
+    private String userUsername;
+    private String userEmail;
+    private String ref;
+    private String before;
+    private String after;
+
+    /**
+     * Creates a PushHookEvent from a full gitlab4j PushEvent.
+     *
+     * @param pushEvent the PushEvent to copy the fields from
+     * @return a PushHookEvent holding the fields of the PushEvent that Simple-CR acts on
+     */
+    public static PushHookEvent from(PushEvent pushEvent) {
+
+        PushHookEvent pushHookEvent = new PushHookEvent();
+        pushHookEvent.setSecretToken(pushEvent.getRequestSecretToken());
+        pushHookEvent.setProjectId(pushEvent.getProjectId());
+        pushHookEvent.setUserId(pushEvent.getUserId());
+        pushHookEvent.setUserName(pushEvent.getUserName());
+        pushHookEvent.setUserUsername(pushEvent.getUserUsername());
+        pushHookEvent.setUserEmail(pushEvent.getUserEmail());
+        pushHookEvent.setRef(pushEvent.getRef());
+        pushHookEvent.setBefore(pushEvent.getBefore());
+        pushHookEvent.setAfter(pushEvent.getAfter());
+
+        EventProject project = pushEvent.getProject();
+        if (project != null) {
+            pushHookEvent.setProjectName(project.getName());
+            pushHookEvent.setProjectNamespace(project.getNamespace());
+            pushHookEvent.setProjectPathWithNamespace(project.getPathWithNamespace());
+            pushHookEvent.setProjectWebUrl(project.getWebUrl());
+        }
+
+        return (pushHookEvent);
+    }
+
+    @Override
+    public String getObjectKind() {
+        return (PUSH);
+    }
+
+    @Override
+    public Integer getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Integer projectId) {
+        this.projectId = projectId;
+    }
+
+    /**
+     * @return the branch name from the ref, or null if the ref is not for a branch
+     */
+    @Override
+    public String getBranch() {
+        return (ref != null && ref.startsWith(REFS_HEADS) ? ref.substring(REFS_HEADS.length()) : null);
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public String getUserUsername() {
+        return userUsername;
+    }
+
+    public void setUserUsername(String userUsername) {
+        this.userUsername = userUsername;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public void setRef(String ref) {
+        this.ref = ref;
+    }
+
+    public String getBefore() {
+        return before;
+    }
+
+    public void setBefore(String before) {
+        this.before = before;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
+}
@@ -0,0 +1,142 @@
+package org.gitlab4j.simplecr.beans;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The report of a bulk webhook replay, the outcome of each event and the throughput of the replay.
+ */
+public class ReplayReport {
+
+    private String mode;
+    private int numLines;
+    private int numEvents;
+    private long durationMs;
+    private double eventsPerSecond;
+    private Map<String, Integer> outcomeCounts;
+    private List<EventOutcome> outcomes;
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public int getNumLines() {
+        return numLines;
+    }
+
+    public void setNumLines(int numLines) {
+        this.numLines = numLines;
+    }
+
+    public int getNumEvents() {
+        return numEvents;
+    }
+
+    public void setNumEvents(int numEvents) {
+        this.numEvents = numEvents;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    public void setEventsPerSecond(double eventsPerSecond) {
+        this.eventsPerSecond = eventsPerSecond;
+    }
+
+    public Map<String, Integer> getOutcomeCounts() {
+        return outcomeCounts;
+    }
+
+    public void setOutcomeCounts(Map<String, Integer> outcomeCounts) {
+        this.outcomeCounts = outcomeCounts;
+    }
+
+    public List<EventOutcome> getOutcomes() {
+        return outcomes;
+    }
+
+    public void setOutcomes(List<EventOutcome> outcomes) {
+        this.outcomes = outcomes;
+    }
+
+    /**
+     * The outcome of replaying a single line of the input.
+     */
+    public static class EventOutcome {
+
+        private int line;
+        private String objectKind;
+        private Integer projectId;
+        private String branch;
+        private String outcome;
+        private String error;
+
+        public EventOutcome() {
+        }
+
+        public EventOutcome(int line) {
+            this.line = line;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public void setLine(int line) {
+            this.line = line;
+        }
+
+        public String getObjectKind() {
+            return objectKind;
+        }
+
+        public void setObjectKind(String objectKind) {
+            this.objectKind = objectKind;
+        }
+
+        public Integer getProjectId() {
+            return projectId;
+        }
+
+        public void setProjectId(Integer projectId) {
+            this.projectId = projectId;
+        }
+
+        public String getBranch() {
+            return branch;
+        }
+
+        public void setBranch(String branch) {
+            this.branch = branch;
+        }
+
+        public String getOutcome() {
+            return outcome;
+        }
+
+        public void setOutcome(String outcome) {
+            this.outcome = outcome;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+}
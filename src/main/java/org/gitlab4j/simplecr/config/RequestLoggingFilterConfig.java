@@ -1,20 +1,20 @@
 package org.gitlab4j.simplecr.config;
 
+import org.gitlab4j.simplecr.filter.RequestEventLoggingFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.filter.CommonsRequestLoggingFilter;
+import org.springframework.core.Ordered;
 
 @Configuration
 public class RequestLoggingFilterConfig {
 
     @Bean
-    public CommonsRequestLoggingFilter logFilter() {
-        CommonsRequestLoggingFilter filter = new CommonsRequestLoggingFilter();
-        filter.setIncludeQueryString(true);
-        filter.setIncludePayload(true);
-        filter.setMaxPayloadLength(10000);
-        filter.setIncludeHeaders(false);
-        filter.setAfterMessagePrefix("REQUEST DATA : ");
-        return filter;
+    public FilterRegistrationBean<RequestEventLoggingFilter> logFilter(SimpleCrConfiguration appConfig) {
+        FilterRegistrationBean<RequestEventLoggingFilter> registration =
+                new FilterRegistrationBean<>(new RequestEventLoggingFilter(appConfig));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return (registration);
     }
 }
\ No newline at end of file
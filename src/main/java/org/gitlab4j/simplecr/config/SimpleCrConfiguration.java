@@ -35,6 +35,95 @@ public class SimpleCrConfiguration {
 
     private List<String> defaultReviewers;
 
+    // Webhook intake queue settings
+    private boolean webhookQueueEnabled = true;
+    private int webhookLanes = Runtime.getRuntime().availableProcessors();
+    private int webhookLaneQueueSize = 100;
+    private long webhookLaneLatencyThreshold = 10000;
+    private int webhookRetryLimit = 3;
+
+    // Webhook de-duplication settings
+    private long webhookDeduplicationTtl = 24 * 60 * 60 * 1000L;
+    private int webhookDeduplicationMaxEntries = 10000;
+
+    // The number of milliseconds to collect pushes to the same branch for, 0 to disable
+    private long pushCoalescingWindow = 5000;
+
+    // Request logging settings, the payload is logged for failed and slow requests and for a sample of the others
+    private double requestLogSampleRate = 0.01;
+    private long requestLogSlowThreshold = 2000;
+    private int requestLogMaxPayloadLength = 10000;
+
+    // Admission control settings, the reserved webhook permits are only given to merge request events
+    // and the Retry-After is in seconds
+    private int webhookMaxConcurrent = 8;
+    private int webhookMergeRequestReserved = 2;
+    private int userMaxConcurrent = 8;
+    private long admissionRetryAfter = 5;
+
+    // GitLab project cache settings
+    private long projectCacheTtl = 10 * 60 * 1000L;
+    private int projectCacheMaxSize = 1000;
+
+    // GitLab user cache settings, missing and blocked users are cached for the negative TTL
+    private long userCacheTtl = 30 * 60 * 1000L;
+    private long userCacheNegativeTtl = 5 * 60 * 1000L;
+    private int userCacheMaxSize = 5000;
+
+    // Reviewer resolution settings, the resolved reviewers are memoized for the reviewer cache TTL
+    private int reviewerResolutionConcurrency = 8;
+    private int reviewerPageSize = 100;
+    private long reviewerCacheTtl = 60 * 1000L;
+    private int reviewerCacheMaxSize = 1000;
+
+    // The maximum number of steps a single merge spec regex match may take before it is abandoned
+    private long regexStepBudget = 1000000;
+
+    // GitLab API client settings, the concurrency limit adapts between min and max, the rate is in calls per second, 0 for none
+    private int gitLabMaxConcurrent = 16;
+    private int gitLabMinConcurrent = 2;
+    private double gitLabRateLimit = 10.0;
+    private int gitLabRateBurst = 20;
+    private long gitLabMaxQueueWait = 30000;
+    private long gitLabSlowCallThreshold = 10000;
+    private long gitLabThrottleBackoff = 5000;
+    private int gitLabMaxRetries = 2;
+
+    // Circuit breaker settings, a breaker opens after the threshold of consecutive failures and probes again after the open duration
+    private int gitLabBreakerFailureThreshold = 5;
+    private long gitLabBreakerOpenDuration = 30000;
+    private int smtpBreakerFailureThreshold = 3;
+    private long smtpBreakerOpenDuration = 60000;
+    private int breakerHalfOpenProbes = 1;
+    private int smtpMaxConcurrent = 4;
+    private long smtpBulkheadTimeout = 10000;
+
+    // I/O executor settings, /load issues its lookups concurrently on it and waits up to the call timeout and load deadline
+    private int ioExecutorThreads = 16;
+    private int ioExecutorQueueSize = 64;
+    private long ioCallTimeout = 5000;
+    private boolean loadFanOutEnabled = true;
+    private long loadDeadline = 10000;
+
+    // The time budget for the concurrent remote (GitLab API) stages of the push pipeline
+    private long pushRemoteStageBudget = 15000;
+
+    // Branch index settings, an index is rescanned once it is older than the max age
+    private int branchIndexPageSize = 100;
+    private long branchIndexMaxAge = 24 * 60 * 60 * 1000L;
+
+    // Review snapshot settings, a snapshot older than the revalidate interval is refreshed in the background when served
+    private boolean reviewSnapshotEnabled = true;
+    private long reviewSnapshotRevalidateInterval = 5 * 60 * 1000L;
+    private long reviewSnapshotTtl = 30 * 24 * 60 * 60 * 1000L;
+
+    // Email outbox settings, a failed send is retried with an exponential backoff until it is dead-lettered
+    private int emailOutboxConcurrency = 4;
+    private int emailOutboxBatchSize = 50;
+    private int emailOutboxMaxAttempts = 8;
+    private long emailOutboxBackoff = 30 * 1000L;
+    private long emailOutboxMaxBackoff = 60 * 60 * 1000L;
+
     public String getGitLabApiUrl() {
         return (gitLabApiUrl);
     }
@@ -79,6 +168,230 @@ public class SimpleCrConfiguration {
         return (dbName);
     }
 
+    public boolean getWebhookQueueEnabled() {
+        return (webhookQueueEnabled);
+    }
+
+    public int getWebhookLanes() {
+        return (webhookLanes);
+    }
+
+    public int getWebhookLaneQueueSize() {
+        return (webhookLaneQueueSize);
+    }
+
+    public long getWebhookLaneLatencyThreshold() {
+        return (webhookLaneLatencyThreshold);
+    }
+
+    public int getWebhookRetryLimit() {
+        return (webhookRetryLimit);
+    }
+
+    public long getWebhookDeduplicationTtl() {
+        return (webhookDeduplicationTtl);
+    }
+
+    public int getWebhookDeduplicationMaxEntries() {
+        return (webhookDeduplicationMaxEntries);
+    }
+
+    public long getPushCoalescingWindow() {
+        return (pushCoalescingWindow);
+    }
+
+    public double getRequestLogSampleRate() {
+        return (requestLogSampleRate);
+    }
+
+    public long getRequestLogSlowThreshold() {
+        return (requestLogSlowThreshold);
+    }
+
+    public int getRequestLogMaxPayloadLength() {
+        return (requestLogMaxPayloadLength);
+    }
+
+    public int getWebhookMaxConcurrent() {
+        return (webhookMaxConcurrent);
+    }
+
+    public int getWebhookMergeRequestReserved() {
+        return (webhookMergeRequestReserved);
+    }
+
+    public int getUserMaxConcurrent() {
+        return (userMaxConcurrent);
+    }
+
+    public long getAdmissionRetryAfter() {
+        return (admissionRetryAfter);
+    }
+
+    public long getProjectCacheTtl() {
+        return (projectCacheTtl);
+    }
+
+    public int getProjectCacheMaxSize() {
+        return (projectCacheMaxSize);
+    }
+
+    public long getUserCacheTtl() {
+        return (userCacheTtl);
+    }
+
+    public long getUserCacheNegativeTtl() {
+        return (userCacheNegativeTtl);
+    }
+
+    public int getUserCacheMaxSize() {
+        return (userCacheMaxSize);
+    }
+
+    public int getReviewerResolutionConcurrency() {
+        return (reviewerResolutionConcurrency);
+    }
+
+    public int getReviewerPageSize() {
+        return (reviewerPageSize);
+    }
+
+    public long getReviewerCacheTtl() {
+        return (reviewerCacheTtl);
+    }
+
+    public int getReviewerCacheMaxSize() {
+        return (reviewerCacheMaxSize);
+    }
+
+    public long getRegexStepBudget() {
+        return (regexStepBudget);
+    }
+
+    public int getGitLabMaxConcurrent() {
+        return (gitLabMaxConcurrent);
+    }
+
+    public int getGitLabMinConcurrent() {
+        return (gitLabMinConcurrent);
+    }
+
+    public double getGitLabRateLimit() {
+        return (gitLabRateLimit);
+    }
+
+    public int getGitLabRateBurst() {
+        return (gitLabRateBurst);
+    }
+
+    public long getGitLabMaxQueueWait() {
+        return (gitLabMaxQueueWait);
+    }
+
+    public long getGitLabSlowCallThreshold() {
+        return (gitLabSlowCallThreshold);
+    }
+
+    public long getGitLabThrottleBackoff() {
+        return (gitLabThrottleBackoff);
+    }
+
+    public int getGitLabMaxRetries() {
+        return (gitLabMaxRetries);
+    }
+
+    public int getGitLabBreakerFailureThreshold() {
+        return (gitLabBreakerFailureThreshold);
+    }
+
+    public long getGitLabBreakerOpenDuration() {
+        return (gitLabBreakerOpenDuration);
+    }
+
+    public int getSmtpBreakerFailureThreshold() {
+        return (smtpBreakerFailureThreshold);
+    }
+
+    public long getSmtpBreakerOpenDuration() {
+        return (smtpBreakerOpenDuration);
+    }
+
+    public int getBreakerHalfOpenProbes() {
+        return (breakerHalfOpenProbes);
+    }
+
+    public int getSmtpMaxConcurrent() {
+        return (smtpMaxConcurrent);
+    }
+
+    public long getSmtpBulkheadTimeout() {
+        return (smtpBulkheadTimeout);
+    }
+
+    public int getIoExecutorThreads() {
+        return (ioExecutorThreads);
+    }
+
+    public int getIoExecutorQueueSize() {
+        return (ioExecutorQueueSize);
+    }
+
+    public long getIoCallTimeout() {
+        return (ioCallTimeout);
+    }
+
+    public boolean getLoadFanOutEnabled() {
+        return (loadFanOutEnabled);
+    }
+
+    public long getLoadDeadline() {
+        return (loadDeadline);
+    }
+
+    public long getPushRemoteStageBudget() {
+        return (pushRemoteStageBudget);
+    }
+
+    public int getBranchIndexPageSize() {
+        return (branchIndexPageSize);
+    }
+
+    public long getBranchIndexMaxAge() {
+        return (branchIndexMaxAge);
+    }
+
+    public boolean getReviewSnapshotEnabled() {
+        return (reviewSnapshotEnabled);
+    }
+
+    public long getReviewSnapshotRevalidateInterval() {
+        return (reviewSnapshotRevalidateInterval);
+    }
+
+    public long getReviewSnapshotTtl() {
+        return (reviewSnapshotTtl);
+    }
+
+    public int getEmailOutboxConcurrency() {
+        return (emailOutboxConcurrency);
+    }
+
+    public int getEmailOutboxBatchSize() {
+        return (emailOutboxBatchSize);
+    }
+
+    public int getEmailOutboxMaxAttempts() {
+        return (emailOutboxMaxAttempts);
+    }
+
+    public long getEmailOutboxBackoff() {
+        return (emailOutboxBackoff);
+    }
+
+    public long getEmailOutboxMaxBackoff() {
+        return (emailOutboxMaxBackoff);
+    }
+
     public void setGitLabApiUrl(String gitLabApiUrl) {
         this.gitLabApiUrl = gitLabApiUrl;
     }
@@ -123,6 +436,230 @@ public class SimpleCrConfiguration {
         this.dbName = dbName;
     }
 
+    public void setWebhookQueueEnabled(boolean webhookQueueEnabled) {
+        this.webhookQueueEnabled = webhookQueueEnabled;
+    }
+
+    public void setWebhookLanes(int webhookLanes) {
+        this.webhookLanes = webhookLanes;
+    }
+
+    public void setWebhookLaneQueueSize(int webhookLaneQueueSize) {
+        this.webhookLaneQueueSize = webhookLaneQueueSize;
+    }
+
+    public void setWebhookLaneLatencyThreshold(long webhookLaneLatencyThreshold) {
+        this.webhookLaneLatencyThreshold = webhookLaneLatencyThreshold;
+    }
+
+    public void setWebhookRetryLimit(int webhookRetryLimit) {
+        this.webhookRetryLimit = webhookRetryLimit;
+    }
+
+    public void setWebhookDeduplicationTtl(long webhookDeduplicationTtl) {
+        this.webhookDeduplicationTtl = webhookDeduplicationTtl;
+    }
+
+    public void setWebhookDeduplicationMaxEntries(int webhookDeduplicationMaxEntries) {
+        this.webhookDeduplicationMaxEntries = webhookDeduplicationMaxEntries;
+    }
+
+    public void setPushCoalescingWindow(long pushCoalescingWindow) {
+        this.pushCoalescingWindow = pushCoalescingWindow;
+    }
+
+    public void setRequestLogSampleRate(double requestLogSampleRate) {
+        this.requestLogSampleRate = requestLogSampleRate;
+    }
+
+    public void setRequestLogSlowThreshold(long requestLogSlowThreshold) {
+        this.requestLogSlowThreshold = requestLogSlowThreshold;
+    }
+
+    public void setRequestLogMaxPayloadLength(int requestLogMaxPayloadLength) {
+        this.requestLogMaxPayloadLength = requestLogMaxPayloadLength;
+    }
+
+    public void setWebhookMaxConcurrent(int webhookMaxConcurrent) {
+        this.webhookMaxConcurrent = webhookMaxConcurrent;
+    }
+
+    public void setWebhookMergeRequestReserved(int webhookMergeRequestReserved) {
+        this.webhookMergeRequestReserved = webhookMergeRequestReserved;
+    }
+
+    public void setUserMaxConcurrent(int userMaxConcurrent) {
+        this.userMaxConcurrent = userMaxConcurrent;
+    }
+
+    public void setAdmissionRetryAfter(long admissionRetryAfter) {
+        this.admissionRetryAfter = admissionRetryAfter;
+    }
+
+    public void setProjectCacheTtl(long projectCacheTtl) {
+        this.projectCacheTtl = projectCacheTtl;
+    }
+
+    public void setProjectCacheMaxSize(int projectCacheMaxSize) {
+        this.projectCacheMaxSize = projectCacheMaxSize;
+    }
+
+    public void setUserCacheTtl(long userCacheTtl) {
+        this.userCacheTtl = userCacheTtl;
+    }
+
+    public void setUserCacheNegativeTtl(long userCacheNegativeTtl) {
+        this.userCacheNegativeTtl = userCacheNegativeTtl;
+    }
+
+    public void setUserCacheMaxSize(int userCacheMaxSize) {
+        this.userCacheMaxSize = userCacheMaxSize;
+    }
+
+    public void setReviewerResolutionConcurrency(int reviewerResolutionConcurrency) {
+        this.reviewerResolutionConcurrency = reviewerResolutionConcurrency;
+    }
+
+    public void setReviewerPageSize(int reviewerPageSize) {
+        this.reviewerPageSize = reviewerPageSize;
+    }
+
+    public void setReviewerCacheTtl(long reviewerCacheTtl) {
+        this.reviewerCacheTtl = reviewerCacheTtl;
+    }
+
+    public void setReviewerCacheMaxSize(int reviewerCacheMaxSize) {
+        this.reviewerCacheMaxSize = reviewerCacheMaxSize;
+    }
+
+    public void setRegexStepBudget(long regexStepBudget) {
+        this.regexStepBudget = regexStepBudget;
+    }
+
+    public void setGitLabMaxConcurrent(int gitLabMaxConcurrent) {
+        this.gitLabMaxConcurrent = gitLabMaxConcurrent;
+    }
+
+    public void setGitLabMinConcurrent(int gitLabMinConcurrent) {
+        this.gitLabMinConcurrent = gitLabMinConcurrent;
+    }
+
+    public void setGitLabRateLimit(double gitLabRateLimit) {
+        this.gitLabRateLimit = gitLabRateLimit;
+    }
+
+    public void setGitLabRateBurst(int gitLabRateBurst) {
+        this.gitLabRateBurst = gitLabRateBurst;
+    }
+
+    public void setGitLabMaxQueueWait(long gitLabMaxQueueWait) {
+        this.gitLabMaxQueueWait = gitLabMaxQueueWait;
+    }
+
+    public void setGitLabSlowCallThreshold(long gitLabSlowCallThreshold) {
+        this.gitLabSlowCallThreshold = gitLabSlowCallThreshold;
+    }
+
+    public void setGitLabThrottleBackoff(long gitLabThrottleBackoff) {
+        this.gitLabThrottleBackoff = gitLabThrottleBackoff;
+    }
+
+    public void setGitLabMaxRetries(int gitLabMaxRetries) {
+        this.gitLabMaxRetries = gitLabMaxRetries;
+    }
+
+    public void setGitLabBreakerFailureThreshold(int gitLabBreakerFailureThreshold) {
+        this.gitLabBreakerFailureThreshold = gitLabBreakerFailureThreshold;
+    }
+
+    public void setGitLabBreakerOpenDuration(long gitLabBreakerOpenDuration) {
+        this.gitLabBreakerOpenDuration = gitLabBreakerOpenDuration;
+    }
+
+    public void setSmtpBreakerFailureThreshold(int smtpBreakerFailureThreshold) {
+        this.smtpBreakerFailureThreshold = smtpBreakerFailureThreshold;
+    }
+
+    public void setSmtpBreakerOpenDuration(long smtpBreakerOpenDuration) {
+        this.smtpBreakerOpenDuration = smtpBreakerOpenDuration;
+    }
+
+    public void setBreakerHalfOpenProbes(int breakerHalfOpenProbes) {
+        this.breakerHalfOpenProbes = breakerHalfOpenProbes;
+    }
+
+    public void setSmtpMaxConcurrent(int smtpMaxConcurrent) {
+        this.smtpMaxConcurrent = smtpMaxConcurrent;
+    }
+
+    public void setSmtpBulkheadTimeout(long smtpBulkheadTimeout) {
+        this.smtpBulkheadTimeout = smtpBulkheadTimeout;
+    }
+
+    public void setIoExecutorThreads(int ioExecutorThreads) {
+        this.ioExecutorThreads = ioExecutorThreads;
+    }
+
+    public void setIoExecutorQueueSize(int ioExecutorQueueSize) {
+        this.ioExecutorQueueSize = ioExecutorQueueSize;
+    }
+
+    public void setIoCallTimeout(long ioCallTimeout) {
+        this.ioCallTimeout = ioCallTimeout;
+    }
+
+    public void setLoadFanOutEnabled(boolean loadFanOutEnabled) {
+        this.loadFanOutEnabled = loadFanOutEnabled;
+    }
+
+    public void setLoadDeadline(long loadDeadline) {
+        this.loadDeadline = loadDeadline;
+    }
+
+    public void setPushRemoteStageBudget(long pushRemoteStageBudget) {
+        this.pushRemoteStageBudget = pushRemoteStageBudget;
+    }
+
+    public void setBranchIndexPageSize(int branchIndexPageSize) {
+        this.branchIndexPageSize = branchIndexPageSize;
+    }
+
+    public void setBranchIndexMaxAge(long branchIndexMaxAge) {
+        this.branchIndexMaxAge = branchIndexMaxAge;
+    }
+
+    public void setReviewSnapshotEnabled(boolean reviewSnapshotEnabled) {
+        this.reviewSnapshotEnabled = reviewSnapshotEnabled;
+    }
+
+    public void setReviewSnapshotRevalidateInterval(long reviewSnapshotRevalidateInterval) {
+        this.reviewSnapshotRevalidateInterval = reviewSnapshotRevalidateInterval;
+    }
+
+    public void setReviewSnapshotTtl(long reviewSnapshotTtl) {
+        this.reviewSnapshotTtl = reviewSnapshotTtl;
+    }
+
+    public void setEmailOutboxConcurrency(int emailOutboxConcurrency) {
+        this.emailOutboxConcurrency = emailOutboxConcurrency;
+    }
+
+    public void setEmailOutboxBatchSize(int emailOutboxBatchSize) {
+        this.emailOutboxBatchSize = emailOutboxBatchSize;
+    }
+
+    public void setEmailOutboxMaxAttempts(int emailOutboxMaxAttempts) {
+        this.emailOutboxMaxAttempts = emailOutboxMaxAttempts;
+    }
+
+    public void setEmailOutboxBackoff(long emailOutboxBackoff) {
+        this.emailOutboxBackoff = emailOutboxBackoff;
+    }
+
+    public void setEmailOutboxMaxBackoff(long emailOutboxMaxBackoff) {
+        this.emailOutboxMaxBackoff = emailOutboxMaxBackoff;
+    }
+
     @Bean
     public GitLabApi gitLabApi() {
         return new GitLabApi(getGitLabApiUrl(), getGitLabApiToken());
@@ -0,0 +1,60 @@
+package org.gitlab4j.simplecr.config;
+
+import org.gitlab4j.simplecr.controller.GitLabWebHookController;
+import org.gitlab4j.simplecr.filter.AdmissionControlFilter;
+import org.gitlab4j.simplecr.filter.InteractiveRequestFilter;
+import org.gitlab4j.simplecr.filter.WebHookTokenFilter;
+import org.gitlab4j.simplecr.service.AdmissionControlService;
+import org.gitlab4j.simplecr.service.WebHookTokenRegistry;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class WebHookFilterConfig {
+
+    private static final String[] WEBHOOK_URL_PATTERNS = { "/webhook", "/webhook/*" };
+    private static final String[] USER_URL_PATTERNS = { "/load", "/load/*", "/submit" };
+
+    @Bean
+    public FilterRegistrationBean<WebHookTokenFilter> webHookTokenFilter(WebHookTokenRegistry webHookTokenRegistry) {
+        FilterRegistrationBean<WebHookTokenFilter> registration =
+                new FilterRegistrationBean<>(new WebHookTokenFilter(webHookTokenRegistry));
+        registration.addUrlPatterns(WEBHOOK_URL_PATTERNS);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return (registration);
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> webHookAdmissionFilter(
+            SimpleCrConfiguration appConfig, AdmissionControlService admissionControlService) {
+        AdmissionControlFilter filter = new AdmissionControlFilter(admissionControlService.getWebhookLimiter(),
+                request -> admissionControlService.getWebhookPriority(request.getHeader(GitLabWebHookController.X_GITLAB_EVENT)),
+                appConfig.getWebhookMergeRequestReserved(), appConfig.getAdmissionRetryAfter());
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns(WEBHOOK_URL_PATTERNS);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return (registration);
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> userAdmissionFilter(
+            SimpleCrConfiguration appConfig, AdmissionControlService admissionControlService) {
+        AdmissionControlFilter filter = new AdmissionControlFilter(admissionControlService.getUserLimiter(),
+                request -> AdmissionControlService.PRIORITY_DEFAULT,
+                0, appConfig.getAdmissionRetryAfter());
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns(USER_URL_PATTERNS);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return (registration);
+    }
+
+    @Bean
+    public FilterRegistrationBean<InteractiveRequestFilter> interactiveRequestFilter() {
+        FilterRegistrationBean<InteractiveRequestFilter> registration = new FilterRegistrationBean<>(new InteractiveRequestFilter());
+        registration.addUrlPatterns(USER_URL_PATTERNS);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 30);
+        return (registration);
+    }
+}
@@ -1,6 +1,7 @@
 
 package org.gitlab4j.simplecr.controller;
 
+import java.io.IOException;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
@@ -9,11 +10,14 @@ import javax.servlet.http.HttpServletResponse;
 import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.models.Project;
 import org.gitlab4j.simplecr.beans.AppResponse;
+import org.gitlab4j.simplecr.beans.ReplayReport;
 import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
 import org.gitlab4j.simplecr.model.MergeSpec;
 import org.gitlab4j.simplecr.model.ProjectConfig;
 import org.gitlab4j.simplecr.model.ProjectConfig.MailToType;
+import org.gitlab4j.simplecr.service.GitLabWebHookService.HandleMode;
 import org.gitlab4j.simplecr.service.ProjectConfigService;
+import org.gitlab4j.simplecr.service.WebHookReplayService;
 import org.gitlab4j.simplecr.utils.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +52,9 @@ public class AdminController {
     @Autowired
     private ProjectConfigService projectConfigService;
 
+    @Autowired
+    private WebHookReplayService webHookReplayService;
+
     private Logger logger = LoggerFactory.getLogger(AdminController.class);
 
     @GetMapping(path = "/{groupName}/{projectName}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -253,7 +260,14 @@ public class AdminController {
            return AppResponse.getMessageResponse(false, "Could not load project info from GitLab server");
         }
 
-        MergeSpec mergeSpec = projectConfigService.addMergeSpec(projectConfig, branchRegex, targetBranchRegex);
+        MergeSpec mergeSpec;
+        try {
+            mergeSpec = projectConfigService.addMergeSpec(projectConfig, branchRegex, targetBranchRegex);
+        } catch (IllegalArgumentException iae) {
+            logger.warn("Rejected merge spec, branchRegex={}, targetBranchRegex={}, error={}", branchRegex, targetBranchRegex, iae.getMessage());
+            return (AppResponse.getMessageResponse(false, iae.getMessage()));
+        }
+
         return (AppResponse.getDataResponse(true, mergeSpec));
     }
 
@@ -297,4 +311,26 @@ public class AdminController {
     public void initBinder(final WebDataBinder webdataBinder) {
         webdataBinder.registerCustomEditor(MailToType.class, new MailToType.Converter());
     }
+
+    /**
+     * Replays a newline-delimited JSON stream of recorded push and merge request webhook payloads.
+     */
+    @PostMapping(path = "/webhook/replay", produces = MediaType.APPLICATION_JSON_VALUE)
+    public AppResponse<?> replayWebHooks(
+            HttpServletRequest request,
+            @RequestParam(name = "dry_run", defaultValue = "false") Boolean dryRun,
+            @RequestParam(name = "no_email", defaultValue = "false") Boolean noEmail,
+            @RequestParam(name = "max_in_flight", defaultValue = "100") Integer maxInFlight) {
+
+        HandleMode mode = (dryRun ? HandleMode.DRY_RUN : noEmail ? HandleMode.NO_EMAIL : HandleMode.NORMAL);
+        logger.info("Replay webhook events, mode={}, maxInFlight={}", mode, maxInFlight);
+
+        try {
+            ReplayReport report = webHookReplayService.replay(request.getInputStream(), mode, maxInFlight);
+            return (AppResponse.getDataResponse(true, report));
+        } catch (IOException ioe) {
+            logger.warn("Problem replaying webhook events, error={}", ioe.getMessage());
+            return (AppResponse.getMessageResponse(false, "Could not replay webhook events, error=" + ioe.getMessage()));
+        }
+    }
 }
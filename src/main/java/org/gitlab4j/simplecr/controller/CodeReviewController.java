@@ -4,32 +4,44 @@ package org.gitlab4j.simplecr.controller;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import javax.servlet.http.HttpServletResponse;
 
-import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
-import org.gitlab4j.api.models.Branch;
 import org.gitlab4j.api.models.MergeRequest;
 import org.gitlab4j.api.models.Project;
 import org.gitlab4j.api.models.User;
 import org.gitlab4j.simplecr.beans.AppResponse;
 import org.gitlab4j.simplecr.beans.CodeReviewInfo;
 import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
-import org.gitlab4j.simplecr.model.MergeSpec;
+import org.gitlab4j.simplecr.model.OutboxEmail;
 import org.gitlab4j.simplecr.model.ProjectConfig;
 import org.gitlab4j.simplecr.model.Push;
-import org.gitlab4j.simplecr.repository.MergeSpecRepository;
 import org.gitlab4j.simplecr.repository.PushRepository;
+import org.gitlab4j.simplecr.service.BranchIndexService;
+import org.gitlab4j.simplecr.service.EmailOutboxService;
 import org.gitlab4j.simplecr.service.EmailService;
+import org.gitlab4j.simplecr.service.GitLabClient;
+import org.gitlab4j.simplecr.service.IoExecutorService;
+import org.gitlab4j.simplecr.service.MetricsSource;
 import org.gitlab4j.simplecr.service.ProjectConfigService;
+import org.gitlab4j.simplecr.service.ProjectConfigSnapshotService;
+import org.gitlab4j.simplecr.service.ReviewSnapshotService;
+import org.gitlab4j.simplecr.service.UserDirectoryService;
 import org.gitlab4j.simplecr.utils.HashUtils;
+import org.gitlab4j.simplecr.utils.LatencyRecorder;
+import org.gitlab4j.simplecr.utils.MergeSpecMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -43,10 +55,14 @@ import org.springframework.web.bind.annotation.RestController;
  * CodeReviewController
  * 
  * This class provides the endpoints for Simple-CR web and mobile client.
+ *
+ * The latency of /load is reported separately for the requests served from a review snapshot, and for
+ * the sequential and concurrent lookups, the latter two can be compared by switching
+ * simplecr.load-fan-out-enabled.
  */
 @RestController
 @RequestMapping("")
-public class CodeReviewController {
+public class CodeReviewController implements MetricsSource {
 
     @Autowired
     private SimpleCrConfiguration appConfig;
@@ -55,7 +71,7 @@ public class CodeReviewController {
     private PushRepository pushRepository;
     
     @Autowired
-    private MergeSpecRepository mergeSpecRepository;
+    private ProjectConfigSnapshotService projectConfigSnapshot;
 
     @Autowired
     private EmailService emailService;
@@ -64,7 +80,29 @@ public class CodeReviewController {
     private ProjectConfigService projectConfigService;
 
     @Autowired
-    private GitLabApi gitLabApi;
+    private UserDirectoryService userDirectoryService;
+
+    @Autowired
+    private GitLabClient gitLabClient;
+
+    @Autowired
+    private IoExecutorService ioExecutorService;
+
+    @Autowired
+    private BranchIndexService branchIndexService;
+
+    @Autowired
+    private ReviewSnapshotService reviewSnapshotService;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final LatencyRecorder sequentialLoadLatency = new LatencyRecorder();
+    private final LatencyRecorder concurrentLoadLatency = new LatencyRecorder();
+    private final LatencyRecorder snapshotLoadLatency = new LatencyRecorder();
 
     private Logger logger = LoggerFactory.getLogger(CodeReviewController.class);
 
@@ -113,7 +151,7 @@ public class CodeReviewController {
         }
 
         // Make sure we have this project in the system and it is enabled
-        ProjectConfig projectConfig = projectConfigService.getProjectConfig(projectId);
+        ProjectConfig projectConfig = projectConfigSnapshot.getProjectConfig(projectId);
         if (projectConfig == null) {
             String message = "The specified project was not found in Simple-CR system";
             logger.warn("{}, projectId={}", message, projectId);
@@ -121,47 +159,204 @@ public class CodeReviewController {
         }
 
         // Make sure there is a merge spec that matches the branch name
-        boolean foundBranchMatch = false;
-        List<MergeSpec> mergeSpecs = mergeSpecRepository.findByProjectConfigId(projectConfig.getId());
-        if (mergeSpecs != null) {
-            for (MergeSpec mergeSpec : mergeSpecs) {
-                if (branchName.matches(mergeSpec.getBranchRegex())) {
-                    foundBranchMatch = true;
-                    break;
-                }
-            }
-        }
-
-        if (!foundBranchMatch) {
+        MergeSpecMatcher mergeSpecMatcher = projectConfigSnapshot.getMatcher(projectConfig);
+        if (!mergeSpecMatcher.matches(branchName)) {
             String message = "The specified branch is not configured to trigger Simple-CR";
             logger.warn("{}, branh={}", message, branchName);
             return (AppResponse.getMessageResponse(false, message + "."));
         }
 
-        Project project;
+        long startTime = System.currentTimeMillis();
+        LatencyRecorder latencyRecorder = sequentialLoadLatency;
         try {
-            project = projectConfigService.getProject(projectId);
-        } catch (GitLabApiException glae) {
-            logger.error("Problem getting project info, httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
-            return (AppResponse.getMessageResponse(false, "Could not load project info for code review"));
+
+            // Serve the snapshot taken when the push was accepted, only the local push records are looked up
+            LoadLookups lookups;
+            CodeReviewInfo snapshot = reviewSnapshotService.getSnapshot(projectId, branchName, userId, signature);
+            if (snapshot != null) {
+                latencyRecorder = snapshotLoadLatency;
+                lookups = new LoadLookups();
+                lookups.snapshot = snapshot;
+                lookups.targetBranches = snapshot.getTargetBranches();
+                lookups.pushes = lookupPushes(projectId, branchName, userId);
+            } else if (appConfig.getLoadFanOutEnabled()) {
+                latencyRecorder = concurrentLoadLatency;
+                lookups = lookupConcurrently(projectConfig, branchName, userId);
+            } else {
+                lookups = lookupSequentially(projectConfig, branchName, userId);
+            }
+
+            return (lookups.message != null ? AppResponse.getMessageResponse(false, lookups.message) :
+                    buildResponse(projectId, branchName, userId, lookups));
+
+        } finally {
+            latencyRecorder.record(System.currentTimeMillis() - startTime);
         }
+    }
 
-        if (project.getId() == null || !project.getId().equals(projectId)) {
-            logger.error("Problem getting project info, projectId={}, project.id={}", projectId, project.getId());
-            return (AppResponse.getMessageResponse(false, "Could not load project info for code review"));
+    /**
+     * Holds the results of the lookups made for a /load request, or the message to respond with
+     * if a lookup failed. When the request is served from a review snapshot the project and user
+     * fields come from the snapshot.
+     */
+    private static class LoadLookups {
+        private CodeReviewInfo snapshot;
+        private Project project;
+        private User user;
+        private PushLookup pushes;
+        private List<String> targetBranches;
+        private String message;
+
+        private LoadLookups failed(String message) {
+            this.message = message;
+            return (this);
+        }
+    }
+
+    /**
+     * Holds the pushes of the branch, the pending reviews are looked for first, then the pushes that
+     * have not been submitted for review, and then all the pushes.
+     */
+    private static class PushLookup {
+        private List<Push> pending;
+        private List<Push> unsubmitted;
+        private List<Push> all;
+
+        private boolean isReviewable() {
+            return (isEmpty(pending) && !isEmpty(unsubmitted));
+        }
+
+        private static boolean isEmpty(List<Push> pushList) {
+            return (pushList == null || pushList.size() == 0);
+        }
+    }
+
+    private PushLookup lookupPushes(int projectId, String branchName, int userId) {
+
+        PushLookup pushes = new PushLookup();
+        pushes.pending = pushRepository.findPendingReviews(userId, projectId, branchName);
+        if (PushLookup.isEmpty(pushes.pending)) {
+            pushes.unsubmitted = pushRepository.find(userId, projectId, branchName, 0);
+            if (PushLookup.isEmpty(pushes.unsubmitted)) {
+                pushes.all = pushRepository.find(userId, projectId, branchName);
+            }
+        }
+
+        return (pushes);
+    }
+
+    /**
+     * Makes the lookups one after another, the target branches are only resolved if the branch push can be reviewed.
+     */
+    private LoadLookups lookupSequentially(ProjectConfig projectConfig, String branchName, int userId) {
+
+        int projectId = projectConfig.getProjectId();
+
+        LoadLookups lookups = new LoadLookups();
+        try {
+            lookups.project = projectConfigService.getProject(projectId);
+        } catch (GitLabApiException glae) {
+            logger.error("Problem getting project info, httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
+            return (lookups.failed("Could not load project info for code review"));
         }
 
-        User user;
         try {
-            user = gitLabApi.getUserApi().getUser(userId);
+            lookups.user = userDirectoryService.getUser(userId);
         } catch (GitLabApiException glae) {
             logger.error("Problem getting user info, httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
-            return (AppResponse.getMessageResponse(false, "Could not load project info for code review"));
+            return (lookups.failed("Could not load project info for code review"));
+        }
+
+        lookups.pushes = lookupPushes(projectId, branchName, userId);
+        if (lookups.pushes.isReviewable()) {
+            try {
+                lookups.targetBranches = branchIndexService.getTargetBranches(projectConfig, branchName);
+            } catch (GitLabApiException glae) {
+                logger.error("Problem getting branches for project, httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
+                return (lookups.failed("Could not load project branches."));
+            }
         }
 
-        if (user.getId() == null || !user.getId().equals(userId)) {
-            logger.error("Problem getting user info, userId={}, user.id={}", userId, user.getId());
-            return (AppResponse.getMessageResponse(false, "Could not load user info for code review"));
+        return (lookups);
+    }
+
+    /**
+     * Issues the lookups, none of which depends on another, concurrently on the I/O executor and waits for
+     * each of them for no longer than the per-call timeout and the load deadline. The target branches are
+     * resolved up front, they are only used if the branch push can be reviewed.
+     */
+    private LoadLookups lookupConcurrently(ProjectConfig projectConfig, String branchName, int userId) {
+
+        int projectId = projectConfig.getProjectId();
+        long deadline = System.currentTimeMillis() + appConfig.getLoadDeadline();
+        CompletableFuture<Project> projectFuture = ioExecutorService.submit(() -> projectConfigService.getProject(projectId));
+        CompletableFuture<User> userFuture = ioExecutorService.submit(() -> userDirectoryService.getUser(userId));
+        CompletableFuture<PushLookup> pushesFuture = ioExecutorService.submit(() -> lookupPushes(projectId, branchName, userId));
+        CompletableFuture<List<String>> targetBranchesFuture = ioExecutorService.submit(
+                () -> branchIndexService.getTargetBranches(projectConfig, branchName));
+
+        LoadLookups lookups = new LoadLookups();
+        try {
+
+            try {
+                lookups.project = ioExecutorService.await(projectFuture, deadline);
+            } catch (GitLabApiException glae) {
+                logger.error("Problem getting project info, httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
+                return (lookups.failed("Could not load project info for code review"));
+            }
+
+            try {
+                lookups.user = ioExecutorService.await(userFuture, deadline);
+            } catch (GitLabApiException glae) {
+                logger.error("Problem getting user info, httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
+                return (lookups.failed("Could not load project info for code review"));
+            }
+
+            try {
+                lookups.pushes = ioExecutorService.await(pushesFuture, deadline);
+            } catch (GitLabApiException glae) {
+                logger.error("Problem getting branch pushes, error={}", glae.getMessage());
+                return (lookups.failed("Could not load branch pushes for code review"));
+            }
+
+            if (lookups.pushes.isReviewable()) {
+                try {
+                    lookups.targetBranches = ioExecutorService.await(targetBranchesFuture, deadline);
+                } catch (GitLabApiException glae) {
+                    logger.error("Problem getting branches for project, httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
+                    return (lookups.failed("Could not load project branches."));
+                }
+            }
+
+            return (lookups);
+
+        } finally {
+            // Abandon whatever is still outstanding once the response is decided
+            targetBranchesFuture.cancel(false);
+            pushesFuture.cancel(false);
+            userFuture.cancel(false);
+            projectFuture.cancel(false);
+        }
+    }
+
+    private AppResponse<?> buildResponse(int projectId, String branchName, int userId, LoadLookups lookups) {
+
+        CodeReviewInfo codeReviewInfo = lookups.snapshot;
+        if (codeReviewInfo == null) {
+
+            Project project = lookups.project;
+            if (project.getId() == null || !project.getId().equals(projectId)) {
+                logger.error("Problem getting project info, projectId={}, project.id={}", projectId, project.getId());
+                return (AppResponse.getMessageResponse(false, "Could not load project info for code review"));
+            }
+
+            User user = lookups.user;
+            if (user.getId() == null || !user.getId().equals(userId)) {
+                logger.error("Problem getting user info, userId={}, user.id={}", userId, user.getId());
+                return (AppResponse.getMessageResponse(false, "Could not load user info for code review"));
+            }
+
+            codeReviewInfo = ReviewSnapshotService.newCodeReviewInfo(project, user, branchName);
         }
 
         // We default the status to success, with an empty statusText message
@@ -169,19 +364,19 @@ public class CodeReviewController {
         String statusText = null;
 
         // Make sure that we don't have a pending code review for this branch
-        List<Push> pushList = pushRepository.findPendingReviews(userId, projectId, branchName);
+        PushLookup pushes = lookups.pushes;
         String title = null;
         String description = null;
         List<String> targetBranches = new ArrayList<String>();
         String targetBranch = null;
-        if (pushList != null && pushList.size() > 0) {
+        if (!PushLookup.isEmpty(pushes.pending)) {
 
             logger.info("This branch is already pending review, userId={}, projectId={}, branch={}", userId, projectId, branchName);
             statusText = "This branch push is already pending review.";
             status = AppResponse.Status.NO_ACTION;
 
             try {
-                MergeRequest mergeRequest = gitLabApi.getMergeRequestApi().getMergeRequest(projectId, pushList.get(0).getMergeRequestId());
+                MergeRequest mergeRequest = gitLabClient.getMergeRequest(projectId, pushes.pending.get(0).getMergeRequestId());
                 title = mergeRequest.getTitle();
                 description = mergeRequest.getDescription();
                 targetBranch = mergeRequest.getTargetBranch();
@@ -190,58 +385,31 @@ public class CodeReviewController {
                 logger.warn("Problem getting merge request info, , httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
             }
 
-        } else {
-
-            // Make sure we have a push record that has not been submitted for code review
-            pushList = pushRepository.find(userId, projectId, branchName, 0);
-            if (pushList == null || pushList.size() == 0) {
-
-                logger.info("No branch pushes are available for review, userId={}, projectId={}, branch={}", userId, projectId, branchName);
-                pushList = pushRepository.find(userId, projectId, branchName);
-                if (pushList == null || pushList.size() == 0) {
-                    statusText = "This branch push has already been reviewed.";
-                    status = AppResponse.Status.NO_ACTION;
-                } else {
-                    Push push = pushList.get(0);
-                    statusText = "This branch push has already been submitted for review, current state is '" + push.getMergeState() + "'.";
-                    status = AppResponse.Status.NO_ACTION;
-                }
+        } else if (PushLookup.isEmpty(pushes.unsubmitted)) {
 
+            // There is no push record that has not been submitted for code review
+            logger.info("No branch pushes are available for review, userId={}, projectId={}, branch={}", userId, projectId, branchName);
+            if (PushLookup.isEmpty(pushes.all)) {
+                statusText = "This branch push has already been reviewed.";
+                status = AppResponse.Status.NO_ACTION;
             } else {
+                Push push = pushes.all.get(0);
+                statusText = "This branch push has already been submitted for review, current state is '" + push.getMergeState() + "'.";
+                status = AppResponse.Status.NO_ACTION;
+            }
 
-                List<Branch> branches;
-                try {
-                    branches = gitLabApi.getRepositoryApi().getBranches(projectId);
-                } catch (GitLabApiException glae) {
-                    logger.error("Problem getting branches for project, httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
-                    return (AppResponse.getMessageResponse(false, "Could not load project branches."));
-                }
+        } else {
 
-                // Get the list of available target branches for the branch to be merged into
-                for (MergeSpec mergeSpec : mergeSpecs) {
-                    if (branchName.matches(mergeSpec.getBranchRegex())) {
-                        branches.forEach(b -> {
-                            if (b.getName().matches(mergeSpec.getTargetBranchRegex()))
-                                targetBranches.add(b.getName());
-                        });
-                    }
-                }
+            // The available target branches for the branch to be merged into
+            if (lookups.targetBranches != null) {
+                targetBranches.addAll(lookups.targetBranches);
+            }
 
-                if (targetBranches.size() > 0) {
-                    targetBranch = targetBranches.get(0);
-                }
+            if (targetBranches.size() > 0) {
+                targetBranch = targetBranches.get(0);
             }
         }
 
-        CodeReviewInfo codeReviewInfo = new CodeReviewInfo();
-        codeReviewInfo.setGroup(project.getNamespace().getName());
-        codeReviewInfo.setProjectId(projectId);
-        codeReviewInfo.setProjectName(project.getName());
-        codeReviewInfo.setProjectUrl(project.getWebUrl());
-        codeReviewInfo.setSourceBranch(branchName);
-        codeReviewInfo.setUserId(userId);
-        codeReviewInfo.setName(user.getName());
-        codeReviewInfo.setEmail(user.getEmail());
         codeReviewInfo.setGitlabWebUrl(appConfig.getGitLabWebUrl());
         codeReviewInfo.setTargetBranch(targetBranch);
         codeReviewInfo.setTargetBranches(targetBranches);
@@ -266,7 +434,7 @@ public class CodeReviewController {
                 userId , sourceProjectId , sourceBranch, targetProjectId, targetBranch, title, description);
 
         // Make sure we have this project in the system and it is enabled
-        ProjectConfig projectConfig = projectConfigService.getProjectConfig(targetProjectId);
+        ProjectConfig projectConfig = projectConfigSnapshot.getProjectConfig(targetProjectId);
         if (projectConfig == null) {
             logger.info("The target project is not in the simple-cr system, targetProjectId={}", targetProjectId);
             String message = "The specified project was not found in Simple-CR system.";
@@ -289,19 +457,41 @@ public class CodeReviewController {
 
         MergeRequest mergeRequest;
         try {
-            mergeRequest = gitLabApi.getMergeRequestApi().createMergeRequest(targetProjectId, sourceBranch, targetBranch, title, description, null);
+            mergeRequest = gitLabClient.createMergeRequest(targetProjectId, sourceBranch, targetBranch, title, description);
         } catch (GitLabApiException glae) {
             logger.error("Problem creating merge request, httpStatus={}, error={}", glae.getHttpStatus(), glae.getMessage());
             return (AppResponse.getMessageResponse(AppResponse.Status.NO_ACTION, "This branch has already been merged or deleted"));
         }
 
-        // Update the Push record
-        pushRepository.setMergeRequestInfo(pushList.get(0).getId(), mergeRequest.getIid(),
-                mergeRequest.getCreatedAt(), mergeRequest.getState(), mergeRequest.getMergeStatus());
+        // Update the Push record and queue the merge request email to all the reviewers in the same transaction
+        Long pushId = pushList.get(0).getId();
+        OutboxEmail mergeRequestEmail = emailService.renderMergeRequestEmail(projectConfig, mergeRequest);
+        new TransactionTemplate(transactionManager).execute(status -> {
+            pushRepository.setMergeRequestInfo(pushId, mergeRequest.getIid(),
+                    mergeRequest.getCreatedAt(), mergeRequest.getState(), mergeRequest.getMergeStatus());
+            if (mergeRequestEmail != null) {
+                emailOutboxService.enqueue(mergeRequestEmail);
+            }
 
-        // Send the merge request email to all the reviewers
-        emailService.sendMergeRequestEmail(projectConfig, mergeRequest);
+            return (null);
+        });
 
         return (AppResponse.getMessageResponse(true, "Your request for code review and merge has been submitted."));
     }
+
+    @Override
+    public String getMetricsName() {
+        return ("codeReviewLoad");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("fanOutEnabled", appConfig.getLoadFanOutEnabled());
+        metrics.put("deadlineMs", appConfig.getLoadDeadline());
+        metrics.put("sequential", sequentialLoadLatency.getMetrics());
+        metrics.put("concurrent", concurrentLoadLatency.getMetrics());
+        metrics.put("snapshot", snapshotLoadLatency.getMetrics());
+        return (metrics);
+    }
 }
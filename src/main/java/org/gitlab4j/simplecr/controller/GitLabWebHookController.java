@@ -1,13 +1,27 @@
 package org.gitlab4j.simplecr.controller;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 import javax.servlet.http.HttpServletRequest;
 
 import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.webhook.Event;
+import org.gitlab4j.simplecr.beans.HookEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.filter.RequestEventLoggingFilter;
+import org.gitlab4j.simplecr.service.CircuitBreakerService;
 import org.gitlab4j.simplecr.service.GitLabWebHookService;
+import org.gitlab4j.simplecr.service.ProjectConfigSnapshotService;
+import org.gitlab4j.simplecr.service.WebHookDeduplicationService;
+import org.gitlab4j.simplecr.service.WebHookQueueService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -17,24 +31,119 @@ import org.springframework.web.server.ResponseStatusException;
 /**
  * This is the webhook endpoint for GitLab webhook events that are sent
  * when there is a new or updated push, merge request or issue.
+ *
+ * Push and merge request events for projects that are not configured in Simple-CR, and events that
+ * GitLab has already delivered, are acknowledged and dropped. When the webhook queue is enabled the
+ * other push and merge request events are persisted to the webhook queue and acknowledged with a
+ * 202 (Accepted) before they are processed.
  */
 @RestController
 @RequestMapping("webhook")
 public class GitLabWebHookController {
 
+    public static final String X_GITLAB_EVENT = "X-Gitlab-Event";
+    public static final String X_GITLAB_TOKEN = "X-Gitlab-Token";
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
     @Autowired
     private GitLabWebHookService gitLabWebHookService;
 
+    @Autowired
+    private WebHookQueueService webHookQueueService;
+
+    @Autowired
+    private WebHookDeduplicationService webHookDeduplicationService;
+
+    @Autowired
+    private ProjectConfigSnapshotService projectConfigSnapshot;
+
+    @Autowired
+    private CircuitBreakerService circuitBreakerService;
+
+    private Logger logger = LoggerFactory.getLogger(GitLabWebHookController.class);
+
     @PostMapping(path = {"", "/issue", "/merge_request", "/push"},
         consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
-    public String processEvent(HttpServletRequest request) {
+    public ResponseEntity<String> processEvent(HttpServletRequest request) {
+
+        String eventName = request.getHeader(X_GITLAB_EVENT);
+        if (!webHookQueueService.isQueued(eventName)) {
+
+            try {
+                Event event = gitLabWebHookService.handleRequest(request);
+                return (ResponseEntity.ok(event != null ? String.format("Processed '%s' event", event.getObjectKind()) : ""));
+            } catch (GitLabApiException glae) {
+                throw new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR, glae.getMessage(), glae);
+            }
+        }
+
+        String payload;
+        try {
+            payload = StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ioe.getMessage(), ioe);
+        }
+
+        // Share the body with the request logging filter rather than having it buffer a copy
+        request.setAttribute(RequestEventLoggingFilter.PAYLOAD_ATTRIBUTE, payload);
 
+        HookEvent event;
         try {
-            Event event = gitLabWebHookService.handleRequest(request);
-            return (event != null ? String.format("Processed '%s' event", event.getObjectKind()) : "");
+            event = webHookQueueService.parseEvent(payload);
         } catch (GitLabApiException glae) {
-            throw new ResponseStatusException(
-                    HttpStatus.INTERNAL_SERVER_ERROR, glae.getMessage(), glae);
+            logger.warn("Rejected webhook event, event={}, error={}", eventName, glae.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, glae.getMessage(), glae);
         }
+
+        request.setAttribute(RequestEventLoggingFilter.HOOK_EVENT_ATTRIBUTE, event);
+        String secretToken = request.getHeader(X_GITLAB_TOKEN);
+        event.setSecretToken(secretToken);
+
+        if (!projectConfigSnapshot.isConfigured(event.getProjectId())) {
+            logger.info("Dropped webhook event for a project not in the Simple-CR system, event={}, projectId={}", eventName, event.getProjectId());
+            return (ResponseEntity.ok(String.format("Ignored '%s' event", event.getObjectKind())));
+        }
+
+        String deliveryKey = webHookDeduplicationService.getDeliveryKey(
+                request.getHeader(WebHookDeduplicationService.X_GITLAB_EVENT_UUID), event);
+        if (webHookDeduplicationService.isDuplicate(deliveryKey)) {
+            logger.info("Dropped duplicate webhook event, event={}, deliveryKey={}", eventName, deliveryKey);
+            return (ResponseEntity.ok(String.format("Duplicate '%s' event", event.getObjectKind())));
+        }
+
+        if (!appConfig.getWebhookQueueEnabled()) {
+
+            // Without the queue there is nowhere to hold the event, have GitLab deliver it again later
+            String openDependency = circuitBreakerService.getOpenDependency();
+            if (openDependency != null) {
+                webHookDeduplicationService.forgetDelivery(deliveryKey);
+                logger.info("Rejected webhook event while a dependency is unavailable, event={}, dependency={}", eventName, openDependency);
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        String.format("The %s dependency is unavailable", openDependency));
+            }
+
+            try {
+                gitLabWebHookService.handleHookEvent(event);
+            } catch (RuntimeException e) {
+                webHookDeduplicationService.forgetDelivery(deliveryKey);
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+            }
+
+            webHookDeduplicationService.recordDelivery(deliveryKey);
+            return (ResponseEntity.ok(String.format("Processed '%s' event", event.getObjectKind())));
+        }
+
+        try {
+            webHookQueueService.enqueue(eventName, secretToken, payload, event);
+        } catch (RuntimeException re) {
+            webHookDeduplicationService.forgetDelivery(deliveryKey);
+            throw re;
+        }
+
+        webHookDeduplicationService.recordDelivery(deliveryKey);
+        return (ResponseEntity.status(HttpStatus.ACCEPTED).body(String.format("Queued '%s' event", eventName)));
     }
 }
@@ -0,0 +1,51 @@
+package org.gitlab4j.simplecr.controller;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.gitlab4j.simplecr.beans.AppResponse;
+import org.gitlab4j.simplecr.service.MetricsSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * MetricsController
+ *
+ * This class provides an endpoint that publishes the runtime metrics of the Simple-CR services.
+ */
+@RestController
+@RequestMapping("metrics")
+public class MetricsController {
+
+    @Autowired(required = false)
+    private List<MetricsSource> metricsSources = Collections.emptyList();
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public AppResponse<?> getMetrics() {
+
+        Map<String, Object> metrics = new TreeMap<>();
+        for (MetricsSource metricsSource : metricsSources) {
+            metrics.put(metricsSource.getMetricsName(), metricsSource.getMetrics());
+        }
+
+        return (AppResponse.getDataResponse(true, metrics));
+    }
+
+    @GetMapping(path = "/{name}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public AppResponse<?> getMetrics(@PathVariable("name") String name) {
+
+        for (MetricsSource metricsSource : metricsSources) {
+            if (metricsSource.getMetricsName().equals(name)) {
+                return (AppResponse.getDataResponse(true, metricsSource.getMetrics()));
+            }
+        }
+
+        return (AppResponse.getMessageResponse(false, "No metrics found for '" + name + "'."));
+    }
+}
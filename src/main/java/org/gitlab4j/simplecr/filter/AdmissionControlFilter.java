@@ -0,0 +1,66 @@
+package org.gitlab4j.simplecr.filter;
+
+import java.io.IOException;
+import java.util.function.ToIntFunction;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.gitlab4j.simplecr.utils.PriorityLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * This filter only lets a request through while it holds a permit from its PriorityLimiter. A request
+ * that can't get a permit straight away is answered with a 429 (Too Many Requests) and a Retry-After
+ * header rather than parking the request thread, GitLab will re-deliver a rejected webhook.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private final PriorityLimiter limiter;
+    private final ToIntFunction<HttpServletRequest> priorityFunction;
+    private final int reserved;
+    private final long retryAfter;
+
+    /**
+     * Creates a new AdmissionControlFilter.
+     *
+     * @param limiter the limiter to get the permits from
+     * @param priorityFunction gets the admission priority of a request
+     * @param reserved the number of permits only requests of the highest priority may take
+     * @param retryAfter the number of seconds to put in the Retry-After header of a rejected request
+     */
+    public AdmissionControlFilter(PriorityLimiter limiter, ToIntFunction<HttpServletRequest> priorityFunction,
+            int reserved, long retryAfter) {
+        this.limiter = limiter;
+        this.priorityFunction = priorityFunction;
+        this.reserved = reserved;
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        int priority = priorityFunction.applyAsInt(request);
+        if (!limiter.tryAcquire(priority, reserved)) {
+            logger.debug("Rejected request, limiter={}, priority={}, uri={}", limiter.getName(), priority, request.getRequestURI());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            limiter.release();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.gitlab4j.simplecr.filter;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.gitlab4j.simplecr.service.GitLabClient;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * This filter marks the GitLab API calls made while handling a user request as interactive, so they
+ * are admitted by the GitLabClient ahead of the calls made for background webhook work.
+ */
+public class InteractiveRequestFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        GitLabClient.setInteractive(true);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            GitLabClient.setInteractive(false);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.gitlab4j.simplecr.filter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.gitlab4j.simplecr.beans.HookEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.controller.GitLabWebHookController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * This filter writes a single structured log line for each request once it has completed, holding only
+ * the key fields of the request. The request body is never buffered by this filter, a handler that has
+ * read the body can publish it with the {@link #PAYLOAD_ATTRIBUTE} request attribute, and it is logged
+ * only for failed or slow requests, and for a configurable sample of the other requests.
+ */
+public class RequestEventLoggingFilter extends OncePerRequestFilter {
+
+    /** The request attribute holding the request body, as read by the handler. */
+    public static final String PAYLOAD_ATTRIBUTE = RequestEventLoggingFilter.class.getName() + ".payload";
+
+    /** The request attribute holding the HookEvent parsed from a webhook request. */
+    public static final String HOOK_EVENT_ATTRIBUTE = RequestEventLoggingFilter.class.getName() + ".hookEvent";
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestEventLoggingFilter.class);
+
+    private final SimpleCrConfiguration appConfig;
+
+    public RequestEventLoggingFilter(SimpleCrConfiguration appConfig) {
+        this.appConfig = appConfig;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        long startTime = System.currentTimeMillis();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = false;
+        } finally {
+            logRequest(request, response, System.currentTimeMillis() - startTime, failed);
+        }
+    }
+
+    private void logRequest(HttpServletRequest request, HttpServletResponse response, long duration, boolean failed) {
+
+        int status = (failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus());
+        boolean error = (status >= HttpServletResponse.SC_BAD_REQUEST);
+        boolean slow = (duration >= appConfig.getRequestLogSlowThreshold());
+        if (!error && !slow && !logger.isInfoEnabled()) {
+            return;
+        }
+
+        Integer projectId = null;
+        String branch = null;
+        Object hookEvent = request.getAttribute(HOOK_EVENT_ATTRIBUTE);
+        if (hookEvent instanceof HookEvent) {
+            projectId = ((HookEvent) hookEvent).getProjectId();
+            branch = ((HookEvent) hookEvent).getBranch();
+        }
+
+        String payload = null;
+        if (error || slow || isSampled()) {
+            payload = truncate((String) request.getAttribute(PAYLOAD_ATTRIBUTE));
+        }
+
+        if (error || slow) {
+            logger.warn("method={}, uri={}, status={}, durationMs={}, event={}, projectId={}, branch={}, length={}, payload={}",
+                    request.getMethod(), request.getRequestURI(), status, duration,
+                    request.getHeader(GitLabWebHookController.X_GITLAB_EVENT), projectId, branch,
+                    request.getContentLengthLong(), payload);
+        } else if (payload != null) {
+            logger.info("method={}, uri={}, status={}, durationMs={}, event={}, projectId={}, branch={}, length={}, payload={}",
+                    request.getMethod(), request.getRequestURI(), status, duration,
+                    request.getHeader(GitLabWebHookController.X_GITLAB_EVENT), projectId, branch,
+                    request.getContentLengthLong(), payload);
+        } else {
+            logger.info("method={}, uri={}, status={}, durationMs={}, event={}, projectId={}, branch={}, length={}",
+                    request.getMethod(), request.getRequestURI(), status, duration,
+                    request.getHeader(GitLabWebHookController.X_GITLAB_EVENT), projectId, branch,
+                    request.getContentLengthLong());
+        }
+    }
+
+    private boolean isSampled() {
+        double sampleRate = appConfig.getRequestLogSampleRate();
+        return (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    private String truncate(String payload) {
+        int maxLength = appConfig.getRequestLogMaxPayloadLength();
+        return (payload != null && payload.length() > maxLength ? payload.substring(0, maxLength) : payload);
+    }
+}
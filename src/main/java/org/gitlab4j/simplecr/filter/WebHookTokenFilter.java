@@ -0,0 +1,46 @@
+package org.gitlab4j.simplecr.filter;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.gitlab4j.simplecr.controller.GitLabWebHookController;
+import org.gitlab4j.simplecr.service.WebHookTokenRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * This filter rejects webhook requests whose X-Gitlab-Token header does not belong to an enabled
+ * project config. The check is done before the request body is read, so hooks from misconfigured or
+ * removed projects cost neither payload parsing nor database access.
+ */
+public class WebHookTokenFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebHookTokenFilter.class);
+
+    private final WebHookTokenRegistry webHookTokenRegistry;
+
+    public WebHookTokenFilter(WebHookTokenRegistry webHookTokenRegistry) {
+        this.webHookTokenRegistry = webHookTokenRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        String secretToken = request.getHeader(GitLabWebHookController.X_GITLAB_TOKEN);
+        if (!webHookTokenRegistry.isActive(secretToken)) {
+            logger.debug("Rejected webhook request with an unknown or disabled token, event={}, remoteAddr={}",
+                    request.getHeader(GitLabWebHookController.X_GITLAB_EVENT), request.getRemoteAddr());
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
@@ -80,6 +80,23 @@ public class ProjectConfig {
     public ProjectConfig() {
     }
 
+    /**
+     * Creates a detached copy of the provided ProjectConfig.
+     *
+     * @param projectConfig the ProjectConfig to copy
+     */
+    public ProjectConfig(ProjectConfig projectConfig) {
+        this.id = projectConfig.id;
+        this.projectId = projectConfig.projectId;
+        this.createdAt = projectConfig.createdAt;
+        this.enabled = projectConfig.enabled;
+        this.hookId = projectConfig.hookId;
+        this.mailToType = projectConfig.mailToType;
+        this.includeDefaultMailTo = projectConfig.includeDefaultMailTo;
+        this.additionalMailTo = (projectConfig.additionalMailTo != null ? new ArrayList<String>(projectConfig.additionalMailTo) : null);
+        this.excludeMailTo = (projectConfig.excludeMailTo != null ? new ArrayList<String>(projectConfig.excludeMailTo) : null);
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,135 @@
+package org.gitlab4j.simplecr.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+/**
+ * A GitLab webhook delivery that has been accepted but not yet processed. The raw payload is
+ * kept so that the event can be replayed if the server goes down before it is processed.
+ */
+@Entity
+@Table(name = "webhook_queue")
+public class QueuedWebHook {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "received_at", nullable = false)
+    private Date receivedAt;
+
+    @Column(name = "event_name", nullable = false)
+    private String eventName;
+
+    @Column(name = "project_id")
+    private Integer projectId;
+
+    @Column(name = "branch")
+    private String branch;
+
+    @Column(name = "secret_token")
+    private String secretToken;
+
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "lane_hash")
+    private Integer laneHash;
+
+    @Column(name = "lane")
+    private Integer lane;
+
+    public QueuedWebHook() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Date getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(Date receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public void setEventName(String eventName) {
+        this.eventName = eventName;
+    }
+
+    public Integer getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Integer projectId) {
+        this.projectId = projectId;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    public String getSecretToken() {
+        return secretToken;
+    }
+
+    public void setSecretToken(String secretToken) {
+        this.secretToken = secretToken;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Integer getLaneHash() {
+        return laneHash;
+    }
+
+    public void setLaneHash(Integer laneHash) {
+        this.laneHash = laneHash;
+    }
+
+    public Integer getLane() {
+        return lane;
+    }
+
+    public void setLane(Integer lane) {
+        this.lane = lane;
+    }
+}
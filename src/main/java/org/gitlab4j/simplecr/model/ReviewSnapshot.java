@@ -0,0 +1,101 @@
+package org.gitlab4j.simplecr.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+/**
+ * The code review page data for an accepted push, captured when the push is processed so that the
+ * emailed code review link can be served without calling GitLab. The payload is a CodeReviewInfo
+ * as JSON, keyed by the path of the signed link.
+ */
+@Entity
+@Table(name = "review_snapshot")
+public class ReviewSnapshot {
+
+    @Id
+    @Column(name = "link_key", nullable = false)
+    private String linkKey;
+
+    @Column(name = "project_id", nullable = false)
+    private Integer projectId;
+
+    @Column(name = "branch", nullable = false)
+    private String branch;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    @Column(name = "validated_at", nullable = false)
+    private Date validatedAt;
+
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    public ReviewSnapshot() {
+    }
+
+    public String getLinkKey() {
+        return linkKey;
+    }
+
+    public void setLinkKey(String linkKey) {
+        this.linkKey = linkKey;
+    }
+
+    public Integer getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Integer projectId) {
+        this.projectId = projectId;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getValidatedAt() {
+        return validatedAt;
+    }
+
+    public void setValidatedAt(Date validatedAt) {
+        this.validatedAt = validatedAt;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+}
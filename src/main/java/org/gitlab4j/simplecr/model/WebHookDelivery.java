@@ -0,0 +1,48 @@
+package org.gitlab4j.simplecr.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Records the key of a webhook delivery that has been accepted so that re-deliveries of the
+ * same event can be recognized, even across restarts.
+ */
+@Entity
+@Table(name = "webhook_delivery")
+public class WebHookDelivery {
+
+    @Id
+    @Column(name = "delivery_key", nullable = false)
+    private String deliveryKey;
+
+    @Column(name = "received_at", nullable = false)
+    private Date receivedAt;
+
+    public WebHookDelivery() {
+    }
+
+    public WebHookDelivery(String deliveryKey, Date receivedAt) {
+        this.deliveryKey = deliveryKey;
+        this.receivedAt = receivedAt;
+    }
+
+    public String getDeliveryKey() {
+        return deliveryKey;
+    }
+
+    public void setDeliveryKey(String deliveryKey) {
+        this.deliveryKey = deliveryKey;
+    }
+
+    public Date getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(Date receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+}
@@ -0,0 +1,17 @@
+package org.gitlab4j.simplecr.repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import org.gitlab4j.simplecr.model.OutboxEmail;
+import org.gitlab4j.simplecr.model.OutboxEmail.Status;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.CrudRepository;
+
+public interface EmailOutboxRepository extends CrudRepository<OutboxEmail, Long>  {
+
+    List<OutboxEmail> findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(Status status, Date now, Pageable pageable);
+    Optional<OutboxEmail> findFirstByStatusOrderByIdAsc(Status status);
+    long countByStatus(Status status);
+}
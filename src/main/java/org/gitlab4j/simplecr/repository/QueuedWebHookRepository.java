@@ -0,0 +1,25 @@
+package org.gitlab4j.simplecr.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.transaction.Transactional;
+
+import org.gitlab4j.simplecr.model.QueuedWebHook;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface QueuedWebHookRepository extends CrudRepository<QueuedWebHook, Long>  {
+
+    List<QueuedWebHook> findByLaneOrderByIdAsc(Integer lane);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE webhook_queue SET lane = MOD(lane_hash, :numLanes) WHERE lane IS NULL OR lane <> MOD(lane_hash, :numLanes)", nativeQuery = true)
+    int assignLanes(@Param("numLanes") int numLanes);
+
+    List<QueuedWebHook> findByLaneHashIsNull();
+    Optional<QueuedWebHook> findFirstByOrderByIdAsc();
+}
@@ -0,0 +1,19 @@
+package org.gitlab4j.simplecr.repository;
+
+import java.util.Date;
+
+import javax.transaction.Transactional;
+
+import org.gitlab4j.simplecr.model.ReviewSnapshot;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface ReviewSnapshotRepository extends CrudRepository<ReviewSnapshot, String>  {
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM review_snapshot WHERE created_at < :cutoff", nativeQuery = true)
+    int deleteCreatedBefore(@Param("cutoff") Date cutoff);
+}
@@ -0,0 +1,22 @@
+package org.gitlab4j.simplecr.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.transaction.Transactional;
+
+import org.gitlab4j.simplecr.model.WebHookDelivery;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface WebHookDeliveryRepository extends CrudRepository<WebHookDelivery, String>  {
+
+    List<WebHookDelivery> findByReceivedAtAfterOrderByReceivedAtAsc(Date receivedAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM webhook_delivery WHERE received_at < :cutoff", nativeQuery = true)
+    int deleteReceivedBefore(@Param("cutoff") Date cutoff);
+}
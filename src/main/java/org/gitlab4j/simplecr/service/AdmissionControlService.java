@@ -0,0 +1,78 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.gitlab4j.api.webhook.MergeRequestEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.utils.PriorityLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class holds the admission limits for incoming requests. Webhook requests and the user facing
+ * code review requests each have their own concurrency limit, so a storm of webhook requests can not
+ * take the request threads needed to serve users. Requests over the limit are rejected rather than
+ * queued. A few webhook permits are reserved for merge request events as they close out pending reviews.
+ */
+@Service
+public class AdmissionControlService implements MetricsSource {
+
+    public static final int PRIORITY_DEFAULT = 0;
+    public static final int PRIORITY_MERGE_REQUEST = 1;
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlService.class);
+
+    private PriorityLimiter webhookLimiter;
+    private PriorityLimiter userLimiter;
+
+    @PostConstruct
+    void createLimiters() {
+
+        webhookLimiter = new PriorityLimiter("webhook", appConfig.getWebhookMaxConcurrent(), 0, 2);
+        userLimiter = new PriorityLimiter("user", appConfig.getUserMaxConcurrent(), 0, 1);
+
+        logger.info("Created admission limits, webhookMaxConcurrent={}, webhookMergeRequestReserved={}, userMaxConcurrent={}",
+                appConfig.getWebhookMaxConcurrent(), appConfig.getWebhookMergeRequestReserved(), appConfig.getUserMaxConcurrent());
+    }
+
+    public PriorityLimiter getWebhookLimiter() {
+        return (webhookLimiter);
+    }
+
+    public PriorityLimiter getUserLimiter() {
+        return (userLimiter);
+    }
+
+    /**
+     * Gets the admission priority of a webhook request.
+     *
+     * @param eventName the value of the X-Gitlab-Event header
+     * @return the admission priority of the webhook request
+     */
+    public int getWebhookPriority(String eventName) {
+        return (MergeRequestEvent.X_GITLAB_EVENT.equals(eventName) ? PRIORITY_MERGE_REQUEST : PRIORITY_DEFAULT);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("admission");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("retryAfterSeconds", appConfig.getAdmissionRetryAfter());
+        metrics.put("webhookMergeRequestReserved", appConfig.getWebhookMergeRequestReserved());
+        metrics.put(webhookLimiter.getName(), webhookLimiter.getMetrics());
+        metrics.put(userLimiter.getName(), userLimiter.getMetrics());
+        return (metrics);
+    }
+}
@@ -0,0 +1,251 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.Pager;
+import org.gitlab4j.api.models.Branch;
+import org.gitlab4j.simplecr.beans.PushHookEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.ProjectConfig;
+import org.gitlab4j.simplecr.utils.BranchIndex;
+import org.gitlab4j.simplecr.utils.MergeSpecMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class keeps a BranchIndex for each configured project, so the target branches offered by /load
+ * are resolved in memory instead of listing every branch of the project on each page open.
+ *
+ * The index of a project is seeded by a paged scan of its branches the first time it is needed, and is
+ * then kept current from push events, a push adds its branch and a push with an all zero after commit
+ * removes it. An index is rescanned once it is older than the maximum age, to pick up any change that
+ * did not arrive as a push event, and is rebuilt from its branch names when the merge specs change.
+ *
+ * The rescan of an expired index runs in the background while the expired index keeps being served.
+ * Pushes received during a scan are applied to both the served index and the one being seeded, which
+ * replaces the served index once the scan is done. If the rescan fails the expired index stays in
+ * place and the next lookup tries again.
+ */
+@Service
+public class BranchIndexService implements MetricsSource {
+
+    private static final String DELETED_COMMIT_REGEX = "^[0]+$";
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private GitLabClient gitLabClient;
+
+    @Autowired
+    private ProjectConfigSnapshotService projectConfigSnapshot;
+
+    private static final Logger logger = LoggerFactory.getLogger(BranchIndexService.class);
+
+    // The served index of each project, and the index being seeded for the projects that are being scanned
+    private final ConcurrentHashMap<Integer, BranchIndex> indexes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, BranchIndex> seedingIndexes = new ConcurrentHashMap<>();
+    private final Set<Integer> refreshing = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService refreshExecutor;
+
+    private final AtomicLong lookupCount = new AtomicLong();
+    private final AtomicLong scanCount = new AtomicLong();
+    private final AtomicLong scanTime = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong failedRefreshCount = new AtomicLong();
+    private final AtomicLong rebuildCount = new AtomicLong();
+    private final AtomicLong addedCount = new AtomicLong();
+    private final AtomicLong removedCount = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        refreshExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("branch-index-"));
+    }
+
+    @PreDestroy
+    void stop() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the names of the branches that the branch can be merged into, seeding the index of the
+     * project if it has not been seeded. An expired index is served while it is rescanned in the background.
+     *
+     * @param projectConfig the ProjectConfig of the project
+     * @param branchName the name of the branch to be merged
+     * @return the names of the branches that the branch can be merged into
+     * @throws GitLabApiException if the branches of the project could not be scanned
+     */
+    public List<String> getTargetBranches(ProjectConfig projectConfig, String branchName) throws GitLabApiException {
+
+        lookupCount.incrementAndGet();
+        Integer projectId = projectConfig.getProjectId();
+        MergeSpecMatcher matcher = projectConfigSnapshot.getMatcher(projectConfig);
+
+        BranchIndex index = indexes.get(projectId);
+        if (index == null) {
+            index = gitLabClient.coalesce("branchIndex:" + projectId, () -> seed(projectId, matcher));
+        } else if (System.currentTimeMillis() - index.getSeededAt() > appConfig.getBranchIndexMaxAge()) {
+            staleCount.incrementAndGet();
+            refresh(projectId, matcher);
+        }
+
+        if (index.getMatcher() != matcher) {
+            BranchIndex seededIndex = index;
+            index = indexes.compute(projectId, (key, current) -> {
+                if (current != null && current.getMatcher() == matcher) {
+                    return (current);
+                }
+
+                rebuildCount.incrementAndGet();
+                return (new BranchIndex(matcher, current != null && current.isSeeded() ? current : seededIndex));
+            });
+        }
+
+        return (index.getTargetBranches(branchName));
+    }
+
+    /**
+     * Applies a push event to the index of its project. Nothing is done for a project that has no
+     * index yet, its branches will be scanned when the index is first needed.
+     *
+     * @param pushEvent the push event
+     */
+    public void onPush(PushHookEvent pushEvent) {
+
+        Integer projectId = pushEvent.getProjectId();
+        String branchName = pushEvent.getBranch();
+        if (projectId == null || branchName == null ||
+                (!indexes.containsKey(projectId) && !seedingIndexes.containsKey(projectId))) {
+            return;
+        }
+
+        if (projectConfigSnapshot.getProjectConfig(projectId) == null) {
+            seedingIndexes.remove(projectId);
+            indexes.remove(projectId);
+            return;
+        }
+
+        // The index being seeded first, it is installed before it stops being seeded so neither can miss the push
+        String after = pushEvent.getAfter();
+        boolean deleted = (after != null && after.matches(DELETED_COMMIT_REGEX));
+        seedingIndexes.computeIfPresent(projectId, (key, index) -> apply(index, branchName, deleted));
+        indexes.computeIfPresent(projectId, (key, index) -> apply(index, branchName, deleted));
+
+        (deleted ? removedCount : addedCount).incrementAndGet();
+    }
+
+    private static BranchIndex apply(BranchIndex index, String branchName, boolean deleted) {
+
+        if (deleted) {
+            index.remove(branchName);
+        } else {
+            index.add(branchName);
+        }
+
+        return (index);
+    }
+
+    /**
+     * Rescans the branches of an expired index in the background, unless a rescan is already running.
+     */
+    private void refresh(Integer projectId, MergeSpecMatcher matcher) {
+
+        if (!refreshing.add(projectId)) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    gitLabClient.coalesce("branchIndex:" + projectId, () -> seed(projectId, matcher));
+                } catch (GitLabApiException | RuntimeException e) {
+                    failedRefreshCount.incrementAndGet();
+                    logger.warn("Problem rescanning branches, serving the expired branch index, projectId={}, error={}",
+                            projectId, e.getMessage());
+                } finally {
+                    refreshing.remove(projectId);
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            refreshing.remove(projectId);
+        }
+    }
+
+    /**
+     * Seeds a new index for the project with a paged scan of the branches and then installs it. The index
+     * is registered as being seeded before the scan so that pushes received during the scan are applied to it.
+     */
+    private BranchIndex seed(Integer projectId, MergeSpecMatcher matcher) throws GitLabApiException {
+
+        long startTime = System.currentTimeMillis();
+        BranchIndex index = new BranchIndex(matcher);
+        seedingIndexes.put(projectId, index);
+
+        List<String> branchNames = new ArrayList<>();
+        try {
+            Pager<Branch> pager = gitLabClient.getBranches(projectId, appConfig.getBranchIndexPageSize());
+            while (pager.hasNext()) {
+                gitLabClient.nextPage(pager).forEach(branch -> branchNames.add(branch.getName()));
+            }
+        } catch (GitLabApiException | RuntimeException e) {
+            seedingIndexes.remove(projectId, index);
+            throw e;
+        }
+
+        index.seed(branchNames);
+        indexes.put(projectId, index);
+        seedingIndexes.remove(projectId, index);
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        scanCount.incrementAndGet();
+        scanTime.addAndGet(elapsed);
+        logger.info("Seeded branch index, projectId={}, numBranches={}, elapsedMs={}", projectId, index.getNumBranches(), elapsed);
+        return (index);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("branchIndex");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        long numBranches = 0;
+        for (BranchIndex index : indexes.values()) {
+            numBranches += index.getNumBranches();
+        }
+
+        long numScans = scanCount.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("projects", indexes.size());
+        metrics.put("branches", numBranches);
+        metrics.put("lookups", lookupCount.get());
+        metrics.put("scans", numScans);
+        metrics.put("avgScanMs", numScans > 0 ? scanTime.get() / numScans : 0);
+        metrics.put("staleLookups", staleCount.get());
+        metrics.put("failedRescans", failedRefreshCount.get());
+        metrics.put("rebuilds", rebuildCount.get());
+        metrics.put("added", addedCount.get());
+        metrics.put("removed", removedCount.get());
+        return (metrics);
+    }
+}
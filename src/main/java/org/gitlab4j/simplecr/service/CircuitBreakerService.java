@@ -0,0 +1,92 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.utils.Bulkhead;
+import org.gitlab4j.simplecr.utils.CircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class holds the circuit breakers for the remote dependencies of Simple-CR, the GitLab API and the
+ * SMTP server, and the bulkhead for the SMTP server. The GitLab API calls are already bounded by the
+ * concurrency limiter in the GitLabClient, which serves as its bulkhead. The webhook queue consults the
+ * GitLab breaker, and the email outbox the SMTP breaker, so that work that needs an unavailable
+ * dependency is deferred rather than failed.
+ */
+@Service
+public class CircuitBreakerService implements MetricsSource {
+
+    public static final String GITLAB = "gitlab";
+    public static final String SMTP = "smtp";
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerService.class);
+
+    private CircuitBreaker gitLabBreaker;
+    private CircuitBreaker smtpBreaker;
+    private Bulkhead smtpBulkhead;
+
+    @PostConstruct
+    void createBreakers() {
+
+        gitLabBreaker = new CircuitBreaker(GITLAB, appConfig.getGitLabBreakerFailureThreshold(),
+                appConfig.getGitLabBreakerOpenDuration(), appConfig.getBreakerHalfOpenProbes());
+        smtpBreaker = new CircuitBreaker(SMTP, appConfig.getSmtpBreakerFailureThreshold(),
+                appConfig.getSmtpBreakerOpenDuration(), appConfig.getBreakerHalfOpenProbes());
+        smtpBulkhead = new Bulkhead(SMTP, appConfig.getSmtpMaxConcurrent(), appConfig.getSmtpBulkheadTimeout());
+
+        logger.info("Created circuit breakers, gitLabFailureThreshold={}, gitLabOpenDuration={}ms, " +
+                "smtpFailureThreshold={}, smtpOpenDuration={}ms, smtpMaxConcurrent={}",
+                appConfig.getGitLabBreakerFailureThreshold(), appConfig.getGitLabBreakerOpenDuration(),
+                appConfig.getSmtpBreakerFailureThreshold(), appConfig.getSmtpBreakerOpenDuration(),
+                appConfig.getSmtpMaxConcurrent());
+    }
+
+    public CircuitBreaker getGitLabBreaker() {
+        return (gitLabBreaker);
+    }
+
+    public CircuitBreaker getSmtpBreaker() {
+        return (smtpBreaker);
+    }
+
+    public Bulkhead getSmtpBulkhead() {
+        return (smtpBulkhead);
+    }
+
+    /**
+     * Gets the name of an open dependency that webhook processing needs. Email is sent by the outbox
+     * sender, which waits out an open SMTP breaker itself, so only GitLab is checked.
+     *
+     * @return the name of the open dependency, or null if the dependencies are available
+     */
+    public String getOpenDependency() {
+        return (gitLabBreaker.isOpen() ? GITLAB : null);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("circuitBreakers");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        Map<String, Object> smtp = smtpBreaker.getMetrics();
+        smtp.put("bulkhead", smtpBulkhead.getMetrics());
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put(GITLAB, gitLabBreaker.getMetrics());
+        metrics.put(SMTP, smtp);
+        return (metrics);
+    }
+}
@@ -0,0 +1,187 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.OutboxEmail;
+import org.gitlab4j.simplecr.model.OutboxEmail.Status;
+import org.gitlab4j.simplecr.repository.EmailOutboxRepository;
+import org.gitlab4j.simplecr.service.EmailService.MailRejectedException;
+import org.gitlab4j.simplecr.utils.LatencyRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class provides a durable outbox for the emails sent by Simple-CR. Emails are rendered by the
+ * EmailService and saved to the email_outbox table in the same transaction as the Push record change
+ * they announce, so an email is queued if and only if the change is committed, and the webhook and
+ * /submit request threads never wait on the SMTP server.
+ *
+ * A background sender drains the due emails on a bounded pool of threads. A failed send is retried with
+ * exponential backoff, an email that fails on every attempt is kept in the table as DEAD. While the SMTP
+ * circuit breaker is open the outbox is not drained, and a send turned away without trying the SMTP
+ * server, by the breaker or the bulkhead, does not count as an attempt.
+ */
+@Service
+public class EmailOutboxService implements MetricsSource {
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private CircuitBreakerService circuitBreakerService;
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private ExecutorService senderExecutor;
+    private final LatencyRecorder sendLatency = new LatencyRecorder();
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong deferredCount = new AtomicLong();
+    private final AtomicLong deadLetteredCount = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        senderExecutor = Executors.newFixedThreadPool(Math.max(1, appConfig.getEmailOutboxConcurrency()),
+                new CustomizableThreadFactory("email-sender-"));
+    }
+
+    @PreDestroy
+    void stop() {
+        senderExecutor.shutdownNow();
+    }
+
+    /**
+     * Saves a rendered email to the outbox. Call this within the transaction that commits the change
+     * the email announces.
+     *
+     * @param email the rendered email
+     */
+    public void enqueue(OutboxEmail email) {
+
+        Date now = new Date();
+        email.setCreatedAt(now);
+        email.setNextAttemptAt(now);
+        email.setStatus(Status.PENDING);
+        email.setAttempts(0);
+        emailOutboxRepository.save(email);
+        enqueuedCount.incrementAndGet();
+    }
+
+    /**
+     * Sends the due emails, a batch at a time, until none are left or the SMTP server becomes unavailable.
+     */
+    @Scheduled(fixedDelayString = "${simplecr.email-outbox-poll-interval:5000}")
+    public void drainOutbox() {
+
+        while (!circuitBreakerService.getSmtpBreaker().isOpen()) {
+
+            List<OutboxEmail> batch = emailOutboxRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                    Status.PENDING, new Date(), PageRequest.of(0, appConfig.getEmailOutboxBatchSize()));
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<CompletableFuture<Void>> sends = new ArrayList<>(batch.size());
+            for (OutboxEmail email : batch) {
+                sends.add(CompletableFuture.runAsync(() -> send(email), senderExecutor));
+            }
+
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[sends.size()])).join();
+            if (batch.size() < appConfig.getEmailOutboxBatchSize()) {
+                return;
+            }
+        }
+    }
+
+    private void send(OutboxEmail email) {
+
+        long startTime = System.currentTimeMillis();
+        try {
+
+            emailService.deliver(email);
+            sendLatency.record(System.currentTimeMillis() - startTime);
+            emailOutboxRepository.delete(email);
+            sentCount.incrementAndGet();
+
+        } catch (MailRejectedException mre) {
+
+            // The SMTP server was not tried, leave the email for the next drain without counting an attempt
+            deferredCount.incrementAndGet();
+
+        } catch (Exception e) {
+
+            failedCount.incrementAndGet();
+            int attempts = email.getAttempts() + 1;
+            email.setAttempts(attempts);
+            email.setLastError(truncate(e.getMessage(), 1024));
+            if (attempts >= appConfig.getEmailOutboxMaxAttempts()) {
+                email.setStatus(Status.DEAD);
+                deadLetteredCount.incrementAndGet();
+                logger.error("Giving up on email after {} attempts, id={}, subject={}, error={}",
+                        attempts, email.getId(), email.getSubject(), e.getMessage());
+            } else {
+                long backoff = Math.min(appConfig.getEmailOutboxMaxBackoff(),
+                        appConfig.getEmailOutboxBackoff() << Math.min(attempts - 1, 20));
+                email.setNextAttemptAt(new Date(System.currentTimeMillis() + backoff));
+                logger.warn("Problem sending email, will retry, id={}, attempts={}, backoffMs={}, error={}",
+                        email.getId(), attempts, backoff, e.getMessage());
+            }
+
+            emailOutboxRepository.save(email);
+        }
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return (value != null && value.length() > maxLength ? value.substring(0, maxLength) : value);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("emailOutbox");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("depth", emailOutboxRepository.countByStatus(Status.PENDING));
+        metrics.put("dead", emailOutboxRepository.countByStatus(Status.DEAD));
+
+        Optional<OutboxEmail> oldest = emailOutboxRepository.findFirstByStatusOrderByIdAsc(Status.PENDING);
+        metrics.put("oldestAgeMs", oldest.isPresent() ? System.currentTimeMillis() - oldest.get().getCreatedAt().getTime() : 0L);
+
+        metrics.put("enqueued", enqueuedCount.get());
+        metrics.put("sent", sentCount.get());
+        metrics.put("failed", failedCount.get());
+        metrics.put("deferred", deferredCount.get());
+        metrics.put("deadLettered", deadLetteredCount.get());
+        metrics.put("sendLatency", sendLatency.getMetrics());
+        return (metrics);
+    }
+}
@@ -8,22 +8,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import java.util.TreeSet;
 
 import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 
-import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.models.Author;
-import org.gitlab4j.api.models.Member;
 import org.gitlab4j.api.models.MergeRequest;
 import org.gitlab4j.api.models.Project;
 import org.gitlab4j.api.models.User;
 import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.OutboxEmail;
 import org.gitlab4j.simplecr.model.ProjectConfig;
-import org.gitlab4j.simplecr.model.ProjectConfig.MailToType;
+import org.gitlab4j.simplecr.utils.Bulkhead;
+import org.gitlab4j.simplecr.utils.CircuitBreaker;
 import org.gitlab4j.simplecr.utils.HashUtils;
 import org.gitlab4j.simplecr.utils.StringUtils;
 import org.slf4j.Logger;
@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
@@ -38,7 +39,8 @@ import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
 /**
- * 
+ * This class renders the code review and merge request emails, which are queued in the email outbox,
+ * and delivers the queued emails to the SMTP server for the EmailOutboxService.
  */
 @Service
 public class EmailService {
@@ -53,7 +55,13 @@ public class EmailService {
     private TemplateEngine htmlTemplateEngine;
 
     @Autowired
-    private GitLabApi gitLabApi;
+    private ProjectCacheService projectCacheService;
+
+    @Autowired
+    private ReviewerResolutionService reviewerResolutionService;
+
+    @Autowired
+    private CircuitBreakerService circuitBreakerService;
 
     @Value("${server.servlet.context-path}")
     private String contextPath;
@@ -72,27 +80,47 @@ public class EmailService {
     private static final String MERGE_REQUEST_TEMPLATE = "email/merge-request";
     private static final String MERGE_REQUEST_SUBJECT = "Code Review/Merge Request";
 
+    /**
+     * Thrown when an email is turned away without trying the SMTP server, because the SMTP circuit breaker
+     * is open, or half-open with its probe already in flight, or no SMTP connection slot was free in time.
+     */
+    public static class MailRejectedException extends MailSendException {
+
+        private static final long serialVersionUID = 1L;
+
+        public MailRejectedException(String message) {
+            super(message);
+        }
+    }
+
     public EmailService() {
     }
 
-    public boolean sendMergeRequestEmail(ProjectConfig projectConfig, MergeRequest mergeRequest) {
+    /**
+     * Renders the merge request email to the reviewers of the project.
+     *
+     * @param projectConfig the ProjectConfig of the project
+     * @param mergeRequest the merge request that was submitted
+     * @return the rendered email, or null if email is not enabled or the email could not be rendered
+     */
+    public OutboxEmail renderMergeRequestEmail(ProjectConfig projectConfig, MergeRequest mergeRequest) {
 
         if (!isEmailEnabled()) {
-            return (false);
+            return (null);
         }
 
         Integer projectId = mergeRequest.getProjectId();
         Project project;
         try {
-            project = gitLabApi.getProjectApi().getProject(projectId);
+            project = projectCacheService.getProject(projectId);
         } catch (GitLabApiException gle) {
             logger.error("Problem getting project info, httpStatus=" + gle.getHttpStatus() + ", error=" + gle.getMessage(), gle);
-            return (false);
+            return (null);
         }
 
         if (project.getId() == null || !project.getId().equals(projectId)) {
             logger.error("Problem getting project info, projectId=" + projectId + ", project.id=" + project.getId());
-            return (false);
+            return (null);
         }
 
         Author author = mergeRequest.getAuthor();
@@ -104,7 +132,7 @@ public class EmailService {
         Collection<String> reviewers = getReviewers(projectConfig, project.getNamespace().getId(), author);
         if (reviewers == null || reviewers.size() < 1) {
             logger.warn("No reviewers are configured for this project.");
-            return (false);
+            return (null);
         }
 
         final Context context = new Context();
@@ -120,19 +148,31 @@ public class EmailService {
         try {
 
             String htmlContent = htmlTemplateEngine.process(MERGE_REQUEST_TEMPLATE, context);        
-            send(reviewers, MERGE_REQUEST_SUBJECT, htmlContent);
-            return (true);
+            List<InternetAddress> toAddresses = new ArrayList<InternetAddress>(reviewers.size());
+            for (String email : reviewers) {
+                toAddresses.add(new InternetAddress(email, null, StandardCharsets.UTF_8.name()));
+            }
+
+            return (newOutboxEmail(toAddresses, MERGE_REQUEST_SUBJECT, htmlContent));
 
         } catch (Exception e) {
-            logger.error("Something went wrong while sending code review email, error=" + e.getMessage(), e);
-            return (false);
+            logger.error("Something went wrong while rendering code review email, error=" + e.getMessage(), e);
+            return (null);
         }
     }
 
-    boolean sendCodeReviewEmail(User user, Project project, String branch) {
+    /**
+     * Renders the code review request email to the user that pushed the branch.
+     *
+     * @param user the user that pushed the branch
+     * @param project the project the branch was pushed to
+     * @param branch the name of the pushed branch
+     * @return the rendered email, or null if email is not enabled or the email could not be rendered
+     */
+    OutboxEmail renderCodeReviewEmail(User user, Project project, String branch) {
 
         if (!isEmailEnabled()) {
-            return (false);
+            return (null);
         }
 
         /*
@@ -158,37 +198,41 @@ public class EmailService {
         try {
 
             String htmlContent = htmlTemplateEngine.process(CODE_REVIEW_TEMPLATE, context);        
-            send(user.getEmail(), user.getName(), CODE_REVIEW_SUBJECT, htmlContent);
-            return (true);
+            InternetAddress toAddress = new InternetAddress(user.getEmail(), user.getName(), StandardCharsets.UTF_8.name());
+            return (newOutboxEmail(Arrays.asList(toAddress), CODE_REVIEW_SUBJECT, htmlContent));
 
         } catch (Exception e) {
-            logger.error("Something went wrong while sending code review email, error=" + e.getMessage(), e);
-            return (false);
+            logger.error("Something went wrong while rendering code review email, error=" + e.getMessage(), e);
+            return (null);
         }
     }
 
-    void send(String email, String name, String subject, String htmlContent)
-            throws MailException, MessagingException, UnsupportedEncodingException {
-        EmailAddress emailAddress = new EmailAddress(email, name);
-        sendMail(Arrays.asList(emailAddress), subject, htmlContent);
+    private OutboxEmail newOutboxEmail(List<InternetAddress> toAddresses, String subject, String htmlContent) {
+        OutboxEmail email = new OutboxEmail();
+        email.setRecipients(InternetAddress.toString(toAddresses.toArray(new InternetAddress[toAddresses.size()])));
+        email.setSubject(subject);
+        email.setHtmlContent(htmlContent);
+        return (email);
     }
 
-    void send(Collection<String> emailList, String subject, String htmlContent)
-            throws MailException, MessagingException, UnsupportedEncodingException {
-
-        List<EmailAddress> toEmailList = new ArrayList<EmailAddress>(emailList.size());
-        for (String email : emailList) {
-            toEmailList.add(new EmailAddress(email, null));
-        }
-
-        sendMail(toEmailList, subject, htmlContent);
+    /**
+     * Sends a queued email to the SMTP server.
+     *
+     * @param email the email to send
+     * @throws MailRejectedException if the email was turned away without trying the SMTP server
+     * @throws MailException if the SMTP server could not be reached or did not accept the email
+     * @throws MessagingException if the email could not be built
+     * @throws UnsupportedEncodingException if the from address could not be encoded
+     */
+    public void deliver(OutboxEmail email) throws MailException, MessagingException, UnsupportedEncodingException {
+        sendMail(InternetAddress.parse(email.getRecipients()), email.getSubject(), email.getHtmlContent());
     }
 
     private boolean isEmailEnabled() {
         return (hasText(smtpHost) && smtpPort > 0);
     }
 
-    private void sendMail(List<EmailAddress> toEmailList, String subject, String htmlContent)
+    private void sendMail(InternetAddress[] toAddresses, String subject, String htmlContent)
             throws MailException, MessagingException, UnsupportedEncodingException {
 
         MimeMessage message = emailSender.createMimeMessage();
@@ -196,24 +240,37 @@ public class EmailService {
                 MimeMessageHelper.MULTIPART_MODE_MIXED_RELATED,
                 StandardCharsets.UTF_8.name());
 
-        for (EmailAddress toEmail : toEmailList) {
-            helper.addTo(toEmail.email, toEmail.name);
+        for (InternetAddress toAddress : toAddresses) {
+            helper.addTo(toAddress);
         }
 
         helper.setFrom(appConfig.getFromEmail(),  appConfig.getFromName());
         helper.setText(htmlContent, true);
         helper.setSubject(subject);
-        emailSender.send(message);
-    }
 
-    private class EmailAddress {
+        Bulkhead bulkhead = circuitBreakerService.getSmtpBulkhead();
+        if (!bulkhead.tryAcquire()) {
+            throw new MailRejectedException("Timed out waiting for an SMTP connection slot, mail not sent");
+        }
 
-        private String email;
-        private String name;
+        try {
+
+            CircuitBreaker breaker = circuitBreakerService.getSmtpBreaker();
+            if (!breaker.tryAcquire()) {
+                throw new MailRejectedException("The SMTP circuit breaker is open, mail not sent");
+            }
+
+            try {
+                emailSender.send(message);
+            } catch (MailException me) {
+                breaker.onFailure();
+                throw me;
+            }
 
-        EmailAddress(String email, String name) {
-            this.email = email;
-            this.name = name;
+            breaker.onSuccess();
+
+        } finally {
+            bulkhead.release();
         }
     }
 
@@ -227,37 +284,8 @@ public class EmailService {
      */
     private Collection<String> getReviewers(ProjectConfig projectConfig, int groupId, Author author) {
 
-        TreeSet<String> reviewers = new TreeSet<String>();
-        List<Member> members = null;
-        if (MailToType.GROUP.equals(projectConfig.getMailToType())) {
-
-            try {
-                members = gitLabApi.getGroupApi().getMembers(groupId);
-                logger.info("GROUP reviewer list, numMembers=" + (members == null ? 0 : members.size()));
-            } catch (GitLabApiException e) {
-                logger.error("Something went wrong while getting group members, error=" + e.getMessage(), e);
-            }
-
-        } else if (MailToType.PROJECT.equals(projectConfig.getMailToType())) {
-
-            try {
-                members = gitLabApi.getProjectApi().getMembers(projectConfig.getProjectId());
-                logger.info("PROJECT reviewer list, numMembers=" + (members == null ? 0 : members.size()));
-            } catch (GitLabApiException e) {
-                logger.error("Something went wrong while getting project members, error=" + e.getMessage(), e);
-            }
-        }
-
-        if (members != null) {
-            for (Member member : members) {
-                Optional<User> optionalUser = gitLabApi.getUserApi().getOptionalUser(member.getId());
-                if (optionalUser.isPresent()) {
-                    String email = optionalUser.get().getEmail();
-                    if (email != null && email.trim().length() > 0)
-                        reviewers.add(email);
-                }
-            }
-        }
+        // The group or project member emails are resolved in parallel and memoized
+        TreeSet<String> reviewers = new TreeSet<String>(reviewerResolutionService.getMemberEmails(projectConfig, groupId));
 
         List<String> additionalMailToList = projectConfig.getAdditionalMailTo();
         if (additionalMailToList != null) {
@@ -0,0 +1,442 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.Pager;
+import org.gitlab4j.api.models.Branch;
+import org.gitlab4j.api.models.Member;
+import org.gitlab4j.api.models.MergeRequest;
+import org.gitlab4j.api.models.Project;
+import org.gitlab4j.api.models.ProjectHook;
+import org.gitlab4j.api.models.User;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.utils.CircuitBreaker;
+import org.gitlab4j.simplecr.utils.PriorityLimiter;
+import org.gitlab4j.simplecr.utils.SingleFlight;
+import org.gitlab4j.simplecr.utils.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class is the single point through which Simple-CR calls the GitLab API. Concurrent identical
+ * read calls, such as the getProject() and getBranch() calls made by several hooks and /load requests
+ * for a freshly pushed branch, share one in-flight call and its result or exception. The shared results
+ * are handed to every waiting caller and must not be modified. Writes are not coalesced.
+ *
+ * Every call to GitLab first takes a token from a rate limiting token bucket, waiting for it without
+ * holding anything, and is then made holding a permit from an adaptive concurrency limiter. Calls made
+ * for interactive requests (/load and /submit) are admitted to the limiter ahead of background webhook
+ * work. When GitLab answers with a 429 (Too Many Requests) or 503 (Service Unavailable) the concurrency
+ * limit and rate are halved, all calls are paused for the throttle backoff and the call is retried; they
+ * are raised back step by step as calls succeed. The gitlab4j API does not expose
+ * the RateLimit-Remaining and Retry-After response headers, so the throttle responses themselves drive the
+ * adaptation and the backoff is configured.
+ *
+ * Calls are also made through the GitLab circuit breaker. Server errors, connection failures and slow calls
+ * count as failures, once GitLab keeps failing the breaker opens and calls fail fast with a
+ * GitLabApiException until a half-open probe call succeeds. The concurrency limiter is the bulkhead that
+ * bounds the number of threads that can be tied up waiting on GitLab.
+ */
+@Service
+public class GitLabClient implements MetricsSource {
+
+    public static final int PRIORITY_BACKGROUND = 0;
+    public static final int PRIORITY_INTERACTIVE = 1;
+
+    private static final String[] PRIORITY_NAMES = { "background", "interactive" };
+
+    private static final String BREAKER_OPEN_MESSAGE = "The GitLab API circuit breaker is open, call not made";
+
+    private static final ThreadLocal<Boolean> interactive = new ThreadLocal<>();
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private GitLabApi gitLabApi;
+
+    @Autowired
+    private CircuitBreakerService circuitBreakerService;
+
+    private static final Logger logger = LoggerFactory.getLogger(GitLabClient.class);
+
+    private final SingleFlight<String> singleFlight = new SingleFlight<>();
+    private PriorityLimiter limiter;
+    private TokenBucket tokenBucket;
+
+    private int successesSinceChange;
+    private long lastDecreaseAt;
+
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+    private final AtomicLong[] queueDelayCounts = { new AtomicLong(), new AtomicLong() };
+    private final AtomicLong[] queueDelayTimes = { new AtomicLong(), new AtomicLong() };
+    private final AtomicLong[] maxQueueDelays = { new AtomicLong(), new AtomicLong() };
+
+    /**
+     * A GitLab API call.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface GitLabCall<T> extends SingleFlight.Call<T, GitLabApiException> {
+    }
+
+    /**
+     * Thrown when the GitLab circuit breaker turns a call away without making it, either because the
+     * breaker is open or because it is half-open and its probe call is already in flight.
+     */
+    public static class CircuitOpenException extends GitLabApiException {
+
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException() {
+            super(BREAKER_OPEN_MESSAGE);
+        }
+    }
+
+    /**
+     * Returns true if the exception, or one of its causes, is a call turned away by the GitLab circuit breaker.
+     *
+     * @param e the exception to check
+     * @return true if the exception was caused by a call turned away by the GitLab circuit breaker
+     */
+    public static boolean isCircuitOpen(Throwable e) {
+
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CircuitOpenException) {
+                return (true);
+            }
+        }
+
+        return (false);
+    }
+
+    @PostConstruct
+    void createLimiters() {
+        limiter = new PriorityLimiter("gitlab", appConfig.getGitLabMaxConcurrent(), Integer.MAX_VALUE, PRIORITY_NAMES.length);
+        tokenBucket = new TokenBucket(appConfig.getGitLabRateLimit(), appConfig.getGitLabRateBurst());
+        logger.info("Created GitLab API limits, maxConcurrent={}, minConcurrent={}, rateLimit={}, rateBurst={}",
+                appConfig.getGitLabMaxConcurrent(), appConfig.getGitLabMinConcurrent(),
+                appConfig.getGitLabRateLimit(), appConfig.getGitLabRateBurst());
+    }
+
+    /**
+     * Marks the GitLab API calls made by the current thread as made for an interactive request,
+     * they are then admitted ahead of the calls made for background work.
+     *
+     * @param isInteractive true if the calls are made for an interactive request
+     */
+    public static void setInteractive(boolean isInteractive) {
+        if (isInteractive) {
+            interactive.set(Boolean.TRUE);
+        } else {
+            interactive.remove();
+        }
+    }
+
+    /**
+     * @return true if the GitLab API calls made by the current thread are made for an interactive request
+     */
+    public static boolean isInteractive() {
+        return (Boolean.TRUE.equals(interactive.get()));
+    }
+
+    /**
+     * Runs a composite of GitLab API calls, or shares the result of the in-flight composite with the
+     * same key. The calls made by the composite must themselves go through this client.
+     *
+     * @param key the key that identifies identical calls
+     * @param call the call to run
+     * @return the result of the call
+     * @throws GitLabApiException if any error occurs
+     */
+    public <T> T coalesce(String key, GitLabCall<T> call) throws GitLabApiException {
+        return (singleFlight.execute(key, call));
+    }
+
+    public Project getProject(Integer projectId) throws GitLabApiException {
+        return (read("project:" + projectId, () -> gitLabApi.getProjectApi().getProject(projectId)));
+    }
+
+    public Project getProject(String groupName, String projectName) throws GitLabApiException {
+        return (read("project:" + groupName + "/" + projectName, () -> gitLabApi.getProjectApi().getProject(groupName, projectName)));
+    }
+
+    public User getUser(Integer userId) throws GitLabApiException {
+        return (read("user:" + userId, () -> gitLabApi.getUserApi().getUser(userId)));
+    }
+
+    public List<User> findUsers(String emailOrUsername) throws GitLabApiException {
+        return (read("users:" + emailOrUsername, () -> gitLabApi.getUserApi().findUsers(emailOrUsername)));
+    }
+
+    public Branch getBranch(Integer projectId, String branchName) throws GitLabApiException {
+        return (read("branch:" + projectId + ":" + branchName, () -> gitLabApi.getRepositoryApi().getBranch(projectId, branchName)));
+    }
+
+    public MergeRequest getMergeRequest(Integer projectId, Integer mergeRequestIid) throws GitLabApiException {
+        return (read("mergeRequest:" + projectId + ":" + mergeRequestIid,
+                () -> gitLabApi.getMergeRequestApi().getMergeRequest(projectId, mergeRequestIid)));
+    }
+
+    /**
+     * Gets a pager over the members of a group. Pagers are stateful so this call is not coalesced,
+     * callers coalesce the work done with the pager using {@link #coalesce(String, GitLabCall)}.
+     */
+    public Pager<Member> getGroupMembers(Integer groupId, int itemsPerPage) throws GitLabApiException {
+        return (invoke(() -> gitLabApi.getGroupApi().getMembers(groupId, itemsPerPage)));
+    }
+
+    /**
+     * Gets a pager over the branches of a project. Pagers are stateful so this call is not coalesced,
+     * callers coalesce the work done with the pager using {@link #coalesce(String, GitLabCall)}.
+     */
+    public Pager<Branch> getBranches(Integer projectId, int itemsPerPage) throws GitLabApiException {
+        return (invoke(() -> gitLabApi.getRepositoryApi().getBranches(projectId, itemsPerPage)));
+    }
+
+    /**
+     * Gets a pager over the members of a project. Pagers are stateful so this call is not coalesced,
+     * callers coalesce the work done with the pager using {@link #coalesce(String, GitLabCall)}.
+     */
+    public Pager<Member> getProjectMembers(Integer projectId, int itemsPerPage) throws GitLabApiException {
+        return (invoke(() -> gitLabApi.getProjectApi().getMembers(projectId, itemsPerPage)));
+    }
+
+    /**
+     * Fetches the next page of a pager.
+     */
+    public <T> List<T> nextPage(Pager<T> pager) throws GitLabApiException {
+        return (invoke(pager::next));
+    }
+
+    public MergeRequest createMergeRequest(Integer projectId, String sourceBranch, String targetBranch,
+            String title, String description) throws GitLabApiException {
+        return (invoke(() -> gitLabApi.getMergeRequestApi().createMergeRequest(projectId, sourceBranch, targetBranch, title, description, null)));
+    }
+
+    public ProjectHook addHook(Project project, String url, ProjectHook hookConfig, String secretToken) throws GitLabApiException {
+        return (invoke(() -> gitLabApi.getProjectApi().addHook(project, url, hookConfig, false, secretToken)));
+    }
+
+    public void deleteHook(Integer projectId, Integer hookId) throws GitLabApiException {
+        invoke(() -> {
+            gitLabApi.getProjectApi().deleteHook(projectId, hookId);
+            return (null);
+        });
+    }
+
+    private <T> T read(String key, GitLabCall<T> call) throws GitLabApiException {
+        return (singleFlight.execute(key, () -> invoke(call)));
+    }
+
+    /**
+     * Makes a single GitLab API call through the circuit breaker, under the concurrency limit and
+     * rate limit, retrying it when GitLab throttles it.
+     */
+    private <T> T invoke(GitLabCall<T> call) throws GitLabApiException {
+
+        CircuitBreaker breaker = circuitBreakerService.getGitLabBreaker();
+        int priority = (isInteractive() ? PRIORITY_INTERACTIVE : PRIORITY_BACKGROUND);
+        for (int attempt = 0; ; attempt++) {
+
+            if (breaker.isOpen()) {
+                throw new CircuitOpenException();
+            }
+
+            // Wait out the rate limit and any throttle pause before taking a permit, so a paused call
+            // does not hold a slot the calls that are ready to go could use
+            long queuedAt = System.currentTimeMillis();
+            sleep(tokenBucket.reserve());
+            if (!limiter.acquire(priority, appConfig.getGitLabMaxQueueWait())) {
+                timedOutCount.incrementAndGet();
+                throw new GitLabApiException("Timed out waiting to call the GitLab API");
+            }
+
+            try {
+
+                if (!breaker.tryAcquire()) {
+                    throw new CircuitOpenException();
+                }
+
+                long startTime = System.currentTimeMillis();
+                recordQueueDelay(priority, startTime - queuedAt);
+
+                T result;
+                try {
+                    result = call.call();
+                } catch (GitLabApiException glae) {
+                    if (isServerFailure(glae)) {
+                        breaker.onFailure();
+                    } else {
+                        breaker.onSuccess();
+                    }
+
+                    throw glae;
+                } catch (RuntimeException | Error e) {
+                    breaker.onFailure();
+                    throw e;
+                }
+
+                long elapsed = System.currentTimeMillis() - startTime;
+                if (elapsed > appConfig.getGitLabSlowCallThreshold()) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+
+                onCompleted(elapsed);
+                return (result);
+
+            } catch (GitLabApiException glae) {
+
+                if (!isThrottled(glae)) {
+                    throw glae;
+                }
+
+                onThrottled(attempt, glae);
+                if (attempt >= appConfig.getGitLabMaxRetries()) {
+                    throw glae;
+                }
+
+                retryCount.incrementAndGet();
+
+            } finally {
+                limiter.release();
+            }
+        }
+    }
+
+    /**
+     * A 4xx response means GitLab is up and answered the call, a 5xx response, or no response at all,
+     * counts against the circuit breaker.
+     */
+    private static boolean isServerFailure(GitLabApiException glae) {
+        int status = glae.getHttpStatus();
+        return (status == 0 || status >= 500);
+    }
+
+    private static boolean isThrottled(GitLabApiException glae) {
+        int status = glae.getHttpStatus();
+        return (status == 429 || status == 503);
+    }
+
+    private static void sleep(long millis) throws GitLabApiException {
+
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new GitLabApiException("Interrupted while waiting to call the GitLab API");
+        }
+    }
+
+    private void recordQueueDelay(int priority, long delay) {
+        queueDelayCounts[priority].incrementAndGet();
+        queueDelayTimes[priority].addAndGet(delay);
+        maxQueueDelays[priority].accumulateAndGet(delay, Math::max);
+    }
+
+    /**
+     * Raises the concurrency limit by one, and the rate by a tenth of the configured rate, once a
+     * limit's worth of calls have completed in time. A slow call counts as congestion.
+     */
+    private synchronized void onCompleted(long elapsed) {
+
+        if (elapsed > appConfig.getGitLabSlowCallThreshold()) {
+            decrease(false);
+            return;
+        }
+
+        int maxConcurrent = limiter.getMaxConcurrent();
+        if (++successesSinceChange < maxConcurrent) {
+            return;
+        }
+
+        successesSinceChange = 0;
+        if (maxConcurrent < appConfig.getGitLabMaxConcurrent()) {
+            limiter.setMaxConcurrent(maxConcurrent + 1);
+        }
+
+        double configuredRate = appConfig.getGitLabRateLimit();
+        double rate = tokenBucket.getRate();
+        if (configuredRate > 0 && rate < configuredRate) {
+            tokenBucket.setRate(Math.min(configuredRate, rate + configuredRate / 10));
+        }
+    }
+
+    private synchronized void onThrottled(int attempt, GitLabApiException glae) {
+
+        throttledCount.incrementAndGet();
+        decrease(true);
+
+        long backoff = appConfig.getGitLabThrottleBackoff() << Math.min(attempt, 5);
+        tokenBucket.pause(backoff);
+        logger.warn("GitLab API call was throttled, httpStatus={}, attempt={}, backoffMs={}, maxConcurrent={}, rate={}",
+                glae.getHttpStatus(), attempt + 1, backoff, limiter.getMaxConcurrent(), tokenBucket.getRate());
+    }
+
+    /**
+     * Halves the concurrency limit, and the rate if throttled, at most once per throttle backoff period
+     * so a burst of failing calls that were already in flight only counts once.
+     */
+    private void decrease(boolean throttled) {
+
+        long now = System.currentTimeMillis();
+        successesSinceChange = 0;
+        if (now - lastDecreaseAt < appConfig.getGitLabThrottleBackoff()) {
+            return;
+        }
+
+        lastDecreaseAt = now;
+        limiter.setMaxConcurrent(Math.max(appConfig.getGitLabMinConcurrent(), limiter.getMaxConcurrent() / 2));
+
+        double configuredRate = appConfig.getGitLabRateLimit();
+        if (throttled && configuredRate > 0) {
+            tokenBucket.setRate(Math.max(configuredRate / 10, tokenBucket.getRate() / 2));
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("gitLabClient");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        Map<String, Object> queueDelays = new LinkedHashMap<>();
+        for (int i = 0; i < PRIORITY_NAMES.length; i++) {
+            long count = queueDelayCounts[i].get();
+            Map<String, Object> queueDelay = new LinkedHashMap<>();
+            queueDelay.put("calls", count);
+            queueDelay.put("avgMs", count > 0 ? queueDelayTimes[i].get() / count : 0);
+            queueDelay.put("maxMs", maxQueueDelays[i].get());
+            queueDelays.put(PRIORITY_NAMES[i], queueDelay);
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>(singleFlight.getMetrics());
+        metrics.put("throttled", throttledCount.get());
+        metrics.put("retries", retryCount.get());
+        metrics.put("timedOut", timedOutCount.get());
+        metrics.put("queueDelay", queueDelays);
+        metrics.put("concurrency", limiter.getMetrics());
+        metrics.put("rateLimit", tokenBucket.getMetrics());
+        return (metrics);
+    }
+}
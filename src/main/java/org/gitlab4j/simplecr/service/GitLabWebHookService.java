@@ -2,29 +2,38 @@ package org.gitlab4j.simplecr.service;
 
 
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.models.MergeRequest;
 import org.gitlab4j.api.models.Project;
 import org.gitlab4j.api.models.User;
-import org.gitlab4j.api.webhook.Event;
 import org.gitlab4j.api.webhook.MergeRequestEvent;
-import org.gitlab4j.api.webhook.MergeRequestEvent.ObjectAttributes;
 import org.gitlab4j.api.webhook.PushEvent;
 import org.gitlab4j.api.webhook.WebHookListener;
 import org.gitlab4j.api.webhook.WebHookManager;
-import org.gitlab4j.simplecr.model.MergeSpec;
+import org.gitlab4j.simplecr.beans.HookEvent;
+import org.gitlab4j.simplecr.beans.MergeRequestHookEvent;
+import org.gitlab4j.simplecr.beans.PushHookEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.OutboxEmail;
 import org.gitlab4j.simplecr.model.ProjectConfig;
 import org.gitlab4j.simplecr.model.Push;
-import org.gitlab4j.simplecr.repository.MergeSpecRepository;
-import org.gitlab4j.simplecr.repository.ProjectConfigRepository;
 import org.gitlab4j.simplecr.repository.PushRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 
@@ -35,78 +44,197 @@ import org.springframework.util.StringUtils;
  * We track the lifecycle of the code review request here and update a Push record. This makes sure
  * we are not doing additional requests on the same branch that has yet to be reviewed.
  *
+ * The events are handled as compact HookEvents, the WebHookListener methods adapt the full gitlab4j
+ * events for the webhook requests that are not queued.
+ *
+ * An event is only rejected when GitLab says that what it refers to does not exist (a 404). Any other
+ * failure to look something up, or to do so in time, throws a RetryableEventException so that the event
+ * is kept and handled again rather than dropped.
  */
 @Service
-public class GitLabWebHookService extends WebHookManager implements WebHookListener {
+public class GitLabWebHookService extends WebHookManager implements WebHookListener, MetricsSource {
+
+    /**
+     * The stages of the push pipeline, in the order they are run. The local stages only look at the
+     * payload or the local database and are run first, the remote stages call the GitLab API and are
+     * only run for pushes that pass all the local stages. The remote stages do not depend on each other
+     * and are run concurrently under a single time budget, the first one to fail cancels the others.
+     * A remote stage only rejects a push when GitLab answers with a 404.
+     */
+    public enum PushStage {
+
+        // Local stages
+        BRANCH_NAME, PROJECT_CONFIG, MERGE_SPEC, BRANCH_DELETED, PENDING_REVIEW, ALREADY_NOTIFIED,
+
+        // Remote stages
+        PROJECT, USER, BRANCH,
+
+        // The push passed all the stages
+        ACCEPTED;
+    }
+
+    /**
+     * How much of the outcome of an accepted push or merge request event is acted upon.
+     */
+    public enum HandleMode {
+
+        // Record the push and send the code review email
+        NORMAL,
+
+        // Record the push but do not send the code review email
+        NO_EMAIL,
+
+        // Only run the checks, nothing is recorded or sent
+        DRY_RUN;
+    }
+
+    /**
+     * Thrown when an event could not be handled because of a failure that may pass, such as a GitLab
+     * error other than a 404 or a lookup that did not finish in time. The event should be handled again.
+     */
+    public static class RetryableEventException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public RetryableEventException(String message) {
+            super(message);
+        }
+
+        public RetryableEventException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static final int NOT_FOUND = 404;
+
+    private static final EnumSet<PushStage> LOCAL_STAGES = EnumSet.range(PushStage.BRANCH_NAME, PushStage.ALREADY_NOTIFIED);
+    private static final EnumSet<PushStage> REMOTE_STAGES = EnumSet.range(PushStage.PROJECT, PushStage.BRANCH);
 
     @Autowired
-    private ProjectConfigRepository projectConfigRepository;
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private ProjectConfigSnapshotService projectConfigSnapshot;
 
     @Autowired
     private PushRepository pushRepository;
     
     @Autowired
-    private MergeSpecRepository mergeSpecRepository;
+    private EmailService emailService;
 
     @Autowired
-    private EmailService emailService;
+    private GitLabClient gitLabClient;
 
     @Autowired
-    private GitLabApi gitLabApi;
+    private ProjectCacheService projectCacheService;
+
+    @Autowired
+    private UserDirectoryService userDirectoryService;
+
+    @Autowired
+    private IoExecutorService ioExecutorService;
+
+    @Autowired
+    private BranchIndexService branchIndexService;
+
+    @Autowired
+    private ReviewSnapshotService reviewSnapshotService;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
     private static final Logger logger = LoggerFactory.getLogger(GitLabWebHookService.class);
 
+    // The number of pushes rejected by each stage, and the number accepted
+    private final Map<PushStage, AtomicLong> stageCounts = new EnumMap<>(PushStage.class);
+
     public GitLabWebHookService() {
+
         addListener(this);
+
+        for (PushStage stage : PushStage.values()) {
+            stageCounts.put(stage, new AtomicLong());
+        }
     }
 
     /**
-     * This method is called when a merge request is either created or changes state. We use it to update the Push record
-     * for the branch. This allows us to eliminate sending out multiple notifications.
+     * Handles a compact push or merge request event.
      *
-     * @param mergeRequestEvent
+     * @param hookEvent the event to handle
      */
+    public void handleHookEvent(HookEvent hookEvent) {
+
+        if (hookEvent instanceof PushHookEvent) {
+            handlePushEvent((PushHookEvent) hookEvent, HandleMode.NORMAL, true);
+        } else if (hookEvent instanceof MergeRequestHookEvent) {
+            handleMergeRequestEvent((MergeRequestHookEvent) hookEvent, HandleMode.NORMAL);
+        }
+    }
+
     @Override
     public void onMergeRequestEvent(MergeRequestEvent mergeRequestEvent) {
+        handleMergeRequestEvent(MergeRequestHookEvent.from(mergeRequestEvent), HandleMode.NORMAL);
+    }
 
-        ObjectAttributes attributes = mergeRequestEvent.getObjectAttributes();
-        String branchName = attributes.getSourceBranch();
-        int userId = attributes.getAuthorId();
-        int projectId = attributes.getTargetProjectId();
-        int mergeRequestId = attributes.getIid();
-        String mergeState = attributes.getState();
-        String mergeStatus = attributes.getMergeStatus();
+    /**
+     * This method is called when a merge request is either created or changes state. We use it to update the Push record
+     * for the branch. This allows us to eliminate sending out multiple notifications.
+     *
+     * @param mergeRequestEvent the merge request event to handle
+     * @param mode whether the Push record is updated, with DRY_RUN it is left as is
+     * @return true if the Push record was (or with DRY_RUN would have been) updated
+     */
+    public boolean handleMergeRequestEvent(MergeRequestHookEvent mergeRequestEvent, HandleMode mode) {
+
+        String branchName = mergeRequestEvent.getSourceBranch();
+        int userId = mergeRequestEvent.getAuthorId();
+        int projectId = mergeRequestEvent.getTargetProjectId();
+        int mergeRequestId = mergeRequestEvent.getIid();
+        String mergeState = mergeRequestEvent.getState();
+        String mergeStatus = mergeRequestEvent.getMergeStatus();
 
         logger.info("Merge request notification received, userId={}, " +
                 "projectId={}, mergRequestId={}, mergeStatus={}, mergeState={}",
                 userId, projectId, mergeRequestId, mergeStatus, mergeState);
 
-        ProjectConfig projectConfig = projectConfigRepository.findByProjectId(projectId);
+        ProjectConfig projectConfig = projectConfigSnapshot.getProjectConfig(projectId);
         if (projectConfig == null) {
-            logger.warn("This project is not in the Simple-CR system, projectId=%d", projectId);
-            return;
+            logger.warn("This project is not in the Simple-CR system, projectId={}", projectId);
+            return (false);
         }
 
         // Make sure this event is for this project config
         if (!validateSecretToken(projectConfig, mergeRequestEvent)) {
             logger.warn("The received hook event does not match the project config, projectConfigId={}, secretToken={}",
-                    projectConfig.getId(), mergeRequestEvent.getRequestSecretToken());
-            return;
+                    projectConfig.getId(), mergeRequestEvent.getSecretToken());
+            return (false);
         }
 
+        // The project and user info in the payload is only trusted once its secret token has been validated
+        projectCacheService.refresh(mergeRequestEvent);
+        userDirectoryService.warm(mergeRequestEvent);
+
         // We only operate on merged or closed state changes
         if (!"merged".equals(mergeState) && !"closed".equals(mergeState)) {
-            return;
+            return (false);
         }
 
         // Make sure the merge request is valid
         MergeRequest mergeRequest = null;
         try {
-            mergeRequest = gitLabApi.getMergeRequestApi().getMergeRequest(projectId, attributes.getId());
+            mergeRequest = gitLabClient.getMergeRequest(projectId, mergeRequestEvent.getMergeRequestId());
         } catch (GitLabApiException glae) {
-            logger.error("Problem getting merge request info, httpStatus={}, error={}",
-                    glae.getHttpStatus(), glae.getMessage());
-            return;
+
+            if (glae.getHttpStatus() != NOT_FOUND) {
+                throw new RetryableEventException("Problem getting merge request info, projectId=" + projectId +
+                        ", mergeRequestId=" + mergeRequestEvent.getMergeRequestId() + ", httpStatus=" + glae.getHttpStatus(), glae);
+            }
+
+            logger.error("Merge request not found, projectId={}, mergeRequestId={}", projectId, mergeRequestEvent.getMergeRequestId());
+            return (false);
         }
 
         // Now find and update the push record
@@ -117,7 +245,7 @@ public class GitLabWebHookService extends WebHookManager implements WebHookListe
             logger.warn("Could not locate push record for merge request, " +
                     "userId={}, projectId={}, branch={}, mergeRequestId={}",
                     userId, projectId, branchName, mergeRequestId);
-            return;
+            return (false);
         }
 
         // If the push record is already updated, we are done here
@@ -126,24 +254,21 @@ public class GitLabWebHookService extends WebHookManager implements WebHookListe
             logger.info("Push record already updated, userId={}, projectId={}, " +
                     "mergRequestId={}, mergeStatus={}, mergeState={}",
                     userId, projectId, mergeRequestId, mergeStatus, mergeState);
-            return;
+            return (false);
         }
 
         // If the MR was merged, get the merged by ID
         int mergedById = 0;
         if ("merged".equals(mergeState)) {
-            User user = mergeRequestEvent.getUser();
-            if (user != null) {
-                if (user.getId() != null) {
-                    mergedById = user.getId();
-                } else if (!StringUtils.isEmpty(user.getUsername())) {
-                    try {
-                        List<User> users = gitLabApi.getUserApi().findUsers(user.getUsername());
-                        if (users != null && !users.isEmpty())
-                            mergedById = users.get(0).getId();
-                    } catch (GitLabApiException gle) {
-                        logger.warn("Error trying to determine merged by ID, message={}", gle.getMessage());
-                    }
+            if (mergeRequestEvent.getUserId() != null) {
+                mergedById = mergeRequestEvent.getUserId();
+            } else if (!StringUtils.isEmpty(mergeRequestEvent.getUserUsername())) {
+                try {
+                    List<User> users = gitLabClient.findUsers(mergeRequestEvent.getUserUsername());
+                    if (users != null && !users.isEmpty())
+                        mergedById = users.get(0).getId();
+                } catch (GitLabApiException gle) {
+                    logger.warn("Error trying to determine merged by ID, message={}", gle.getMessage());
                 }
             }
 
@@ -152,13 +277,18 @@ public class GitLabWebHookService extends WebHookManager implements WebHookListe
             }
         }
 
-        push.setMergeStatusDate(attributes.getUpdatedAt());
+        if (mode == HandleMode.DRY_RUN) {
+            return (true);
+        }
+
+        push.setMergeStatusDate(mergeRequestEvent.getUpdatedAt());
         push.setMergeState(mergeState);
         push.setMergeStatus(mergeStatus);
         push.setMergedById(mergedById);
         pushRepository.save(push);
         logger.info("Updated push record, userId={}, projectId={}, mergRequestId={}, mergeStatus={}, mergeState={}",
                 userId, projectId, mergeRequestId, mergeStatus, mergeState);
+        return (true);
     }
 
     /**
@@ -171,124 +301,368 @@ public class GitLabWebHookService extends WebHookManager implements WebHookListe
      */
     @Override
     public void onPushEvent(PushEvent pushEvent) {
+        handlePushEvent(PushHookEvent.from(pushEvent), HandleMode.NORMAL, true);
+    }
+
+    /**
+     * Runs the push event through the push pipeline, see {@link PushStage}. If the push passes all the stages
+     * a Push record is created and the code review email is sent.
+     *
+     * @param pushEvent the push event to handle
+     * @param mode whether the Push record is created and the email sent for an accepted push
+     * @return the stage that rejected the push, or PushStage.ACCEPTED
+     */
+    public PushStage handlePushEvent(PushHookEvent pushEvent, HandleMode mode) {
+        return (handlePushEvent(pushEvent, mode, false));
+    }
+
+    /**
+     * Runs the push event through the push pipeline.
+     *
+     * @param pushEvent the push event to handle
+     * @param mode whether the Push record is created and the email sent for an accepted push
+     * @param live true if the event was just received from GitLab, false if it is being replayed
+     * @return the stage that rejected the push, or PushStage.ACCEPTED
+     */
+    private PushStage handlePushEvent(PushHookEvent pushEvent, HandleMode mode, boolean live) {
 
-        int userId = pushEvent.getUserId();
-        int projectId = pushEvent.getProjectId();
-        String branchName = pushEvent.getBranch();
+        PushContext context = new PushContext(pushEvent);
         logger.info("A branch has been pushed, userId={}, projectId={}, branch={}",
-                userId, projectId, branchName);
+                context.userId, context.projectId, context.branchName);
 
-        ProjectConfig projectConfig = projectConfigRepository.findByProjectId(projectId);
-        if (projectConfig == null) {
-            logger.warn("This project is not in the Simple-CR system, projectId=%d", projectId);
-            return;
+        PushStage rejectedBy = null;
+        for (PushStage stage : LOCAL_STAGES) {
+            if (!runStage(stage, context)) {
+                rejectedBy = stage;
+                break;
+            }
         }
 
-        // Make sure this event is for this project config
-        if (!validateSecretToken(projectConfig, pushEvent)) {
-            logger.warn("The received hook event does not match the project config, projectConfigId={}, secretToken={}",
-                    projectConfig.getId(), pushEvent.getRequestSecretToken());
-            return;
+        // Pushes to master are not reviewed but still create and delete branches, so are validated for the branch index
+        if (rejectedBy == PushStage.BRANCH_NAME && !StringUtils.isEmpty(context.branchName)) {
+            checkProjectConfig(context);
         }
 
-        if (StringUtils.isEmpty(branchName)) {
-            logger.warn("Branch name is either null or not valid, ref=%s", pushEvent.getRef());
-            return;
+        // The project and user info in the payload is only trusted once its secret token has been validated
+        if (context.validated) {
+            projectCacheService.refresh(pushEvent);
+            userDirectoryService.warm(pushEvent);
+
+            // Branch creations and deletions keep the branch index current, replays must not roll it back
+            if (live) {
+                branchIndexService.onPush(pushEvent);
+            }
         }
 
-        if (branchName.equals("master")) {
-            logger.info("No code reviews are done on master.");
-            return;
+        if (rejectedBy == null) {
+            rejectedBy = runRemoteStages(context);
         }
 
-        // Make sure there is a merge spec that matches the branch name
-        boolean foundBranchMatch = false;
-        List<MergeSpec> mergeSpecs = this.mergeSpecRepository.findByProjectConfigId(projectConfig.getId());
-        if (mergeSpecs != null) {
-            for (MergeSpec mergeSpec : mergeSpecs) {
-                if (branchName.matches(mergeSpec.getBranchRegex())) {
-                    foundBranchMatch = true;
-                    break;
+        if (rejectedBy != null) {
+            if (mode != HandleMode.DRY_RUN) {
+                stageCounts.get(rejectedBy).incrementAndGet();
+            }
+
+            return (rejectedBy);
+        }
+
+        if (mode == HandleMode.DRY_RUN) {
+            return (PushStage.ACCEPTED);
+        }
+
+        // Add a Push record for this push event
+        Push push = new Push();
+        push.setReceivedAt(new Date());
+        push.setUserId(context.userId);
+        push.setProjectId(context.projectId);
+        push.setBranch(context.branchName);
+        push.setBefore(pushEvent.getBefore());
+        push.setAfter(pushEvent.getAfter());
+        push.setMergeRequestId(0);
+
+        // The code review email is queued in the same transaction as the Push record, it is sent by the outbox sender
+        OutboxEmail codeReviewEmail = (mode == HandleMode.NORMAL ?
+                emailService.renderCodeReviewEmail(context.user, context.project, context.branchName) : null);
+        new TransactionTemplate(transactionManager).execute(status -> {
+            pushRepository.save(push);
+            if (codeReviewEmail != null) {
+                emailOutboxService.enqueue(codeReviewEmail);
+            }
+
+            return (null);
+        });
+
+        // Capture the code review page data so the emailed link can be served without calling GitLab. This is
+        // done once the Push record is committed so a failed push leaves no snapshot, and keeps the target branch
+        // lookup out of the transaction. A link used before the snapshot is saved falls back to the GitLab lookups.
+        reviewSnapshotService.save(context.projectConfig, context.project, context.user, context.branchName);
+
+        stageCounts.get(PushStage.ACCEPTED).incrementAndGet();
+        return (PushStage.ACCEPTED);
+    }
+
+    /**
+     * Runs the remote stages concurrently on the I/O executor.
+     *
+     * @return the remote stage that rejected the push, or null if they all passed
+     * @throws RetryableEventException if a stage failed other than with a 404, or did not finish within the budget
+     */
+    private PushStage runRemoteStages(PushContext context) {
+
+        long deadline = System.currentTimeMillis() + appConfig.getPushRemoteStageBudget();
+        Map<PushStage, CompletableFuture<Boolean>> checks = new EnumMap<>(PushStage.class);
+        for (PushStage stage : REMOTE_STAGES) {
+            checks.put(stage, ioExecutorService.submit(() -> runStage(stage, context)));
+        }
+
+        if (ioExecutorService.awaitAll(checks.values(), deadline)) {
+            return (null);
+        }
+
+        // Blame the stage that failed, the stages after it may have been cancelled because of it
+        for (Map.Entry<PushStage, CompletableFuture<Boolean>> entry : checks.entrySet()) {
+
+            CompletableFuture<Boolean> check = entry.getValue();
+            if (!check.isDone() || check.isCancelled()) {
+                continue;
+            }
+
+            try {
+                if (!check.join()) {
+                    return (entry.getKey());
+                }
+            } catch (CompletionException ce) {
+                if (ce.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ce.getCause();
                 }
+
+                throw ce;
             }
         }
 
-        if (!foundBranchMatch) {
-            logger.info("The pushed branch is not configured to trigger Simple-CR, pushed branch={}", branchName);
-            return;
+        for (Map.Entry<PushStage, CompletableFuture<Boolean>> entry : checks.entrySet()) {
+            if (entry.getValue().isCancelled()) {
+                throw new RetryableEventException(String.format(
+                        "Remote push stage did not finish within the budget, stage=%s, budgetMs=%d, projectId=%d, branch=%s",
+                        entry.getKey(), appConfig.getPushRemoteStageBudget(), context.projectId, context.branchName));
+            }
         }
 
-        Project project = null;
-        try {
-            project = gitLabApi.getProjectApi().getProject(projectId);
-        } catch (GitLabApiException glae) {
-            logger.error("Problem getting project info, httpStatus=%d, error=%s",
-                    glae.getHttpStatus(), glae.getMessage());
-            return;
+        throw new RetryableEventException("Remote push stages did not finish, projectId=" + context.projectId + ", branch=" + context.branchName);
+    }
+
+    private boolean runStage(PushStage stage, PushContext context) {
+
+        switch (stage) {
+        case BRANCH_NAME:
+            return (checkBranchName(context));
+        case PROJECT_CONFIG:
+            return (checkProjectConfig(context));
+        case MERGE_SPEC:
+            return (checkMergeSpec(context));
+        case BRANCH_DELETED:
+            return (checkBranchDeleted(context));
+        case PENDING_REVIEW:
+            return (checkPendingReview(context));
+        case ALREADY_NOTIFIED:
+            return (checkAlreadyNotified(context));
+        case PROJECT:
+            return (loadProject(context));
+        case USER:
+            return (loadUser(context));
+        case BRANCH:
+            return (checkBranch(context));
+        default:
+            return (true);
         }
+    }
 
-        User user;
-        try {
-            user = gitLabApi.getUserApi().getUser(userId);
-            if (StringUtils.isEmpty(user.getEmail()))
-                user.setEmail(pushEvent.getUserEmail());
-        } catch (GitLabApiException gle) {
-            logger.error("Problem getting user info, httpStatus={}, error={}",
-                    gle.getHttpStatus(), gle.getMessage());
-            return;
+    private boolean checkBranchName(PushContext context) {
+
+        if (StringUtils.isEmpty(context.branchName)) {
+            logger.warn("Branch name is either null or not valid, ref={}", context.pushEvent.getRef());
+            return (false);
         }
 
-        // Make sure that the branch is still valid (not deleted).
-        try {
-            gitLabApi.getRepositoryApi().getBranch(projectId, branchName);
-        } catch (GitLabApiException gle) {
-            logger.error("Problem getting branch info, httpStatus={}, error={}",
-                    gle.getHttpStatus(), gle.getMessage());
-            return;
+        if (context.branchName.equals("master")) {
+            logger.info("No code reviews are done on master.");
+            return (false);
+        }
+
+        return (true);
+    }
+
+    private boolean checkProjectConfig(PushContext context) {
+
+        context.projectConfig = projectConfigSnapshot.getProjectConfig(context.projectId);
+        if (context.projectConfig == null) {
+            logger.warn("This project is not in the Simple-CR system, projectId={}", context.projectId);
+            return (false);
         }
 
+        // Make sure this event is for this project config
+        if (!validateSecretToken(context.projectConfig, context.pushEvent)) {
+            logger.warn("The received hook event does not match the project config, projectConfigId={}, secretToken={}",
+                    context.projectConfig.getId(), context.pushEvent.getSecretToken());
+            return (false);
+        }
+
+        context.validated = true;
+        return (true);
+    }
+
+    private boolean checkMergeSpec(PushContext context) {
+
+        // Make sure there is a merge spec that matches the branch name
+        if (projectConfigSnapshot.getMatcher(context.projectConfig).matches(context.branchName)) {
+            return (true);
+        }
+
+        logger.info("The pushed branch is not configured to trigger Simple-CR, pushed branch={}", context.branchName);
+        return (false);
+    }
+
+    private boolean checkBranchDeleted(PushContext context) {
+
         // If after is all "0" this indicates that this notification is for the deletion of that branch.
-        String after = pushEvent.getAfter();
+        String after = context.pushEvent.getAfter();
         if (after != null && after.matches("^[0]+$")) {
-            logger.info(
-                    "The branch has been deleted nothing to do here, before={}, after={}",
-                    pushEvent.getBefore(), after);
-            return;
+            logger.info("The branch has been deleted nothing to do here, before={}, after={}",
+                    context.pushEvent.getBefore(), after);
+            return (false);
         }
 
+        return (true);
+    }
+
+    private boolean checkPendingReview(PushContext context) {
+
         // Make sure that we DO NOT have a pending code review for this branch
-        List<Push> pushList = pushRepository.findPendingReviews(userId, projectId, branchName);
+        List<Push> pushList = pushRepository.findPendingReviews(context.userId, context.projectId, context.branchName);
         if (pushList != null && pushList.size() > 0) {
             logger.info("The branch is already pending review and merge, userId={}, projectId={}, branch={}",
-                    userId, projectId, branchName);
-            return;
+                    context.userId, context.projectId, context.branchName);
+            return (false);
         }
 
+        return (true);
+    }
+
+    private boolean checkAlreadyNotified(PushContext context) {
+
         // Make sure we DO NOT have a push record that has not been submitted for code review
-        pushList = pushRepository.find(userId, projectId, branchName, 0);
+        List<Push> pushList = pushRepository.find(context.userId, context.projectId, context.branchName, 0);
         if (pushList != null && pushList.size() > 0) {
             logger.info("Branch push notification has already been sent, userId={}, projectId={}, branch={}",
-                    userId, projectId, branchName);
-            return;
+                    context.userId, context.projectId, context.branchName);
+            return (false);
         }
 
-        // Add a Push record for this push event
-        Push push = new Push();
-        push.setReceivedAt(new Date());
-        push.setUserId(userId);
-        push.setProjectId(projectId);
-        push.setBranch(branchName);
-        push.setBefore(pushEvent.getBefore());
-        push.setAfter(pushEvent.getAfter());
-        push.setMergeRequestId(0);
-        pushRepository.save(push);
+        return (true);
+    }
+
+    private boolean loadProject(PushContext context) {
+
+        try {
+            context.project = projectCacheService.getProject(context.projectId);
+            return (true);
+        } catch (GitLabApiException glae) {
+
+            if (glae.getHttpStatus() != NOT_FOUND) {
+                throw new RetryableEventException("Problem getting project info, projectId=" + context.projectId +
+                        ", httpStatus=" + glae.getHttpStatus(), glae);
+            }
+
+            logger.error("Project not found, projectId={}", context.projectId);
+            return (false);
+        }
+    }
+
+    private boolean loadUser(PushContext context) {
+
+        Optional<User> user;
+        try {
+            user = userDirectoryService.findUser(context.userId);
+        } catch (GitLabApiException gle) {
+            throw new RetryableEventException("Problem getting user info, userId=" + context.userId +
+                    ", httpStatus=" + gle.getHttpStatus(), gle);
+        }
+
+        if (!user.isPresent()) {
+            logger.error("User not found or blocked, userId={}", context.userId);
+            return (false);
+        }
 
-        // Send the code review email
-        emailService.sendCodeReviewEmail(user, project, branchName);
+        context.user = user.get();
+        if (StringUtils.isEmpty(context.user.getEmail()))
+            context.user.setEmail(context.pushEvent.getUserEmail());
+        return (true);
     }
 
-    private boolean validateSecretToken(ProjectConfig projectConfig, Event event) {
-        String expectedSecretToken = "simple-cr-" + projectConfig.getId();
-        return (expectedSecretToken.equals(event.getRequestSecretToken()));
+    private boolean checkBranch(PushContext context) {
+
+        // Make sure that the branch is still valid (not deleted).
+        try {
+            gitLabClient.getBranch(context.projectId, context.branchName);
+            return (true);
+        } catch (GitLabApiException gle) {
+
+            if (gle.getHttpStatus() != NOT_FOUND) {
+                throw new RetryableEventException("Problem getting branch info, projectId=" + context.projectId +
+                        ", branch=" + context.branchName + ", httpStatus=" + gle.getHttpStatus(), gle);
+            }
+
+            logger.info("The branch no longer exists, projectId={}, branch={}", context.projectId, context.branchName);
+            return (false);
+        }
+    }
+
+    private boolean validateSecretToken(ProjectConfig projectConfig, HookEvent hookEvent) {
+        String expectedSecretToken = WebHookTokenRegistry.getSecretToken(projectConfig);
+        return (expectedSecretToken.equals(hookEvent.getSecretToken()));
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("pushPipeline");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        Map<String, Object> rejected = new LinkedHashMap<>();
+        for (PushStage stage : PushStage.values()) {
+            if (stage != PushStage.ACCEPTED) {
+                rejected.put(stage.name(), stageCounts.get(stage).get());
+            }
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("accepted", stageCounts.get(PushStage.ACCEPTED).get());
+        metrics.put("rejected", rejected);
+        return (metrics);
+    }
+
+    /**
+     * Holds the state of a push as it goes through the push pipeline.
+     */
+    private static class PushContext {
+
+        private final PushHookEvent pushEvent;
+        private final int userId;
+        private final int projectId;
+        private final String branchName;
+
+        private ProjectConfig projectConfig;
+        private boolean validated;
+        private Project project;
+        private User user;
+
+        PushContext(PushHookEvent pushEvent) {
+            this.pushEvent = pushEvent;
+            this.userId = pushEvent.getUserId();
+            this.projectId = pushEvent.getProjectId();
+            this.branchName = pushEvent.getBranch();
+        }
     }
 }
@@ -0,0 +1,266 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.service.GitLabClient.GitLabCall;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class provides a bounded pool of threads for issuing independent blocking lookups (GitLab API
+ * calls and repository queries) concurrently. A call runs with the same GitLab priority as the thread that
+ * issued it. When the pool and its queue are full the call is run on the issuing thread, so a busy pool
+ * degrades to sequential lookups rather than failing them. Background calls, which must never hold up the
+ * issuing thread, are instead discarded when the pool is full. Once the pool is shut down, calls that have
+ * not run fail with a RejectedExecutionException rather than leaving their callers waiting.
+ *
+ * Results are awaited with a per-call timeout, bounded by an overall deadline. A call that times out is
+ * abandoned, it is left to finish (under the GitLab client limits) but its result is not used. Groups of
+ * checks can be awaited together, the first failed check cancels the others.
+ */
+@Service
+public class IoExecutorService implements MetricsSource {
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    private static final Logger logger = LoggerFactory.getLogger(IoExecutorService.class);
+
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong callerRunsCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+
+        int numThreads = Math.max(1, appConfig.getIoExecutorThreads());
+        executor = new ThreadPoolExecutor(numThreads, numThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, appConfig.getIoExecutorQueueSize())),
+                new CustomizableThreadFactory("io-"),
+                (task, pool) -> {
+                    IoTask<?> ioTask = (IoTask<?>) task;
+                    if (pool.isShutdown()) {
+                        ioTask.reject("The I/O executor has been shut down");
+                    } else if (ioTask.background) {
+                        discardedCount.incrementAndGet();
+                        ioTask.reject("The I/O executor is full");
+                    } else {
+                        callerRunsCount.incrementAndGet();
+                        task.run();
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        logger.info("Started I/O executor, numThreads={}, queueSize={}, callTimeout={}ms",
+                numThreads, appConfig.getIoExecutorQueueSize(), appConfig.getIoCallTimeout());
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow().forEach(task -> ((IoTask<?>) task).reject("The I/O executor has been shut down"));
+    }
+
+    /**
+     * Issues a call on the I/O executor.
+     *
+     * @param call the call to run
+     * @return a CompletableFuture that completes with the result or exception of the call
+     */
+    public <T> CompletableFuture<T> submit(GitLabCall<T> call) {
+        return (submit(call, GitLabClient.isInteractive()));
+    }
+
+    /**
+     * Issues a call on the I/O executor with the given GitLab priority.
+     *
+     * @param call the call to run
+     * @param interactive true if the GitLab API calls made by the call are made for an interactive request
+     * @return a CompletableFuture that completes with the result or exception of the call
+     */
+    public <T> CompletableFuture<T> submit(GitLabCall<T> call, boolean interactive) {
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        submittedCount.incrementAndGet();
+        executor.execute(new IoTask<>(call, interactive, false, future));
+        return (future);
+    }
+
+    /**
+     * Issues a background call on the I/O executor with the given GitLab priority. Unlike
+     * {@link #submit(GitLabCall, boolean)} the call is never run on the issuing thread, when the pool
+     * and its queue are full it is discarded.
+     *
+     * @param call the call to run
+     * @param interactive true if the GitLab API calls made by the call are made for an interactive request
+     * @return a CompletableFuture that completes with the result or exception of the call, or with a
+     *         RejectedExecutionException if the call was discarded
+     */
+    public <T> CompletableFuture<T> submitInBackground(GitLabCall<T> call, boolean interactive) {
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        submittedCount.incrementAndGet();
+        executor.execute(new IoTask<>(call, interactive, true, future));
+        return (future);
+    }
+
+    /**
+     * Waits for the result of a call issued with {@link #submit(GitLabCall)}, for no longer than the
+     * per-call timeout or the time left until the deadline.
+     *
+     * @param future the future of the call
+     * @param deadline the time in milliseconds since the epoch by which all the calls must be done
+     * @return the result of the call
+     * @throws GitLabApiException if the call failed with a GitLabApiException, timed out or was interrupted
+     */
+    public <T> T await(CompletableFuture<T> future, long deadline) throws GitLabApiException {
+
+        long timeout = Math.min(appConfig.getIoCallTimeout(), deadline - System.currentTimeMillis());
+        if (timeout <= 0 && !future.isDone()) {
+            return (timeOut(future));
+        }
+
+        try {
+            return (future.get(Math.max(0, timeout), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException te) {
+            return (timeOut(future));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new GitLabApiException("Interrupted while waiting for a lookup");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof GitLabApiException) {
+                throw (GitLabApiException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new GitLabApiException((Exception) cause);
+        }
+    }
+
+    /**
+     * Waits until all the checks have passed, or one of them has failed, or the deadline has passed,
+     * and then cancels the checks that are still outstanding. A cancelled check that has not started
+     * is not run; one that is running is left to finish, its call may be shared with other callers.
+     *
+     * @param checks the futures of the checks issued with {@link #submit(GitLabCall)}
+     * @param deadline the time in milliseconds since the epoch by which all the checks must be done
+     * @return true if all the checks passed
+     */
+    public boolean awaitAll(Collection<CompletableFuture<Boolean>> checks, long deadline) {
+
+        CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+        for (CompletableFuture<Boolean> check : checks) {
+            check.whenComplete((passed, e) -> {
+                if (e != null || !Boolean.TRUE.equals(passed)) {
+                    outcome.complete(false);
+                }
+            });
+        }
+
+        CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[checks.size()])).whenComplete(
+                (v, e) -> outcome.complete(e == null && checks.stream().allMatch(check -> Boolean.TRUE.equals(check.join()))));
+
+        try {
+            return (outcome.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException te) {
+            timedOutCount.incrementAndGet();
+            return (false);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return (false);
+        } catch (ExecutionException ee) {
+            return (false);
+        } finally {
+            checks.forEach(check -> check.cancel(false));
+        }
+    }
+
+    private <T> T timeOut(CompletableFuture<T> future) throws GitLabApiException {
+        future.cancel(false);
+        timedOutCount.incrementAndGet();
+        throw new GitLabApiException("Timed out waiting for a lookup");
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("ioExecutor");
+    }
+
+    /**
+     * A call issued on the I/O executor, along with the future it completes.
+     */
+    private static class IoTask<T> implements Runnable {
+
+        private final GitLabCall<T> call;
+        private final boolean interactive;
+        private final boolean background;
+        private final CompletableFuture<T> future;
+
+        IoTask(GitLabCall<T> call, boolean interactive, boolean background, CompletableFuture<T> future) {
+            this.call = call;
+            this.interactive = interactive;
+            this.background = background;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+
+            if (future.isDone()) {
+                return;
+            }
+
+            boolean wasInteractive = GitLabClient.isInteractive();
+            GitLabClient.setInteractive(interactive);
+            try {
+                future.complete(call.call());
+            } catch (Exception | Error e) {
+                future.completeExceptionally(e);
+            } finally {
+                GitLabClient.setInteractive(wasInteractive);
+            }
+        }
+
+        void reject(String message) {
+            future.completeExceptionally(new RejectedExecutionException(message));
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("poolSize", executor.getPoolSize());
+        metrics.put("active", executor.getActiveCount());
+        metrics.put("queued", executor.getQueue().size());
+        metrics.put("submitted", submittedCount.get());
+        metrics.put("callerRuns", callerRunsCount.get());
+        metrics.put("discarded", discardedCount.get());
+        metrics.put("timedOut", timedOutCount.get());
+        return (metrics);
+    }
+}
@@ -0,0 +1,57 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.MergeSpec;
+import org.gitlab4j.simplecr.utils.MergeSpecMatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class builds the compiled MergeSpecMatcher for the merge specs of a project config, using the
+ * configured regex step budget. The matchers themselves are held by the ProjectConfigSnapshotService.
+ * Regex matches that exceed the step budget are counted here.
+ */
+@Service
+public class MergeSpecMatcherService implements MetricsSource {
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    private final AtomicLong buildCount = new AtomicLong();
+    private final AtomicLong budgetExceededCount = new AtomicLong();
+
+    /**
+     * Builds a matcher for the merge specs.
+     *
+     * @param mergeSpecs the merge specs of a project config
+     * @return the MergeSpecMatcher for the merge specs
+     */
+    public MergeSpecMatcher newMatcher(Collection<MergeSpec> mergeSpecs) {
+
+        if (mergeSpecs == null || mergeSpecs.isEmpty()) {
+            return (MergeSpecMatcher.EMPTY);
+        }
+
+        buildCount.incrementAndGet();
+        return (new MergeSpecMatcher(mergeSpecs, appConfig.getRegexStepBudget(), budgetExceededCount));
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("mergeSpecMatchers");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("builds", buildCount.get());
+        metrics.put("stepBudget", appConfig.getRegexStepBudget());
+        metrics.put("budgetExceeded", budgetExceededCount.get());
+        return (metrics);
+    }
+}
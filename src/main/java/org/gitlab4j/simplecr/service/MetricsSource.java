@@ -0,0 +1,19 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.Map;
+
+/**
+ * Implemented by beans that publish runtime metrics on the /metrics endpoint.
+ */
+public interface MetricsSource {
+
+    /**
+     * @return the name the metrics are published under
+     */
+    String getMetricsName();
+
+    /**
+     * @return a point in time snapshot of the metrics
+     */
+    Map<String, Object> getMetrics();
+}
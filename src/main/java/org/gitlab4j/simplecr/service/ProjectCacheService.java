@@ -0,0 +1,181 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.models.Namespace;
+import org.gitlab4j.api.models.Project;
+import org.gitlab4j.simplecr.beans.HookEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.utils.TtlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class caches the GitLab projects by ID and by group/name path. Cached projects expire after a
+ * time-to-live and the least recently used project is evicted when the cache is full. A cached project
+ * is evicted early when a webhook payload shows that its name, namespace, path or URL has changed.
+ */
+@Service
+public class ProjectCacheService implements MetricsSource {
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private GitLabClient gitLabClient;
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectCacheService.class);
+
+    private TtlCache<Integer, Project> projectsById;
+    private TtlCache<String, Integer> projectIdsByPath;
+
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadTime = new AtomicLong();
+    private final AtomicLong maxLoadTime = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    @PostConstruct
+    void createCaches() {
+        projectsById = new TtlCache<>(appConfig.getProjectCacheTtl(), appConfig.getProjectCacheMaxSize());
+        projectIdsByPath = new TtlCache<>(appConfig.getProjectCacheTtl(), appConfig.getProjectCacheMaxSize());
+    }
+
+    /**
+     * Gets the project with the specified ID, loading it from GitLab if it is not cached.
+     *
+     * @param projectId the ID of the project to get
+     * @return the Project
+     * @throws GitLabApiException if any error occurs loading the project
+     */
+    public Project getProject(Integer projectId) throws GitLabApiException {
+
+        Project project = projectsById.get(projectId);
+        if (project != null) {
+            return (project);
+        }
+
+        long startTime = System.currentTimeMillis();
+        project = gitLabClient.getProject(projectId);
+        recordLoad(startTime);
+
+        put(project);
+        return (project);
+    }
+
+    /**
+     * Gets the project with the specified group and name, loading it from GitLab if it is not cached.
+     *
+     * @param groupName the name of the group (namespace) of the project
+     * @param projectName the name of the project
+     * @return the Project
+     * @throws GitLabApiException if any error occurs loading the project
+     */
+    public Project getProject(String groupName, String projectName) throws GitLabApiException {
+
+        String path = getPath(groupName, projectName);
+        Integer projectId = projectIdsByPath.get(path);
+        if (projectId != null) {
+            Project project = projectsById.get(projectId);
+            if (project != null) {
+                return (project);
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        Project project = gitLabClient.getProject(groupName, projectName);
+        recordLoad(startTime);
+
+        put(project);
+        projectIdsByPath.put(path, project.getId());
+        return (project);
+    }
+
+    /**
+     * Evicts the cached project if the project info in the webhook payload shows it has changed.
+     *
+     * @param hookEvent the received event
+     */
+    public void refresh(HookEvent hookEvent) {
+
+        Integer projectId = hookEvent.getProjectId();
+        // Checking the cached project is not a lookup, it must not count towards the hit ratio
+        Project project = (projectId != null ? projectsById.peek(projectId) : null);
+        if (project == null) {
+            return;
+        }
+
+        Namespace namespace = project.getNamespace();
+        if (isChanged(project.getName(), hookEvent.getProjectName()) ||
+                isChanged(project.getPathWithNamespace(), hookEvent.getProjectPathWithNamespace()) ||
+                isChanged(project.getWebUrl(), hookEvent.getProjectWebUrl()) ||
+                isChanged(namespace != null ? namespace.getName() : null, hookEvent.getProjectNamespace())) {
+
+            logger.info("Project info has changed, evicting cached project, projectId={}, pathWithNamespace={}",
+                    projectId, hookEvent.getProjectPathWithNamespace());
+            evict(projectId);
+            invalidationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Evicts the project with the specified ID from the cache.
+     *
+     * @param projectId the ID of the project to evict
+     */
+    public void evict(Integer projectId) {
+
+        Project project = projectsById.remove(projectId);
+        if (project != null && project.getNamespace() != null) {
+            projectIdsByPath.remove(getPath(project.getNamespace().getFullPath(), project.getPath()));
+            projectIdsByPath.remove(getPath(project.getNamespace().getName(), project.getName()));
+        }
+    }
+
+    private void put(Project project) {
+        if (project != null && project.getId() != null) {
+            projectsById.put(project.getId(), project);
+        }
+    }
+
+    private void recordLoad(long startTime) {
+        long elapsed = System.currentTimeMillis() - startTime;
+        loadCount.incrementAndGet();
+        loadTime.addAndGet(elapsed);
+        maxLoadTime.accumulateAndGet(elapsed, Math::max);
+    }
+
+    private static boolean isChanged(String cachedValue, String payloadValue) {
+        return (payloadValue != null && !Objects.equals(cachedValue, payloadValue));
+    }
+
+    private static String getPath(String groupName, String projectName) {
+        return ((groupName + "/" + projectName).toLowerCase());
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("projectCache");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        long numLoads = loadCount.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("byId", projectsById.getMetrics());
+        metrics.put("byPath", projectIdsByPath.getMetrics());
+        metrics.put("loads", numLoads);
+        metrics.put("avgLoadMs", numLoads > 0 ? (double) loadTime.get() / numLoads : 0.0);
+        metrics.put("maxLoadMs", maxLoadTime.get());
+        metrics.put("invalidations", invalidationCount.get());
+        return (metrics);
+    }
+}
@@ -5,7 +5,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
-import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.models.Project;
 import org.gitlab4j.api.models.ProjectHook;
@@ -14,6 +13,7 @@ import org.gitlab4j.simplecr.model.ProjectConfig;
 import org.gitlab4j.simplecr.model.ProjectConfig.MailToType;
 import org.gitlab4j.simplecr.repository.MergeSpecRepository;
 import org.gitlab4j.simplecr.repository.ProjectConfigRepository;
+import org.gitlab4j.simplecr.utils.SafeRegex;
 import org.gitlab4j.simplecr.utils.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,7 +33,16 @@ public class ProjectConfigService {
     private MergeSpecRepository mergeSpecRepository;
 
     @Autowired
-    private GitLabApi gitLabApi;
+    private GitLabClient gitLabClient;
+
+    @Autowired
+    private ProjectCacheService projectCacheService;
+
+    @Autowired
+    private ReviewerResolutionService reviewerResolutionService;
+
+    @Autowired
+    private ProjectConfigSnapshotService projectConfigSnapshot;
 
     private Logger logger = LoggerFactory.getLogger(ProjectConfigService.class);
 
@@ -48,11 +57,11 @@ public class ProjectConfigService {
     };
 
     public Project getProject(String groupName, String projectName) throws GitLabApiException{
-        return gitLabApi.getProjectApi().getProject(groupName, projectName);
+        return projectCacheService.getProject(groupName, projectName);
     }
 
     public Project getProject(Integer projectId) throws GitLabApiException{
-        return gitLabApi.getProjectApi().getProject(projectId);
+        return projectCacheService.getProject(projectId);
     }
 
     public ProjectConfig getProjectConfig(String groupName, String projectName) throws GitLabApiException{
@@ -104,7 +113,7 @@ public class ProjectConfigService {
         try {
 
             ProjectHook hookConfig = new ProjectHook().withPushEvents(true).withMergeRequestsEvents(true);
-            ProjectHook projectHook = gitLabApi.getProjectApi().addHook(project, webhookUrl, hookConfig, false, "simple-cr-" + projectConfig.getId());
+            ProjectHook projectHook = gitLabClient.addHook(project, webhookUrl, hookConfig, WebHookTokenRegistry.getSecretToken(projectConfig));
             projectConfig.setHookId(projectHook.getId());
             logger.info("Added Simple-CR webhook to GitLab project, projectId={}", projectId);
             
@@ -118,6 +127,7 @@ public class ProjectConfigService {
         }
         
         projectConfig = projectConfigRepository.save(projectConfig);
+        projectConfigSnapshot.reload();
         return projectConfig;
     }
  
@@ -168,6 +178,8 @@ public class ProjectConfigService {
         }
 
         projectConfig = projectConfigRepository.save(projectConfig);
+        projectConfigSnapshot.reload();
+        reviewerResolutionService.invalidate(projectConfig.getId());
         return projectConfig;
     }
 
@@ -175,11 +187,13 @@ public class ProjectConfigService {
 
         // Delete the hook from the GitLab server
         Integer projectId = projectConfig.getProjectId();
-        gitLabApi.getProjectApi().deleteHook(projectId, projectConfig.getHookId());
+        gitLabClient.deleteHook(projectId, projectConfig.getHookId());
         logger.info("Deleted Simple-CR webhook from GitLab project, projectId={}", projectId);
       
         // Delete the ProjectConfig from the database
         projectConfigRepository.delete(projectConfig);
+        projectConfigSnapshot.reload();
+        reviewerResolutionService.invalidate(projectConfig.getId());
     }
 
     public List<MergeSpec> getMergeSpecs(ProjectConfig projectConfig) {
@@ -189,14 +203,35 @@ public class ProjectConfigService {
         return (mergeSpecs);
     }
 
+    /**
+     * Adds a merge spec to the project config. Both regexes are checked with SafeRegex.checkComplexity()
+     * and the merge spec is rejected if either one could take exponential time to match.
+     *
+     * @param projectConfig the ProjectConfig to add the merge spec to
+     * @param branchRegex the regex for the branches to be merged
+     * @param targetBranchRegex the regex for the branches to merge into
+     * @return the added MergeSpec
+     * @throws IllegalArgumentException if either regex is invalid or too complex
+     */
     public MergeSpec addMergeSpec(ProjectConfig projectConfig, String branchRegex, String targetBranchRegex) {
 
+        String reason = SafeRegex.checkComplexity(branchRegex);
+        if (reason != null) {
+            throw new IllegalArgumentException("Invalid branch_regex, " + reason);
+        }
+
+        reason = SafeRegex.checkComplexity(targetBranchRegex);
+        if (reason != null) {
+            throw new IllegalArgumentException("Invalid target_branch_regex, " + reason);
+        }
+
         MergeSpec mergeSpec = new MergeSpec();
         mergeSpec.setProjectConfig(projectConfig);
         mergeSpec.setProjectId(projectConfig.getProjectId());
         mergeSpec.setBranchRegex(branchRegex);
         mergeSpec.setTargetBranchRegex(targetBranchRegex);
         mergeSpec = mergeSpecRepository.save(mergeSpec);
+        projectConfigSnapshot.reload();
         return mergeSpec;
     }
 
@@ -206,6 +241,7 @@ public class ProjectConfigService {
                 projectConfig.getProjectId(), branchRegex, targetBranchRegex);
         if (mergeSpec.isPresent()) {
             mergeSpecRepository.delete(mergeSpec.get());
+            projectConfigSnapshot.reload();
             return mergeSpec.get();
         } else {
             return null;
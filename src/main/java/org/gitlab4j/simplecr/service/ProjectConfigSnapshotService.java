@@ -0,0 +1,273 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.gitlab4j.simplecr.model.MergeSpec;
+import org.gitlab4j.simplecr.model.ProjectConfig;
+import org.gitlab4j.simplecr.repository.MergeSpecRepository;
+import org.gitlab4j.simplecr.repository.ProjectConfigRepository;
+import org.gitlab4j.simplecr.utils.MergeSpecMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class holds an in-memory snapshot of all the project configs, their merge specs and the compiled
+ * MergeSpecMatcher for each of them, so the webhook path needs no database access for configuration.
+ *
+ * The snapshot is immutable and is replaced as a whole, readers never lock. It is reloaded by the
+ * ProjectConfigService whenever a ProjectConfig or MergeSpec is added, updated or deleted, and is
+ * periodically reconciled with the database to pick up changes made behind the application's back.
+ * The ProjectConfig and MergeSpec instances in the snapshot are detached copies and must not be modified.
+ */
+@Service
+public class ProjectConfigSnapshotService implements MetricsSource {
+
+    @Autowired
+    private ProjectConfigRepository projectConfigRepository;
+
+    @Autowired
+    private MergeSpecRepository mergeSpecRepository;
+
+    @Autowired
+    private MergeSpecMatcherService mergeSpecMatcherService;
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectConfigSnapshotService.class);
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList());
+
+    private final AtomicLong reloadCount = new AtomicLong();
+    private final AtomicLong unconfiguredRejectedCount = new AtomicLong();
+    private final AtomicLong reconcileChangeCount = new AtomicLong();
+    private volatile long loadedAt;
+
+    /**
+     * Gets the project config for a GitLab project.
+     *
+     * @param projectId the ID of the GitLab project
+     * @return the ProjectConfig for the project, or null if the project is not configured
+     */
+    public ProjectConfig getProjectConfig(Integer projectId) {
+        Entry entry = (projectId != null ? snapshot.byProjectId.get(projectId) : null);
+        return (entry != null ? entry.projectConfig : null);
+    }
+
+    /**
+     * Returns true if the GitLab project has a ProjectConfig. This is used to reject the events of
+     * unconfigured projects, sent by instance or group level hooks or by hooks left on projects removed
+     * from Simple-CR, as soon as they are received. The configured project IDs are an exact in-memory
+     * set so there are no false positives to guard against, and each rejection is counted.
+     *
+     * @param projectId the ID of the GitLab project
+     * @return true if the GitLab project has a ProjectConfig
+     */
+    public boolean isConfigured(Integer projectId) {
+
+        if (projectId != null && snapshot.byProjectId.containsKey(projectId)) {
+            return (true);
+        }
+
+        unconfiguredRejectedCount.incrementAndGet();
+        return (false);
+    }
+
+    /**
+     * Gets the merge specs of a GitLab project.
+     *
+     * @param projectId the ID of the GitLab project
+     * @return the unmodifiable list of merge specs of the project, empty if the project is not configured
+     */
+    public List<MergeSpec> getMergeSpecs(Integer projectId) {
+        Entry entry = (projectId != null ? snapshot.byProjectId.get(projectId) : null);
+        return (entry != null ? entry.mergeSpecs : Collections.emptyList());
+    }
+
+    /**
+     * Gets the compiled matcher for the merge specs of the project config.
+     *
+     * @param projectConfig the ProjectConfig to get the matcher for
+     * @return the MergeSpecMatcher for the project config, MergeSpecMatcher.EMPTY if it is not in the snapshot
+     */
+    public MergeSpecMatcher getMatcher(ProjectConfig projectConfig) {
+        Entry entry = snapshot.byConfigId.get(projectConfig.getId());
+        return (entry != null ? entry.matcher : MergeSpecMatcher.EMPTY);
+    }
+
+    /**
+     * Returns true if the ProjectConfig with the ID exists and is enabled.
+     *
+     * @param projectConfigId the ID of the ProjectConfig
+     * @return true if the ProjectConfig with the ID exists and is enabled
+     */
+    public boolean isEnabled(Long projectConfigId) {
+        Entry entry = (projectConfigId != null ? snapshot.byConfigId.get(projectConfigId) : null);
+        return (entry != null && entry.projectConfig.getEnabled());
+    }
+
+    /**
+     * @return the number of enabled project configs
+     */
+    public int getNumEnabled() {
+        return (snapshot.numEnabled);
+    }
+
+    /**
+     * Reloads the snapshot from the database.
+     */
+    @PostConstruct
+    public void reload() {
+        load();
+    }
+
+    /**
+     * Periodically reloads the snapshot so it stays consistent with the database.
+     */
+    @Scheduled(fixedDelayString = "${simplecr.project-config-reconcile-interval:300000}")
+    public void reconcile() {
+        if (load()) {
+            reconcileChangeCount.incrementAndGet();
+            logger.warn("Reconciled project config snapshot with changes found in the database");
+        }
+    }
+
+    /**
+     * Builds a new snapshot and swaps it in, the matchers of projects whose merge specs did not change
+     * are carried over.
+     *
+     * @return true if the new snapshot differs from the previous one
+     */
+    private synchronized boolean load() {
+
+        Map<Integer, List<MergeSpec>> mergeSpecsByProjectId = new HashMap<>();
+        for (MergeSpec mergeSpec : mergeSpecRepository.findAll()) {
+            mergeSpecsByProjectId.computeIfAbsent(mergeSpec.getProjectId(), k -> new ArrayList<>()).add(mergeSpec);
+        }
+
+        Snapshot previous = snapshot;
+        boolean changed = false;
+        List<Entry> entries = new ArrayList<>();
+        for (ProjectConfig projectConfig : projectConfigRepository.findAll()) {
+
+            ProjectConfig configCopy = new ProjectConfig(projectConfig);
+            List<MergeSpec> mergeSpecs = new ArrayList<>();
+            for (MergeSpec mergeSpec : mergeSpecsByProjectId.getOrDefault(projectConfig.getProjectId(), Collections.emptyList())) {
+                MergeSpec specCopy = new MergeSpec(configCopy, mergeSpec.getProjectId(), mergeSpec.getBranchRegex(), mergeSpec.getTargetBranchRegex());
+                specCopy.setId(mergeSpec.getId());
+                mergeSpecs.add(specCopy);
+            }
+
+            Entry previousEntry = previous.byConfigId.get(configCopy.getId());
+            MergeSpecMatcher matcher;
+            if (previousEntry != null && sameMergeSpecs(previousEntry.mergeSpecs, mergeSpecs)) {
+                matcher = previousEntry.matcher;
+                changed |= !configCopy.toString().equals(previousEntry.projectConfig.toString());
+            } else {
+                matcher = mergeSpecMatcherService.newMatcher(mergeSpecs);
+                changed = true;
+            }
+
+            entries.add(new Entry(configCopy, Collections.unmodifiableList(mergeSpecs), matcher));
+        }
+
+        changed |= (entries.size() != previous.byConfigId.size());
+        snapshot = new Snapshot(entries);
+        loadedAt = System.currentTimeMillis();
+        reloadCount.incrementAndGet();
+        logger.debug("Loaded project config snapshot, numConfigs={}, changed={}", entries.size(), changed);
+        return (changed);
+    }
+
+    private static boolean sameMergeSpecs(List<MergeSpec> previous, List<MergeSpec> current) {
+
+        if (previous.size() != current.size()) {
+            return (false);
+        }
+
+        for (int i = 0; i < previous.size(); i++) {
+            MergeSpec p = previous.get(i);
+            MergeSpec c = current.get(i);
+            if (!p.getBranchRegex().equals(c.getBranchRegex()) || !p.getTargetBranchRegex().equals(c.getTargetBranchRegex())) {
+                return (false);
+            }
+        }
+
+        return (true);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("projectConfigSnapshot");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        Snapshot current = snapshot;
+        int numMergeSpecs = 0;
+        int numCombined = 0;
+        int numLinear = 0;
+        for (Entry entry : current.byConfigId.values()) {
+            numMergeSpecs += entry.mergeSpecs.size();
+            numCombined += (entry.matcher.isCombined() ? 1 : 0);
+            numLinear += (entry.matcher.isLinear() ? 1 : 0);
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("projectConfigs", current.byConfigId.size());
+        metrics.put("enabled", current.numEnabled);
+        metrics.put("mergeSpecs", numMergeSpecs);
+        metrics.put("combinedMatchers", numCombined);
+        metrics.put("linearMatchers", numLinear);
+        metrics.put("unconfiguredRejected", unconfiguredRejectedCount.get());
+        metrics.put("reloads", reloadCount.get());
+        metrics.put("reconcileChanges", reconcileChangeCount.get());
+        metrics.put("ageMs", System.currentTimeMillis() - loadedAt);
+        return (metrics);
+    }
+
+    private static class Entry {
+
+        private final ProjectConfig projectConfig;
+        private final List<MergeSpec> mergeSpecs;
+        private final MergeSpecMatcher matcher;
+
+        Entry(ProjectConfig projectConfig, List<MergeSpec> mergeSpecs, MergeSpecMatcher matcher) {
+            this.projectConfig = projectConfig;
+            this.mergeSpecs = mergeSpecs;
+            this.matcher = matcher;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final Map<Integer, Entry> byProjectId;
+        private final Map<Long, Entry> byConfigId;
+        private final int numEnabled;
+
+        Snapshot(List<Entry> entries) {
+
+            Map<Integer, Entry> projectMap = new HashMap<>();
+            Map<Long, Entry> configMap = new HashMap<>();
+            int enabledCount = 0;
+            for (Entry entry : entries) {
+                projectMap.put(entry.projectConfig.getProjectId(), entry);
+                configMap.put(entry.projectConfig.getId(), entry);
+                enabledCount += (entry.projectConfig.getEnabled() ? 1 : 0);
+            }
+
+            byProjectId = Collections.unmodifiableMap(projectMap);
+            byConfigId = Collections.unmodifiableMap(configMap);
+            numEnabled = enabledCount;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.gitlab4j.simplecr.beans.PushHookEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.QueuedWebHook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class collapses bursts of pushes to the same branch into a single evaluation. The first push for
+ * a (projectId, userId, branch) opens a coalescing window, the pushes received while the window is open
+ * are merged into it, and when the window closes a single push event spanning the before SHA of the first
+ * push to the after SHA of the latest push is handed on for evaluation.
+ *
+ * A window belongs to the webhook lane its pushes are processed on and is only ever closed on that lane.
+ * Before the lane processes any other event for the same project and branch it closes the open windows
+ * for that branch, so a held push is never overtaken by a later event for its branch. The windows for
+ * other branches on the lane are left open, and when the window time is up the lane is asked to close it.
+ */
+@Service
+public class PushCoalescingService implements MetricsSource {
+
+    /**
+     * The pushes merged into a closed coalescing window.
+     */
+    public static class CoalescedPush {
+
+        private final PushHookEvent pushEvent;
+        private final List<QueuedWebHook> queuedWebHooks;
+
+        CoalescedPush(PushHookEvent pushEvent, List<QueuedWebHook> queuedWebHooks) {
+            this.pushEvent = pushEvent;
+            this.queuedWebHooks = queuedWebHooks;
+        }
+
+        public PushHookEvent getPushEvent() {
+            return (pushEvent);
+        }
+
+        public List<QueuedWebHook> getQueuedWebHooks() {
+            return (queuedWebHooks);
+        }
+    }
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    private static final Logger logger = LoggerFactory.getLogger(PushCoalescingService.class);
+
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong windowCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    @PostConstruct
+    void startScheduler() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("push-coalescer-"));
+    }
+
+    @PreDestroy
+    void stopScheduler() {
+        // Pushes in open windows are still in the webhook queue and will be replayed at startup
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @return true if pushes are to be coalesced
+     */
+    public boolean isEnabled() {
+        return (appConfig.getPushCoalescingWindow() > 0);
+    }
+
+    /**
+     * Gets the key of the coalescing window for a push event.
+     *
+     * @param pushEvent the push event
+     * @return the key of the window the push is merged into
+     */
+    public String getKey(PushHookEvent pushEvent) {
+        return (pushEvent.getProjectId() + ":" + pushEvent.getUserId() + ":" + pushEvent.getBranch());
+    }
+
+    /**
+     * Gets the key of the project and branch the windows of an event are closed for.
+     *
+     * @param projectId the project ID of the event
+     * @param branch the branch of the event
+     * @return the key of the project and branch
+     */
+    public static String getBranchKey(Integer projectId, String branch) {
+        return (projectId + ":" + branch);
+    }
+
+    /**
+     * Adds a queued push event to the coalescing window for its branch, opening the window if needed.
+     * Must be called on the lane the push is processed on.
+     *
+     * @param laneIndex the index of the lane the push is processed on
+     * @param pushEvent the push event
+     * @param queuedWebHook the queued webhook the push event was received in
+     * @param onWindowDue called when the window time is up, it must arrange for the lane to call
+     *         {@link #close(int, String, String, boolean)}, and returns false if it could not do so for now
+     */
+    public void add(int laneIndex, PushHookEvent pushEvent, QueuedWebHook queuedWebHook, BooleanSupplier onWindowDue) {
+
+        String key = getKey(pushEvent);
+        Window window = windows.get(key);
+        if (window != null) {
+            window.merge(pushEvent, queuedWebHook);
+            coalescedCount.incrementAndGet();
+            return;
+        }
+
+        Window newWindow = new Window(key, laneIndex, pushEvent, queuedWebHook, onWindowDue);
+        windows.put(key, newWindow);
+        windowCount.incrementAndGet();
+        scheduler.schedule(() -> onDue(newWindow), appConfig.getPushCoalescingWindow(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes open windows of a lane. Must be called on the lane.
+     *
+     * @param laneIndex the index of the lane
+     * @param branchKey the key of the project and branch to close the windows for, see
+     *         {@link #getBranchKey(Integer, String)}, or null to close the windows for every branch
+     * @param exceptKey the key of a window to leave open, or null
+     * @param dueOnly true to only close the windows whose time is up
+     * @return the pushes of the closed windows, in the order the windows were opened
+     */
+    public List<CoalescedPush> close(int laneIndex, String branchKey, String exceptKey, boolean dueOnly) {
+
+        long now = System.currentTimeMillis();
+        List<Window> closed = new ArrayList<>();
+        for (Window window : windows.values()) {
+            if (window.laneIndex == laneIndex && (branchKey == null || window.branchKey.equals(branchKey)) &&
+                    !window.key.equals(exceptKey) &&
+                    (!dueOnly || window.dueAt <= now) && windows.remove(window.key, window)) {
+                closed.add(window);
+            }
+        }
+
+        if (closed.isEmpty()) {
+            return (Collections.emptyList());
+        }
+
+        closed.sort(Comparator.comparing(window -> window.queuedWebHooks.get(0).getId()));
+        List<CoalescedPush> pushes = new ArrayList<>(closed.size());
+        for (Window window : closed) {
+
+            int numPushes = window.queuedWebHooks.size();
+            if (numPushes > 1) {
+                logger.info("Coalesced branch pushes, key={}, numPushes={}, before={}, after={}",
+                        window.key, numPushes, window.pushEvent.getBefore(), window.pushEvent.getAfter());
+            }
+
+            pushes.add(new CoalescedPush(window.pushEvent, window.queuedWebHooks));
+        }
+
+        return (pushes);
+    }
+
+    private void onDue(Window window) {
+
+        if (windows.get(window.key) != window) {
+            return;
+        }
+
+        // A full lane is asked again later, until then the window is closed by the next event for its branch
+        try {
+            if (!window.onWindowDue.getAsBoolean()) {
+                scheduler.schedule(() -> onDue(window), appConfig.getPushCoalescingWindow(), TimeUnit.MILLISECONDS);
+            }
+        } catch (RuntimeException re) {
+            logger.error("Problem closing coalescing window, key={}, error={}", window.key, re.getMessage(), re);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("pushCoalescing");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("windowMs", appConfig.getPushCoalescingWindow());
+        metrics.put("openWindows", windows.size());
+        metrics.put("windows", windowCount.get());
+        metrics.put("coalesced", coalescedCount.get());
+        return (metrics);
+    }
+
+    private class Window {
+
+        private final String key;
+        private final String branchKey;
+        private final int laneIndex;
+        private final long dueAt;
+        private final BooleanSupplier onWindowDue;
+        private final String before;
+        private PushHookEvent pushEvent;
+        private final List<QueuedWebHook> queuedWebHooks = new ArrayList<>();
+
+        Window(String key, int laneIndex, PushHookEvent pushEvent, QueuedWebHook queuedWebHook, BooleanSupplier onWindowDue) {
+            this.key = key;
+            this.branchKey = getBranchKey(pushEvent.getProjectId(), pushEvent.getBranch());
+            this.laneIndex = laneIndex;
+            this.dueAt = System.currentTimeMillis() + appConfig.getPushCoalescingWindow();
+            this.onWindowDue = onWindowDue;
+            this.before = pushEvent.getBefore();
+            this.pushEvent = pushEvent;
+            queuedWebHooks.add(queuedWebHook);
+        }
+
+        void merge(PushHookEvent pushEvent, QueuedWebHook queuedWebHook) {
+            pushEvent.setBefore(before);
+            this.pushEvent = pushEvent;
+            queuedWebHooks.add(queuedWebHook);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.models.Project;
+import org.gitlab4j.api.models.User;
+import org.gitlab4j.api.utils.JacksonJson;
+import org.gitlab4j.simplecr.beans.CodeReviewInfo;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.ProjectConfig;
+import org.gitlab4j.simplecr.model.ReviewSnapshot;
+import org.gitlab4j.simplecr.repository.ReviewSnapshotRepository;
+import org.gitlab4j.simplecr.utils.HashUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * This class stores a snapshot of the code review page data for each accepted push, keyed by the signed
+ * code review link that is emailed for it. The push pipeline already has the project, the user and the
+ * branch in hand, so /load can serve the snapshot for the link without calling GitLab.
+ *
+ * A snapshot that has not been validated for the revalidation interval is still served, and is refreshed
+ * from GitLab in the background at low priority. A snapshot whose project no longer exists, or whose
+ * user no longer exists or is blocked, is deleted. Snapshots are purged once they are older than the snapshot TTL.
+ */
+@Service
+public class ReviewSnapshotService implements MetricsSource {
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private ReviewSnapshotRepository reviewSnapshotRepository;
+
+    @Autowired
+    private ProjectCacheService projectCacheService;
+
+    @Autowired
+    private UserDirectoryService userDirectoryService;
+
+    @Autowired
+    private BranchIndexService branchIndexService;
+
+    @Autowired
+    private ProjectConfigSnapshotService projectConfigSnapshot;
+
+    @Autowired
+    private IoExecutorService ioExecutorService;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReviewSnapshotService.class);
+
+    private final JacksonJson jacksonJson = new JacksonJson();
+
+    // The link keys of the snapshots being revalidated
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong savedCount = new AtomicLong();
+    private final AtomicLong saveFailedCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong revalidatedCount = new AtomicLong();
+    private final AtomicLong revalidateFailedCount = new AtomicLong();
+    private final AtomicLong invalidatedCount = new AtomicLong();
+
+    /**
+     * Creates a CodeReviewInfo holding the project, user and branch fields of the code review page.
+     *
+     * @param project the GitLab project
+     * @param user the GitLab user that pushed the branch
+     * @param branchName the name of the pushed branch
+     * @return a CodeReviewInfo holding the project, user and branch fields
+     */
+    public static CodeReviewInfo newCodeReviewInfo(Project project, User user, String branchName) {
+        CodeReviewInfo codeReviewInfo = new CodeReviewInfo();
+        codeReviewInfo.setGroup(project.getNamespace().getName());
+        codeReviewInfo.setProjectId(project.getId());
+        codeReviewInfo.setProjectName(project.getName());
+        codeReviewInfo.setProjectUrl(project.getWebUrl());
+        codeReviewInfo.setSourceBranch(branchName);
+        codeReviewInfo.setUserId(user.getId());
+        codeReviewInfo.setName(user.getName());
+        codeReviewInfo.setEmail(user.getEmail());
+        return (codeReviewInfo);
+    }
+
+    /**
+     * Gets the key of the snapshot for a code review link, the path of the signed link.
+     */
+    public static String getLinkKey(int projectId, String branchName, int userId, String signature) {
+        return (projectId + "/" + branchName + "/" + userId + "/" + signature);
+    }
+
+    /**
+     * Saves the snapshot for an accepted push. A failure is logged and counted, it never fails the push,
+     * /load falls back to the GitLab lookups when there is no snapshot.
+     *
+     * @param projectConfig the ProjectConfig of the project
+     * @param project the GitLab project
+     * @param user the GitLab user that pushed the branch
+     * @param branchName the name of the pushed branch
+     */
+    public void save(ProjectConfig projectConfig, Project project, User user, String branchName) {
+
+        if (!appConfig.getReviewSnapshotEnabled()) {
+            return;
+        }
+
+        try {
+
+            CodeReviewInfo codeReviewInfo = newCodeReviewInfo(project, user, branchName);
+            codeReviewInfo.setTargetBranches(branchIndexService.getTargetBranches(projectConfig, branchName));
+
+            int projectId = project.getId();
+            int userId = user.getId();
+            String signature = HashUtils.makeHash(HashUtils.SHORT_HASH, projectId, branchName, userId);
+            Date now = new Date();
+
+            ReviewSnapshot snapshot = new ReviewSnapshot();
+            snapshot.setLinkKey(getLinkKey(projectId, branchName, userId, signature));
+            snapshot.setProjectId(projectId);
+            snapshot.setBranch(branchName);
+            snapshot.setUserId(userId);
+            snapshot.setCreatedAt(now);
+            snapshot.setValidatedAt(now);
+            snapshot.setPayload(JacksonJson.toJsonString(codeReviewInfo));
+            reviewSnapshotRepository.save(snapshot);
+            savedCount.incrementAndGet();
+
+        } catch (Exception e) {
+            saveFailedCount.incrementAndGet();
+            logger.warn("Could not save review snapshot, projectId={}, branch={}, userId={}, error={}",
+                    project.getId(), branchName, user.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the snapshot for a code review link. The link signature must already have been validated.
+     * A stale snapshot is returned and revalidated in the background.
+     *
+     * @param projectId the ID of the GitLab project
+     * @param branchName the name of the branch
+     * @param userId the ID of the GitLab user
+     * @param signature the signature of the link
+     * @return the CodeReviewInfo for the link, or null if there is no snapshot
+     */
+    public CodeReviewInfo getSnapshot(int projectId, String branchName, int userId, String signature) {
+
+        if (!appConfig.getReviewSnapshotEnabled()) {
+            return (null);
+        }
+
+        String linkKey = getLinkKey(projectId, branchName, userId, signature);
+        Optional<ReviewSnapshot> snapshot = reviewSnapshotRepository.findById(linkKey);
+        if (!snapshot.isPresent()) {
+            missCount.incrementAndGet();
+            return (null);
+        }
+
+        CodeReviewInfo codeReviewInfo;
+        try {
+            codeReviewInfo = jacksonJson.unmarshal(CodeReviewInfo.class, snapshot.get().getPayload());
+        } catch (Exception e) {
+            logger.warn("Dropping unreadable review snapshot, linkKey={}, error={}", linkKey, e.getMessage());
+            reviewSnapshotRepository.deleteById(linkKey);
+            missCount.incrementAndGet();
+            return (null);
+        }
+
+        hitCount.incrementAndGet();
+        long age = System.currentTimeMillis() - snapshot.get().getValidatedAt().getTime();
+        // Never run on the /load thread, when the I/O pool is full the snapshot is revalidated by a later load
+        if (age > appConfig.getReviewSnapshotRevalidateInterval() && revalidating.add(linkKey)) {
+            ioExecutorService.submitInBackground(() -> revalidate(snapshot.get()), false)
+                    .whenComplete((v, e) -> revalidating.remove(linkKey));
+        }
+
+        return (codeReviewInfo);
+    }
+
+    /**
+     * Refreshes a snapshot from GitLab, deleting it if its project or user no longer exists or its user is blocked.
+     */
+    private Void revalidate(ReviewSnapshot snapshot) {
+
+        String linkKey = snapshot.getLinkKey();
+        try {
+
+            ProjectConfig projectConfig = projectConfigSnapshot.getProjectConfig(snapshot.getProjectId());
+            if (projectConfig == null) {
+                invalidate(linkKey, "project not configured");
+                return (null);
+            }
+
+            Project project = projectCacheService.getProject(snapshot.getProjectId());
+            Optional<User> user = userDirectoryService.findUser(snapshot.getUserId());
+            if (!user.isPresent()) {
+                invalidate(linkKey, "user not found or blocked");
+                return (null);
+            }
+
+            CodeReviewInfo codeReviewInfo = newCodeReviewInfo(project, user.get(), snapshot.getBranch());
+            codeReviewInfo.setTargetBranches(branchIndexService.getTargetBranches(projectConfig, snapshot.getBranch()));
+            if (StringUtils.isEmpty(codeReviewInfo.getEmail())) {
+                CodeReviewInfo previous = jacksonJson.unmarshal(CodeReviewInfo.class, snapshot.getPayload());
+                codeReviewInfo.setEmail(previous.getEmail());
+            }
+
+            snapshot.setPayload(JacksonJson.toJsonString(codeReviewInfo));
+            snapshot.setValidatedAt(new Date());
+            reviewSnapshotRepository.save(snapshot);
+            revalidatedCount.incrementAndGet();
+
+        } catch (GitLabApiException glae) {
+            if (glae.getHttpStatus() == 404) {
+                invalidate(linkKey, glae.getMessage());
+            } else {
+                revalidateFailedCount.incrementAndGet();
+                logger.warn("Could not revalidate review snapshot, linkKey={}, httpStatus={}, error={}",
+                        linkKey, glae.getHttpStatus(), glae.getMessage());
+            }
+        } catch (Exception e) {
+            revalidateFailedCount.incrementAndGet();
+            logger.warn("Could not revalidate review snapshot, linkKey={}, error={}", linkKey, e.getMessage());
+        }
+
+        return (null);
+    }
+
+    private void invalidate(String linkKey, String reason) {
+        logger.info("Deleting invalid review snapshot, linkKey={}, reason={}", linkKey, reason);
+        reviewSnapshotRepository.deleteById(linkKey);
+        invalidatedCount.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${simplecr.review-snapshot-purge-interval:3600000}")
+    public void purgeSnapshots() {
+        int numDeleted = reviewSnapshotRepository.deleteCreatedBefore(new Date(System.currentTimeMillis() - appConfig.getReviewSnapshotTtl()));
+        logger.debug("Purged expired review snapshots, numDeleted={}", numDeleted);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("reviewSnapshots");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", appConfig.getReviewSnapshotEnabled());
+        metrics.put("stored", reviewSnapshotRepository.count());
+        metrics.put("saved", savedCount.get());
+        metrics.put("saveFailed", saveFailedCount.get());
+        metrics.put("hits", hitCount.get());
+        metrics.put("misses", missCount.get());
+        metrics.put("revalidating", revalidating.size());
+        metrics.put("revalidated", revalidatedCount.get());
+        metrics.put("revalidateFailed", revalidateFailedCount.get());
+        metrics.put("invalidated", invalidatedCount.get());
+        return (metrics);
+    }
+}
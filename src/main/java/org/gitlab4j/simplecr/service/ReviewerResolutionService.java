@@ -0,0 +1,233 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.Pager;
+import org.gitlab4j.api.models.Member;
+import org.gitlab4j.api.models.User;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.ProjectConfig;
+import org.gitlab4j.simplecr.model.ProjectConfig.MailToType;
+import org.gitlab4j.simplecr.utils.TtlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class resolves the email addresses of the group or project members that review the merge
+ * requests of a project. The members are read a page at a time and, as each page arrives, the emails of
+ * its members are looked up on a bounded pool of threads, with the GitLab priority of the resolving thread.
+ * The resolved set of emails is memoized per project config and mail-to type for a short time, and is
+ * invalidated when the project config changes. A set missing members whose lookup failed, other than
+ * because the member does not exist, is returned but not memoized.
+ */
+@Service
+public class ReviewerResolutionService implements MetricsSource {
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private GitLabClient gitLabClient;
+
+    @Autowired
+    private UserDirectoryService userDirectoryService;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReviewerResolutionService.class);
+
+    private ExecutorService resolverExecutor;
+    private TtlCache<String, Set<String>> memberEmails;
+
+    private final AtomicLong resolutionCount = new AtomicLong();
+    private final AtomicLong resolutionTime = new AtomicLong();
+    private final AtomicLong maxResolutionTime = new AtomicLong();
+    private final AtomicLong memberCount = new AtomicLong();
+    private final AtomicLong partialCount = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        resolverExecutor = Executors.newFixedThreadPool(Math.max(1, appConfig.getReviewerResolutionConcurrency()),
+                new CustomizableThreadFactory("reviewer-resolver-"));
+        memberEmails = new TtlCache<>(appConfig.getReviewerCacheTtl(), appConfig.getReviewerCacheMaxSize());
+    }
+
+    @PreDestroy
+    void stop() {
+        resolverExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the emails of the members that are to review the merge requests of the project.
+     *
+     * @param projectConfig the ProjectConfig of the project
+     * @param groupId the ID of the group (namespace) of the project
+     * @return the set of member emails, empty if the project config does not mail to group or project members
+     */
+    public Set<String> getMemberEmails(ProjectConfig projectConfig, int groupId) {
+
+        MailToType mailToType = projectConfig.getMailToType();
+        if (!MailToType.GROUP.equals(mailToType) && !MailToType.PROJECT.equals(mailToType)) {
+            return (Collections.emptySet());
+        }
+
+        String key = getKey(projectConfig.getId(), mailToType);
+        Set<String> emails = memberEmails.get(key);
+        if (emails != null) {
+            return (emails);
+        }
+
+        Resolution resolution;
+        long startTime = System.currentTimeMillis();
+        try {
+
+            // Concurrent resolutions for the same project config share a single pass over the members
+            resolution = gitLabClient.coalesce("members:" + key, () -> resolve(MailToType.GROUP.equals(mailToType) ?
+                    gitLabClient.getGroupMembers(groupId, appConfig.getReviewerPageSize()) :
+                    gitLabClient.getProjectMembers(projectConfig.getProjectId(), appConfig.getReviewerPageSize())));
+
+        } catch (GitLabApiException glae) {
+            logger.error("Something went wrong while getting {} members, error={}", mailToType, glae.getMessage(), glae);
+            return (Collections.emptySet());
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        resolutionCount.incrementAndGet();
+        resolutionTime.addAndGet(elapsed);
+        maxResolutionTime.accumulateAndGet(elapsed, Math::max);
+        emails = Collections.unmodifiableSet(resolution.emails);
+        logger.info("{} reviewer list, numEmails={}, numFailed={}, elapsedMs={}",
+                mailToType, emails.size(), resolution.numFailed, elapsed);
+
+        // A partial list is used this time, but the next resolution tries the failed members again
+        if (resolution.numFailed == 0) {
+            memberEmails.put(key, emails);
+        } else {
+            partialCount.incrementAndGet();
+        }
+
+        return (emails);
+    }
+
+    /**
+     * Invalidates the memoized reviewers for the project config.
+     *
+     * @param projectConfigId the ID of the changed ProjectConfig
+     */
+    public void invalidate(Long projectConfigId) {
+        for (MailToType mailToType : MailToType.values()) {
+            memberEmails.remove(getKey(projectConfigId, mailToType));
+        }
+    }
+
+    private Resolution resolve(Pager<Member> pager) throws GitLabApiException {
+
+        // Lookups for a page are running while the next page is being read
+        boolean interactive = GitLabClient.isInteractive();
+        List<Future<Optional<User>>> lookups = new ArrayList<>();
+        AtomicInteger numFailed = new AtomicInteger();
+        while (pager.hasNext()) {
+            for (Member member : gitLabClient.nextPage(pager)) {
+                int userId = member.getId();
+                lookups.add(resolverExecutor.submit(() -> lookupUser(userId, interactive, numFailed)));
+            }
+        }
+
+        memberCount.addAndGet(lookups.size());
+        Resolution resolution = new Resolution();
+        Set<String> emails = resolution.emails;
+        try {
+
+            for (Future<Optional<User>> lookup : lookups) {
+                Optional<User> user = lookup.get();
+                if (user.isPresent()) {
+                    String email = user.get().getEmail();
+                    if (email != null && email.trim().length() > 0) {
+                        emails.add(email);
+                    }
+                }
+            }
+
+        } catch (InterruptedException ie) {
+            lookups.forEach(lookup -> lookup.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new GitLabApiException("Interrupted while resolving reviewers");
+        } catch (ExecutionException ee) {
+            lookups.forEach(lookup -> lookup.cancel(true));
+            throw new GitLabApiException("Problem resolving reviewers, error=" + ee.getCause().getMessage());
+        }
+
+        resolution.numFailed = numFailed.get();
+        return (resolution);
+    }
+
+    /**
+     * Looks up a member on a resolver thread with the GitLab priority of the resolving thread. A member
+     * that does not exist or is blocked is empty, a member that could not be loaded is empty and counted as failed.
+     */
+    private Optional<User> lookupUser(int userId, boolean interactive, AtomicInteger numFailed) {
+
+        boolean wasInteractive = GitLabClient.isInteractive();
+        GitLabClient.setInteractive(interactive);
+        try {
+            return (userDirectoryService.findUser(userId));
+        } catch (GitLabApiException glae) {
+            logger.warn("Problem getting reviewer info, userId={}, httpStatus={}, error={}", userId, glae.getHttpStatus(), glae.getMessage());
+            numFailed.incrementAndGet();
+            return (Optional.empty());
+        } finally {
+            GitLabClient.setInteractive(wasInteractive);
+        }
+    }
+
+    private static String getKey(Long projectConfigId, MailToType mailToType) {
+        return (projectConfigId + ":" + mailToType);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("reviewerResolution");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        long numResolutions = resolutionCount.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("concurrency", appConfig.getReviewerResolutionConcurrency());
+        metrics.put("resolutions", numResolutions);
+        metrics.put("membersResolved", memberCount.get());
+        metrics.put("partial", partialCount.get());
+        metrics.put("avgResolutionMs", numResolutions > 0 ? (double) resolutionTime.get() / numResolutions : 0.0);
+        metrics.put("maxResolutionMs", maxResolutionTime.get());
+        metrics.put("memo", memberEmails.getMetrics());
+        return (metrics);
+    }
+
+    /**
+     * The emails resolved for the members, and the number of members that could not be looked up.
+     */
+    private static class Resolution {
+
+        private final Set<String> emails = new TreeSet<>();
+        private int numFailed;
+    }
+}
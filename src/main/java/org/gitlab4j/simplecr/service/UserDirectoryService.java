@@ -0,0 +1,242 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.models.User;
+import org.gitlab4j.simplecr.beans.MergeRequestHookEvent;
+import org.gitlab4j.simplecr.beans.PushHookEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.utils.TtlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * This class is a cache of the GitLab users, holding only the ID, name, username and email of each user.
+ * Users that don't exist or are blocked are also cached, for a shorter time, so they are not looked up
+ * over and over again when resolving reviewers. The cache is warmed with the user info carried in
+ * validated push and merge request payloads, a user loaded from GitLab is never replaced with payload info.
+ *
+ * Each lookup returns a new User so callers are free to modify it.
+ */
+@Service
+public class UserDirectoryService implements MetricsSource {
+
+    private static final String BLOCKED_STATE = "blocked";
+    private static final int NOT_FOUND = 404;
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private GitLabClient gitLabClient;
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectoryService.class);
+
+    private TtlCache<Integer, UserEntry> users;
+
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadTime = new AtomicLong();
+    private final AtomicLong negativeHitCount = new AtomicLong();
+    private final AtomicLong warmedCount = new AtomicLong();
+
+    @PostConstruct
+    void createCache() {
+        users = new TtlCache<>(appConfig.getUserCacheTtl(), appConfig.getUserCacheMaxSize());
+    }
+
+    /**
+     * Gets the user with the specified ID.
+     *
+     * @param userId the ID of the user to get
+     * @return the User
+     * @throws GitLabApiException if the user does not exist, is blocked, or any error occurs loading the user
+     */
+    public User getUser(int userId) throws GitLabApiException {
+
+        UserEntry entry = getEntry(userId);
+        if (entry == UserEntry.MISSING) {
+            throw new GitLabApiException("User not found or blocked, userId=" + userId);
+        }
+
+        return (entry.toUser());
+    }
+
+    /**
+     * Gets the user with the specified ID as an Optional.
+     *
+     * @param userId the ID of the user to get
+     * @return the User, or an empty Optional if the user does not exist, is blocked, or could not be loaded
+     */
+    public Optional<User> getOptionalUser(int userId) {
+
+        try {
+            return (findUser(userId));
+        } catch (GitLabApiException glae) {
+            logger.warn("Problem getting user info, userId={}, httpStatus={}, error={}", userId, glae.getHttpStatus(), glae.getMessage());
+            return (Optional.empty());
+        }
+    }
+
+    /**
+     * Finds the user with the specified ID, telling a user that does not exist apart from one that
+     * could not be loaded.
+     *
+     * @param userId the ID of the user to find
+     * @return the User, or an empty Optional if the user does not exist or is blocked
+     * @throws GitLabApiException if any other error occurs loading the user
+     */
+    public Optional<User> findUser(int userId) throws GitLabApiException {
+        UserEntry entry = getEntry(userId);
+        return (entry == UserEntry.MISSING ? Optional.empty() : Optional.of(entry.toUser()));
+    }
+
+    /**
+     * Warms the cache with the user info carried in a push payload, must only be called once the
+     * secret token of the payload has been validated.
+     *
+     * @param pushEvent the received push event
+     */
+    public void warm(PushHookEvent pushEvent) {
+        warm(pushEvent.getUserId(), pushEvent.getUserName(), pushEvent.getUserUsername(), pushEvent.getUserEmail());
+    }
+
+    /**
+     * Warms the cache with the user info carried in a merge request payload, must only be called once
+     * the secret token of the payload has been validated.
+     *
+     * @param mergeRequestEvent the received merge request event
+     */
+    public void warm(MergeRequestHookEvent mergeRequestEvent) {
+        warm(mergeRequestEvent.getUserId(), mergeRequestEvent.getUserName(),
+                mergeRequestEvent.getUserUsername(), mergeRequestEvent.getUserEmail());
+    }
+
+    /**
+     * Evicts the user with the specified ID from the cache.
+     *
+     * @param userId the ID of the user to evict
+     */
+    public void evict(int userId) {
+        users.remove(userId);
+    }
+
+    private void warm(Integer userId, String name, String username, String email) {
+
+        // Payloads only carry an email for the user when GitLab is configured to include it
+        if (userId == null || !StringUtils.hasText(username) || !StringUtils.hasText(email)) {
+            return;
+        }
+
+        // The TtlCache methods lock the cache, holding its lock makes the check and put a single step
+        synchronized (users) {
+
+            // Users loaded from GitLab, including missing and blocked users, are not replaced with payload info
+            UserEntry entry = users.peek(userId);
+            if (entry != null && !entry.warmed) {
+                return;
+            }
+
+            users.put(userId, new UserEntry(userId, name, username, email, true));
+        }
+
+        warmedCount.incrementAndGet();
+    }
+
+    private UserEntry getEntry(int userId) throws GitLabApiException {
+
+        UserEntry entry = users.get(userId);
+        if (entry != null) {
+            if (entry == UserEntry.MISSING) {
+                negativeHitCount.incrementAndGet();
+            }
+
+            return (entry);
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+
+            User user = gitLabClient.getUser(userId);
+            if (user == null || BLOCKED_STATE.equals(user.getState())) {
+                users.put(userId, UserEntry.MISSING, appConfig.getUserCacheNegativeTtl());
+                return (UserEntry.MISSING);
+            }
+
+            entry = new UserEntry(user.getId(), user.getName(), user.getUsername(), user.getEmail(), false);
+            users.put(userId, entry);
+            return (entry);
+
+        } catch (GitLabApiException glae) {
+
+            if (glae.getHttpStatus() == NOT_FOUND) {
+                users.put(userId, UserEntry.MISSING, appConfig.getUserCacheNegativeTtl());
+                return (UserEntry.MISSING);
+            }
+
+            throw glae;
+
+        } finally {
+            loadCount.incrementAndGet();
+            loadTime.addAndGet(System.currentTimeMillis() - startTime);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("userDirectory");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        long numLoads = loadCount.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cache", users.getMetrics());
+        metrics.put("negativeHits", negativeHitCount.get());
+        metrics.put("warmed", warmedCount.get());
+        metrics.put("loads", numLoads);
+        metrics.put("avgLoadMs", numLoads > 0 ? (double) loadTime.get() / numLoads : 0.0);
+        metrics.put("negativeTtlMs", appConfig.getUserCacheNegativeTtl());
+        return (metrics);
+    }
+
+    private static class UserEntry {
+
+        // Marks a user that does not exist or is blocked
+        private static final UserEntry MISSING = new UserEntry(null, null, null, null, false);
+
+        private final Integer id;
+        private final String name;
+        private final String username;
+        private final String email;
+
+        // True if the entry holds the user info from a payload rather than from GitLab
+        private final boolean warmed;
+
+        UserEntry(Integer id, String name, String username, String email, boolean warmed) {
+            this.id = id;
+            this.name = name;
+            this.username = username;
+            this.email = email;
+            this.warmed = warmed;
+        }
+
+        User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setName(name);
+            user.setUsername(username);
+            user.setEmail(email);
+            return (user);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.gitlab4j.simplecr.beans.HookEvent;
+import org.gitlab4j.simplecr.beans.MergeRequestHookEvent;
+import org.gitlab4j.simplecr.beans.PushHookEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.WebHookDelivery;
+import org.gitlab4j.simplecr.repository.WebHookDeliveryRepository;
+import org.gitlab4j.simplecr.utils.HashUtils;
+import org.gitlab4j.simplecr.utils.TtlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * This class recognizes webhook events that GitLab has re-delivered. A delivery is identified by the
+ * X-Gitlab-Event-UUID header, or when that is missing by the parts of the payload that identify the event.
+ * The keys of the accepted deliveries are held in a bounded, time expiring in-memory set so a duplicate is
+ * dropped without any database or GitLab access, and are also written to the webhook_delivery table so
+ * the set can be restored at startup.
+ */
+@Service
+public class WebHookDeduplicationService implements MetricsSource {
+
+    public static final String X_GITLAB_EVENT_UUID = "X-Gitlab-Event-UUID";
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private WebHookDeliveryRepository webHookDeliveryRepository;
+
+    private static final Logger logger = LoggerFactory.getLogger(WebHookDeduplicationService.class);
+
+    private TtlCache<String, Boolean> deliveryKeys;
+
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private final AtomicLong uniqueCount = new AtomicLong();
+
+    @PostConstruct
+    void loadDeliveryKeys() {
+
+        deliveryKeys = new TtlCache<>(appConfig.getWebhookDeduplicationTtl(), appConfig.getWebhookDeduplicationMaxEntries());
+
+        long now = System.currentTimeMillis();
+        Date cutoff = new Date(now - deliveryKeys.getTtl());
+        List<WebHookDelivery> deliveries = webHookDeliveryRepository.findByReceivedAtAfterOrderByReceivedAtAsc(cutoff);
+        for (WebHookDelivery delivery : deliveries) {
+            long remainingTtl = delivery.getReceivedAt().getTime() + deliveryKeys.getTtl() - now;
+            deliveryKeys.put(delivery.getDeliveryKey(), Boolean.TRUE, remainingTtl);
+        }
+
+        logger.info("Loaded webhook delivery keys, numKeys={}", deliveries.size());
+    }
+
+    /**
+     * Gets the key that identifies the delivery of the event.
+     *
+     * @param eventUuid the value of the X-Gitlab-Event-UUID header, may be null
+     * @param event the received event
+     * @return the key that identifies the delivery of the event, or null if it can't be identified
+     */
+    public String getDeliveryKey(String eventUuid, HookEvent event) {
+
+        if (StringUtils.hasText(eventUuid)) {
+            return ("uuid:" + eventUuid.trim());
+        }
+
+        if (event instanceof PushHookEvent) {
+            PushHookEvent pushEvent = (PushHookEvent) event;
+            return ("push:" + HashUtils.getMD5Hash(pushEvent.getProjectId() + ":" +
+                    pushEvent.getRef() + ":" + pushEvent.getBefore() + ":" + pushEvent.getAfter()));
+        }
+
+        if (event instanceof MergeRequestHookEvent) {
+            MergeRequestHookEvent mergeRequestEvent = (MergeRequestHookEvent) event;
+            Date updatedAt = mergeRequestEvent.getUpdatedAt();
+            return ("mr:" + HashUtils.getMD5Hash(mergeRequestEvent.getTargetProjectId() + ":" + mergeRequestEvent.getIid() + ":" +
+                    mergeRequestEvent.getState() + ":" + mergeRequestEvent.getMergeStatus() + ":" + (updatedAt != null ? updatedAt.getTime() : 0)));
+        }
+
+        return (null);
+    }
+
+    /**
+     * Returns true if the delivery has already been accepted, otherwise claims the delivery key.
+     * Once the event has been queued or processed {@link #recordDelivery(String)} must be called,
+     * or {@link #forgetDelivery(String)} if it could not be.
+     *
+     * @param deliveryKey the key that identifies the delivery, may be null
+     * @return true if the delivery has already been accepted
+     */
+    public boolean isDuplicate(String deliveryKey) {
+
+        if (deliveryKey == null) {
+            return (false);
+        }
+
+        if (deliveryKeys.putIfAbsent(deliveryKey, Boolean.TRUE) != null) {
+            duplicateCount.incrementAndGet();
+            return (true);
+        }
+
+        uniqueCount.incrementAndGet();
+        return (false);
+    }
+
+    /**
+     * Persists the delivery key so it is recognized after a restart.
+     *
+     * @param deliveryKey the key that identifies the delivery, may be null
+     */
+    public void recordDelivery(String deliveryKey) {
+
+        if (deliveryKey == null) {
+            return;
+        }
+
+        try {
+            webHookDeliveryRepository.save(new WebHookDelivery(deliveryKey, new Date()));
+        } catch (Exception e) {
+            logger.warn("Problem recording webhook delivery, key={}, error={}", deliveryKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the claim on a delivery key so a re-delivery of the event is accepted.
+     *
+     * @param deliveryKey the key that identifies the delivery, may be null
+     */
+    public void forgetDelivery(String deliveryKey) {
+        if (deliveryKey != null) {
+            deliveryKeys.remove(deliveryKey);
+        }
+    }
+
+    /**
+     * Periodically removes the expired delivery keys.
+     */
+    @Scheduled(fixedDelayString = "${simplecr.webhook-deduplication-purge-interval:3600000}")
+    public void purgeDeliveryKeys() {
+        deliveryKeys.removeExpired();
+        int numDeleted = webHookDeliveryRepository.deleteReceivedBefore(new Date(System.currentTimeMillis() - deliveryKeys.getTtl()));
+        logger.debug("Purged expired webhook delivery keys, numDeleted={}", numDeleted);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("webhookDeduplication");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hits", duplicateCount.get());
+        metrics.put("misses", uniqueCount.get());
+        metrics.put("keys", deliveryKeys.getMetrics());
+        return (metrics);
+    }
+}
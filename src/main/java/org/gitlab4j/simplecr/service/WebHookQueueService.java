@@ -0,0 +1,633 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.webhook.MergeRequestEvent;
+import org.gitlab4j.api.webhook.PushEvent;
+import org.gitlab4j.simplecr.beans.HookEvent;
+import org.gitlab4j.simplecr.beans.PushHookEvent;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.QueuedWebHook;
+import org.gitlab4j.simplecr.repository.QueuedWebHookRepository;
+import org.gitlab4j.simplecr.service.PushCoalescingService.CoalescedPush;
+import org.gitlab4j.simplecr.utils.HookEventParser;
+import org.gitlab4j.simplecr.utils.PartitionedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class provides a durable queue for received webhook events. Events are persisted to the
+ * webhook_queue table before the webhook request is acknowledged, and are then handed off to a
+ * PartitionedExecutor which passes them on to the GitLabWebHookService. A queued event is only removed
+ * from the table once it has been processed, so any events that were pending when the server went down
+ * are replayed at startup.
+ *
+ * Events are partitioned by project and branch, a push and the later merge request events for the same
+ * branch are always processed in the order they were received, while events for different branches and
+ * projects are processed in parallel. When a lane is full (or an event in it is to be retried) the lane
+ * is marked as spilled, further events for it are only persisted, and the sweep hands them to the lane
+ * in the order they were received once there is room.
+ *
+ * When push coalescing is enabled a push is held in the PushCoalescingService until its window closes,
+ * and the queued webhooks for all the pushes merged into it are removed once the merged push is processed.
+ * The open windows for a branch are closed on its lane before the lane processes any other event for the
+ * branch, so a held push is processed ahead of the events for its branch received after it. The windows
+ * for the other branches that share the lane stay open until their time is up.
+ *
+ * Payloads are parsed with the HookEventParser into compact HookEvents, so a queued event in a lane only
+ * holds the handful of fields that are acted on rather than a full gitlab4j Event.
+ *
+ * While the GitLab circuit breaker is open the event is deferred rather than failed, it stays in the table
+ * without using up a retry attempt and its lane is marked as spilled. So is an event whose call was turned
+ * away by a half-open breaker. The sweep does not hand events back to the lanes while GitLab is down. Any
+ * other failure, such as a GitLab error or a lookup that did not finish in time, uses up an attempt and the
+ * event is handed to the lane again by the sweep, until it runs out of attempts.
+ *
+ * A deferred or failed event blocks its lane. The epoch of the lane is advanced, and the events that were
+ * handed to the lane before that are given back to the table rather than processed when their turn comes.
+ * The sweep waits for them to be given back and then hands the deferred event and its followers to the
+ * lane again in the order they were received, so nothing on a branch gets ahead of an event being retried.
+ */
+@Service
+public class WebHookQueueService implements MetricsSource {
+
+    @Autowired
+    private SimpleCrConfiguration appConfig;
+
+    @Autowired
+    private QueuedWebHookRepository queuedWebHookRepository;
+
+    @Autowired
+    private GitLabWebHookService gitLabWebHookService;
+
+    @Autowired
+    private PushCoalescingService pushCoalescingService;
+
+    @Autowired
+    private CircuitBreakerService circuitBreakerService;
+
+    private static final Logger logger = LoggerFactory.getLogger(WebHookQueueService.class);
+
+    // The number of milliseconds to wait before handing a task to a full lane again
+    private static final long LANE_FULL_WAIT = 100;
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong deferredCount = new AtomicLong();
+    private final AtomicLong releasedCount = new AtomicLong();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private final AtomicLong lastLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+
+    private PartitionedExecutor laneExecutor;
+    private Lane[] lanes;
+
+    @PostConstruct
+    void startLanes() {
+
+        laneExecutor = new PartitionedExecutor("webhook", appConfig.getWebhookLanes(),
+                appConfig.getWebhookLaneQueueSize(), appConfig.getWebhookLaneLatencyThreshold());
+
+        // All lanes start out spilled so that new events wait behind the events being replayed
+        int numLanes = laneExecutor.getNumLanes();
+        lanes = new Lane[numLanes];
+        for (int i = 0; i < numLanes; i++) {
+            lanes[i] = new Lane();
+        }
+
+        // Events queued before the lane hash was stored are given one, so they can be assigned a lane
+        for (QueuedWebHook queuedWebHook : queuedWebHookRepository.findByLaneHashIsNull()) {
+            queuedWebHook.setLaneHash(PartitionedExecutor.getPartitionHash(getPartitionKey(queuedWebHook)));
+            queuedWebHookRepository.save(queuedWebHook);
+        }
+
+        // The sweep looks up queued events by their stored lane, which changes with the number of lanes
+        int numReassigned = queuedWebHookRepository.assignLanes(numLanes);
+        if (numReassigned > 0) {
+            logger.info("Assigned queued webhook events to lanes, numEvents={}", numReassigned);
+        }
+
+        logger.info("Started webhook lanes, numLanes={}, laneQueueSize={}, latencyThreshold={}ms",
+                numLanes, laneExecutor.getLaneQueueSize(), laneExecutor.getLatencyThreshold());
+    }
+
+    @PreDestroy
+    void stopLanes() throws InterruptedException {
+        if (!laneExecutor.shutdown(10, TimeUnit.SECONDS)) {
+            logger.warn("Webhook lanes did not finish in time, unprocessed events will be replayed at startup");
+        }
+    }
+
+    /**
+     * Returns true if the named event type is one that is queued, only push and merge request
+     * events are acted upon by Simple-CR.
+     *
+     * @param eventName the value of the X-Gitlab-Event header
+     * @return true if the named event type is queued
+     */
+    public boolean isQueued(String eventName) {
+        return (PushEvent.X_GITLAB_EVENT.equals(eventName) || MergeRequestEvent.X_GITLAB_EVENT.equals(eventName));
+    }
+
+    /**
+     * Persists the provided webhook event and then hands it off to its lane. When this method returns
+     * the event is durable and the webhook request can be acknowledged.
+     *
+     * @param eventName the value of the X-Gitlab-Event header
+     * @param secretToken the value of the X-Gitlab-Token header
+     * @param payload the JSON payload of the webhook request
+     * @param event the HookEvent parsed from the payload
+     * @return the persisted QueuedWebHook
+     */
+    public QueuedWebHook enqueue(String eventName, String secretToken, String payload, HookEvent event) {
+
+        QueuedWebHook queuedWebHook = new QueuedWebHook();
+        queuedWebHook.setReceivedAt(new Date());
+        queuedWebHook.setEventName(eventName);
+        queuedWebHook.setSecretToken(secretToken);
+        queuedWebHook.setPayload(payload);
+        queuedWebHook.setAttempts(0);
+        queuedWebHook.setProjectId(event.getProjectId());
+        queuedWebHook.setBranch(event.getBranch());
+        queuedWebHook.setLaneHash(PartitionedExecutor.getPartitionHash(getPartitionKey(queuedWebHook)));
+
+        // Persist and dispatch under the lane lock so events are handed to the lane in ID order
+        int laneIndex = getLaneIndex(queuedWebHook);
+        queuedWebHook.setLane(laneIndex);
+        Lane lane = lanes[laneIndex];
+        synchronized (lane) {
+
+            queuedWebHook = queuedWebHookRepository.save(queuedWebHook);
+            enqueuedCount.incrementAndGet();
+            lane.numPersisted++;
+
+            if (lane.spilled || !dispatch(laneIndex, queuedWebHook, event)) {
+                lane.spilled = true;
+            }
+        }
+
+        return (queuedWebHook);
+    }
+
+    /**
+     * Runs a task on the lane for a project and branch, so it is run in turn with the live events for the
+     * branch rather than at the same time as them. Waits while the lane is full, and while it is spilled so
+     * the task does not overtake the live events waiting in the table to be handed to the lane.
+     *
+     * @param projectId the project ID the task is for
+     * @param branch the branch the task is for
+     * @param task the task to run
+     * @throws InterruptedException if interrupted while waiting for room in the lane
+     */
+    public void runOnLane(Integer projectId, String branch, Runnable task) throws InterruptedException {
+
+        int laneIndex = laneExecutor.getLaneIndex(projectId + ":" + branch);
+        Lane lane = lanes[laneIndex];
+        while (true) {
+
+            // Submitted under the lane lock, as the live events are, once the lane has caught up with the table
+            synchronized (lane) {
+                if (!lane.spilled && laneExecutor.submit(laneIndex, task)) {
+                    return;
+                }
+            }
+
+            if (laneExecutor.isShutdown()) {
+                throw new IllegalStateException("Webhook lanes have been shut down");
+            }
+
+            Thread.sleep(LANE_FULL_WAIT);
+        }
+    }
+
+    /**
+     * Replays the events left in the queue by a previous run of the server.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayQueuedEvents() {
+
+        long numQueued = queuedWebHookRepository.count();
+        if (numQueued > 0) {
+            logger.info("Replaying queued webhook events, numQueued={}", numQueued);
+        }
+
+        replayedCount.addAndGet(drainBacklog());
+    }
+
+    /**
+     * Periodically hands off the queued events for spilled lanes, these are events that were received
+     * while the lane was full, or that failed and are to be retried.
+     */
+    @Scheduled(fixedDelayString = "${simplecr.webhook-sweep-interval:30000}")
+    public void sweepQueuedEvents() {
+
+        String openDependency = circuitBreakerService.getOpenDependency();
+        if (openDependency != null) {
+            logger.info("Skipping webhook sweep while a dependency is unavailable, dependency={}", openDependency);
+            return;
+        }
+
+        drainBacklog();
+    }
+
+    private synchronized int drainBacklog() {
+
+        int numDispatched = 0;
+        for (int laneIndex = 0; laneIndex < lanes.length; laneIndex++) {
+            numDispatched += drainLane(laneIndex);
+        }
+
+        return (numDispatched);
+    }
+
+    /**
+     * Hands the queued events for a spilled lane to the lane in ID order. The events are read without
+     * holding the lane lock, the events processed and persisted for the lane while they are read are
+     * tracked so that the events read can be checked against them once the lock is held.
+     */
+    private int drainLane(int laneIndex) {
+
+        Lane lane = lanes[laneIndex];
+        long epoch;
+        long numPersisted;
+        synchronized (lane) {
+
+            if (!lane.spilled) {
+                return (0);
+            }
+
+            epoch = lane.epoch;
+            numPersisted = lane.numPersisted;
+            lane.deletedDuringRead = new HashSet<>();
+        }
+
+        List<QueuedWebHook> queuedWebHooks;
+        try {
+            queuedWebHooks = queuedWebHookRepository.findByLaneOrderByIdAsc(laneIndex);
+        } catch (RuntimeException re) {
+            synchronized (lane) {
+                lane.deletedDuringRead = null;
+            }
+
+            throw re;
+        }
+
+        synchronized (lane) {
+
+            Set<Long> deletedDuringRead = lane.deletedDuringRead;
+            lane.deletedDuringRead = null;
+
+            // The lane was blocked while the events were read, they are handed over by the next sweep
+            if (lane.epoch != epoch) {
+                return (0);
+            }
+
+            // Events persisted while the events were read are not in the list, the lane stays spilled for them
+            boolean drained = (lane.numPersisted == numPersisted);
+            int numDispatched = 0;
+            for (QueuedWebHook queuedWebHook : queuedWebHooks) {
+
+                Long id = queuedWebHook.getId();
+                if (deletedDuringRead.contains(id)) {
+                    continue;
+                }
+
+                // An event handed over before the epoch was advanced has yet to be given back, wait for it
+                Long inFlightEpoch = lane.inFlight.get(id);
+                if (inFlightEpoch != null) {
+                    if (inFlightEpoch != epoch) {
+                        drained = false;
+                        break;
+                    }
+
+                    continue;
+                }
+
+                HookEvent event;
+                try {
+                    event = parseEvent(queuedWebHook.getPayload());
+                } catch (GitLabApiException glae) {
+                    logger.error("Dropping unparsable queued event, id={}, error={}", id, glae.getMessage());
+                    queuedWebHookRepository.delete(queuedWebHook);
+                    droppedCount.incrementAndGet();
+                    continue;
+                }
+
+                if (!dispatch(laneIndex, queuedWebHook, event)) {
+                    drained = false;
+                    break;
+                }
+
+                numDispatched++;
+            }
+
+            lane.spilled = !drained;
+            return (numDispatched);
+        }
+    }
+
+    /**
+     * Hands a queued event to its lane in the current epoch of the lane, must be called holding the lane lock.
+     */
+    private boolean dispatch(int laneIndex, QueuedWebHook queuedWebHook, HookEvent event) {
+
+        Lane lane = lanes[laneIndex];
+        Long id = queuedWebHook.getId();
+        if (lane.inFlight.containsKey(id)) {
+            return (true);
+        }
+
+        lane.inFlight.put(id, lane.epoch);
+        if (laneExecutor.submit(laneIndex, () -> process(laneIndex, queuedWebHook, event))) {
+            return (true);
+        }
+
+        lane.inFlight.remove(id);
+        overflowCount.incrementAndGet();
+        logger.warn("Webhook lane is full, event will be picked up by the next sweep, id={}, lane={}", id, laneIndex);
+        return (false);
+    }
+
+    private void process(int laneIndex, QueuedWebHook queuedWebHook, HookEvent event) {
+
+        if (!isCurrent(laneIndex, Collections.singletonList(queuedWebHook))) {
+            return;
+        }
+
+        long lag = System.currentTimeMillis() - queuedWebHook.getReceivedAt().getTime();
+        lastLag.set(lag);
+        maxLag.accumulateAndGet(lag, Math::max);
+
+        event.setSecretToken(queuedWebHook.getSecretToken());
+        if (!pushCoalescingService.isEnabled()) {
+            handle(laneIndex, event, Collections.singletonList(queuedWebHook));
+            return;
+        }
+
+        // The pushes held in the other windows for this branch were received before this event, they go first
+        String windowKey = (event instanceof PushHookEvent ? pushCoalescingService.getKey((PushHookEvent) event) : null);
+        closeWindows(laneIndex, PushCoalescingService.getBranchKey(event.getProjectId(), event.getBranch()), windowKey, false);
+        if (windowKey == null) {
+            handle(laneIndex, event, Collections.singletonList(queuedWebHook));
+            return;
+        }
+
+        // Pushes are held in a coalescing window, the queued webhooks stay in flight until the window closes
+        if (isCurrent(laneIndex, Collections.singletonList(queuedWebHook))) {
+            pushCoalescingService.add(laneIndex, (PushHookEvent) event, queuedWebHook,
+                    () -> laneExecutor.submit(laneIndex, () -> closeWindows(laneIndex, null, null, true)));
+        }
+    }
+
+    /**
+     * Closes the coalescing windows on a lane, for one branch or all of them, and processes their pushes,
+     * must be called on the lane.
+     */
+    private void closeWindows(int laneIndex, String branchKey, String exceptKey, boolean dueOnly) {
+        for (CoalescedPush coalescedPush : pushCoalescingService.close(laneIndex, branchKey, exceptKey, dueOnly)) {
+            handle(laneIndex, coalescedPush.getPushEvent(), coalescedPush.getQueuedWebHooks());
+        }
+    }
+
+    private void handle(int laneIndex, HookEvent event, List<QueuedWebHook> queuedWebHooks) {
+
+        if (!isCurrent(laneIndex, queuedWebHooks)) {
+            return;
+        }
+
+        String openDependency = circuitBreakerService.getOpenDependency();
+        if (openDependency != null) {
+            defer(laneIndex, queuedWebHooks, openDependency);
+            return;
+        }
+
+        try {
+
+            gitLabWebHookService.handleHookEvent(event);
+            remove(laneIndex, queuedWebHooks);
+            processedCount.addAndGet(queuedWebHooks.size());
+
+        } catch (Exception e) {
+
+            // A failure caused by a dependency going down, or a call its breaker turned away, does not count against the event
+            openDependency = circuitBreakerService.getOpenDependency();
+            if (openDependency == null && GitLabClient.isCircuitOpen(e)) {
+                openDependency = CircuitBreakerService.GITLAB;
+            }
+
+            if (openDependency != null) {
+                defer(laneIndex, queuedWebHooks, openDependency);
+                return;
+            }
+
+            failedCount.incrementAndGet();
+
+            boolean retry = false;
+            List<QueuedWebHook> dropped = new ArrayList<>();
+            for (QueuedWebHook queuedWebHook : queuedWebHooks) {
+
+                Long id = queuedWebHook.getId();
+                int attempts = queuedWebHook.getAttempts() + 1;
+                if (attempts >= appConfig.getWebhookRetryLimit()) {
+                    logger.error("Dropping queued event after {} attempts, id={}, error={}", attempts, id, e.getMessage(), e);
+                    dropped.add(queuedWebHook);
+                } else {
+                    logger.warn("Problem processing queued event, will retry, id={}, attempts={}, error={}", id, attempts, e.getMessage());
+                    queuedWebHook.setAttempts(attempts);
+                    queuedWebHookRepository.save(queuedWebHook);
+                    retry = true;
+                }
+            }
+
+            remove(laneIndex, dropped);
+            droppedCount.addAndGet(dropped.size());
+
+            // Hold back the events behind these until the retry has been handed to the lane
+            if (retry) {
+                block(laneIndex, queuedWebHooks);
+            }
+        }
+    }
+
+    /**
+     * Deletes queued events that are done with and takes them out of flight, holding the lane lock so
+     * the sweep cannot see them out of flight while they are still in the table.
+     */
+    private void remove(int laneIndex, List<QueuedWebHook> queuedWebHooks) {
+
+        if (queuedWebHooks.isEmpty()) {
+            return;
+        }
+
+        Lane lane = lanes[laneIndex];
+        synchronized (lane) {
+
+            queuedWebHookRepository.deleteAll(queuedWebHooks);
+            for (QueuedWebHook queuedWebHook : queuedWebHooks) {
+                lane.inFlight.remove(queuedWebHook.getId());
+                if (lane.deletedDuringRead != null) {
+                    lane.deletedDuringRead.add(queuedWebHook.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the queued events were handed to the lane in its current epoch. Events handed over
+     * in an earlier epoch are behind an event that is to be retried, they are given back to the table
+     * for the sweep to hand over again after it.
+     */
+    private boolean isCurrent(int laneIndex, List<QueuedWebHook> queuedWebHooks) {
+
+        Lane lane = lanes[laneIndex];
+        synchronized (lane) {
+
+            Long epoch = lane.epoch;
+            if (queuedWebHooks.stream().allMatch(queuedWebHook -> epoch.equals(lane.inFlight.get(queuedWebHook.getId())))) {
+                return (true);
+            }
+
+            queuedWebHooks.forEach(queuedWebHook -> lane.inFlight.remove(queuedWebHook.getId()));
+            releasedCount.addAndGet(queuedWebHooks.size());
+            lane.spilled = true;
+            return (false);
+        }
+    }
+
+    /**
+     * Gives the queued events back to the table and advances the epoch of the lane, so the events handed
+     * to the lane after them are given back as well rather than processed ahead of them.
+     */
+    private void block(int laneIndex, List<QueuedWebHook> queuedWebHooks) {
+
+        Lane lane = lanes[laneIndex];
+        synchronized (lane) {
+
+            queuedWebHooks.forEach(queuedWebHook -> lane.inFlight.remove(queuedWebHook.getId()));
+            lane.spilled = true;
+            lane.epoch++;
+
+            // The pushes held in coalescing windows on the lane are behind these too, give them back now
+            for (CoalescedPush coalescedPush : pushCoalescingService.close(laneIndex, null, null, false)) {
+                List<QueuedWebHook> held = coalescedPush.getQueuedWebHooks();
+                held.forEach(queuedWebHook -> lane.inFlight.remove(queuedWebHook.getId()));
+                releasedCount.addAndGet(held.size());
+            }
+        }
+    }
+
+    /**
+     * Leaves the queued events in the table, without counting an attempt, for the sweep to hand
+     * back to the lane once the dependency is available again.
+     */
+    private void defer(int laneIndex, List<QueuedWebHook> queuedWebHooks, String openDependency) {
+
+        deferredCount.addAndGet(queuedWebHooks.size());
+        logger.debug("Deferring queued events while a dependency is unavailable, dependency={}, numEvents={}, lane={}",
+                openDependency, queuedWebHooks.size(), laneIndex);
+        block(laneIndex, queuedWebHooks);
+    }
+
+    private int getLaneIndex(QueuedWebHook queuedWebHook) {
+        Integer laneHash = queuedWebHook.getLaneHash();
+        return (laneHash != null ? laneHash % lanes.length : laneExecutor.getLaneIndex(getPartitionKey(queuedWebHook)));
+    }
+
+    private static String getPartitionKey(QueuedWebHook queuedWebHook) {
+        return (queuedWebHook.getProjectId() + ":" + queuedWebHook.getBranch());
+    }
+
+    /**
+     * Parses the JSON payload of a push or merge request webhook request.
+     *
+     * @param payload the JSON payload of the webhook request
+     * @return the parsed HookEvent
+     * @throws GitLabApiException if the payload could not be parsed
+     */
+    public HookEvent parseEvent(String payload) throws GitLabApiException {
+        try {
+            return (HookEventParser.parse(payload));
+        } catch (Exception e) {
+            throw new GitLabApiException("Could not parse webhook payload, error=" + e.getMessage());
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("webhookQueue");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+
+        int numInFlight = 0;
+        int numSpilled = 0;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                numInFlight += lane.inFlight.size();
+                numSpilled += (lane.spilled ? 1 : 0);
+            }
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("depth", queuedWebHookRepository.count());
+        metrics.put("inFlight", numInFlight);
+        metrics.put("laneQueued", laneExecutor.getQueuedCount());
+        metrics.put("enqueued", enqueuedCount.get());
+        metrics.put("processed", processedCount.get());
+        metrics.put("failed", failedCount.get());
+        metrics.put("dropped", droppedCount.get());
+        metrics.put("overflowed", overflowCount.get());
+        metrics.put("deferred", deferredCount.get());
+        metrics.put("released", releasedCount.get());
+        metrics.put("replayed", replayedCount.get());
+        metrics.put("lastLagMs", lastLag.get());
+        metrics.put("maxLagMs", maxLag.get());
+
+        Optional<QueuedWebHook> oldest = queuedWebHookRepository.findFirstByOrderByIdAsc();
+        metrics.put("oldestAgeMs", oldest.isPresent() ? System.currentTimeMillis() - oldest.get().getReceivedAt().getTime() : 0L);
+
+        metrics.put("spilledLanes", numSpilled);
+        metrics.put("executor", laneExecutor.getMetrics());
+        return (metrics);
+    }
+
+    /**
+     * The state of a lane, guarded by the Lane itself. A spilled lane has queued events that have not
+     * been handed to it. The in-flight map holds the IDs of the queued events handed to the lane and
+     * the epoch they were handed over in, an event is deleted and taken out of flight in one step.
+     */
+    private static class Lane {
+
+        private boolean spilled = true;
+        private long epoch;
+        private final Map<Long, Long> inFlight = new HashMap<>();
+
+        // The number of events persisted, and the events deleted while the sweep reads the lane's events
+        private long numPersisted;
+        private Set<Long> deletedDuringRead;
+    }
+}
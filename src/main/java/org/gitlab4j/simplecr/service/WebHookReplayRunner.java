@@ -0,0 +1,94 @@
+package org.gitlab4j.simplecr.service;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import org.gitlab4j.simplecr.beans.ReplayReport;
+import org.gitlab4j.simplecr.service.GitLabWebHookService.HandleMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Replays a file of recorded webhook events from the command line and then exits, for example:
+ *
+ * <pre>
+ * java -jar simple-cr.jar --replay=events.ndjson [--replay-dry-run] [--replay-no-email] [--replay-max-in-flight=100]
+ * </pre>
+ *
+ * The runner only records the exit code, the application exits once it has started and the replay is done.
+ * The server exits with a status of 1 if any of the events could not be parsed or failed.
+ */
+@Component
+public class WebHookReplayRunner implements ApplicationRunner, ExitCodeGenerator {
+
+    public static final String REPLAY_OPTION = "replay";
+    public static final String DRY_RUN_OPTION = "replay-dry-run";
+    public static final String NO_EMAIL_OPTION = "replay-no-email";
+    public static final String MAX_IN_FLIGHT_OPTION = "replay-max-in-flight";
+
+    private static final int DEFAULT_MAX_IN_FLIGHT = 100;
+
+    @Autowired
+    private WebHookReplayService webHookReplayService;
+
+    private static final Logger logger = LoggerFactory.getLogger(WebHookReplayRunner.class);
+
+    private volatile boolean replayed;
+    private volatile int exitCode;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+
+        List<String> files = args.getOptionValues(REPLAY_OPTION);
+        if (files == null || files.isEmpty()) {
+            return;
+        }
+
+        HandleMode mode = (args.containsOption(DRY_RUN_OPTION) ? HandleMode.DRY_RUN :
+                args.containsOption(NO_EMAIL_OPTION) ? HandleMode.NO_EMAIL : HandleMode.NORMAL);
+        List<String> maxInFlights = args.getOptionValues(MAX_IN_FLIGHT_OPTION);
+        int maxInFlight = (maxInFlights != null && !maxInFlights.isEmpty() ? Integer.parseInt(maxInFlights.get(0)) : DEFAULT_MAX_IN_FLIGHT);
+
+        boolean failed = false;
+        for (String file : files) {
+
+            ReplayReport report;
+            try (InputStream in = new FileInputStream(file)) {
+                report = webHookReplayService.replay(in, mode, maxInFlight);
+            }
+
+            logger.info("Replay of {} complete, numEvents={}, durationMs={}, eventsPerSecond={}, outcomes={}",
+                    file, report.getNumEvents(), report.getDurationMs(),
+                    String.format("%.1f", report.getEventsPerSecond()), report.getOutcomeCounts());
+
+            for (ReplayReport.EventOutcome outcome : report.getOutcomes()) {
+                if (WebHookReplayService.OUTCOME_FAILED.equals(outcome.getOutcome()) ||
+                        WebHookReplayService.OUTCOME_UNPARSABLE.equals(outcome.getOutcome())) {
+                    logger.warn("Replay of {} line {}: {}, error={}", file, outcome.getLine(), outcome.getOutcome(), outcome.getError());
+                    failed = true;
+                }
+            }
+        }
+
+        exitCode = (failed ? 1 : 0);
+        replayed = true;
+    }
+
+    /**
+     * @return true if a replay was requested on the command line and has been run
+     */
+    public boolean isReplayed() {
+        return (replayed);
+    }
+
+    @Override
+    public int getExitCode() {
+        return (exitCode);
+    }
+}
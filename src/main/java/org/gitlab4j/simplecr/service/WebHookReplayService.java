@@ -0,0 +1,179 @@
+package org.gitlab4j.simplecr.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+
+import org.gitlab4j.simplecr.beans.HookEvent;
+import org.gitlab4j.simplecr.beans.MergeRequestHookEvent;
+import org.gitlab4j.simplecr.beans.PushHookEvent;
+import org.gitlab4j.simplecr.beans.ReplayReport;
+import org.gitlab4j.simplecr.beans.ReplayReport.EventOutcome;
+import org.gitlab4j.simplecr.model.ProjectConfig;
+import org.gitlab4j.simplecr.service.GitLabWebHookService.HandleMode;
+import org.gitlab4j.simplecr.utils.HookEventParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class replays a backlog of recorded webhook events, such as after an outage. The input is a
+ * newline-delimited JSON stream with one push or merge request webhook payload per line, as delivered
+ * by GitLab. The events are run through the same handlers as live events but bypass the webhook table
+ * and de-duplication, the handlers already skip pushes that have been notified.
+ *
+ * The input is streamed, each event is handed to the webhook queue lane for its project and branch as
+ * it is read. Events for the same branch are replayed in order and in turn with the live events for the
+ * branch, an event waits while live events for its lane are held in the webhook table, while the lanes
+ * replay in parallel. The number of events handed to the lanes and not yet
+ * replayed is bounded, so reading the input waits for the lanes to catch up.
+ *
+ * Each event is handled on its own, the handlers write a push and its email in a single transaction.
+ * An event that fails is reported as failed without affecting the other events.
+ */
+@Service
+public class WebHookReplayService {
+
+    public static final String OUTCOME_UNPARSABLE = "UNPARSABLE";
+    public static final String OUTCOME_FAILED = "FAILED";
+    public static final String OUTCOME_UPDATED = "UPDATED";
+    public static final String OUTCOME_IGNORED = "IGNORED";
+
+    @Autowired
+    private GitLabWebHookService gitLabWebHookService;
+
+    @Autowired
+    private ProjectConfigSnapshotService projectConfigSnapshot;
+
+    @Autowired
+    private WebHookQueueService webHookQueueService;
+
+    private static final Logger logger = LoggerFactory.getLogger(WebHookReplayService.class);
+
+    /**
+     * Replays the newline-delimited webhook payloads read from the provided InputStream.
+     *
+     * @param in the InputStream to read the payloads from
+     * @param mode whether pushes are recorded and emails sent, DRY_RUN only reports the outcomes
+     * @param maxInFlight the maximum number of events handed to the lanes and not yet replayed
+     * @return the report of the replay
+     * @throws IOException if an error occurs reading the InputStream
+     */
+    public ReplayReport replay(InputStream in, HandleMode mode, int maxInFlight) throws IOException {
+
+        long startTime = System.currentTimeMillis();
+        List<EventOutcome> outcomes = new ArrayList<>();
+        Map<Integer, String> secretTokens = new HashMap<>();
+        int numLines = 0;
+
+        logger.info("Replaying webhook events, mode={}, maxInFlight={}", mode, maxInFlight);
+
+        Semaphore inFlight = new Semaphore(Math.max(1, maxInFlight));
+        try {
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                numLines++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                EventOutcome outcome = new EventOutcome(numLines);
+                outcomes.add(outcome);
+
+                HookEvent event;
+                try {
+                    event = HookEventParser.parse(line);
+                } catch (IOException ioe) {
+                    outcome.setOutcome(OUTCOME_UNPARSABLE);
+                    outcome.setError(ioe.getMessage());
+                    continue;
+                }
+
+                outcome.setObjectKind(event.getObjectKind());
+                outcome.setProjectId(event.getProjectId());
+                outcome.setBranch(event.getBranch());
+
+                // Recorded payloads do not carry the X-Gitlab-Token header, the replay is trusted
+                event.setSecretToken(secretTokens.computeIfAbsent(event.getProjectId(), this::getSecretToken));
+
+                inFlight.acquire();
+                try {
+                    webHookQueueService.runOnLane(event.getProjectId(), event.getBranch(), () -> {
+                        try {
+                            replayEvent(event, mode, outcome);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RuntimeException re) {
+                    inFlight.release();
+                    throw re;
+                }
+            }
+
+            // Wait for the events still in the lanes
+            inFlight.acquire(Math.max(1, maxInFlight));
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Webhook replay was interrupted");
+        }
+
+        Map<String, Integer> outcomeCounts = new TreeMap<>();
+        for (EventOutcome outcome : outcomes) {
+            outcomeCounts.merge(outcome.getOutcome(), 1, Integer::sum);
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        ReplayReport report = new ReplayReport();
+        report.setMode(mode.name());
+        report.setNumLines(numLines);
+        report.setNumEvents(outcomes.size());
+        report.setDurationMs(duration);
+        report.setEventsPerSecond(duration > 0 ? outcomes.size() * 1000.0 / duration : outcomes.size());
+        report.setOutcomeCounts(outcomeCounts);
+        report.setOutcomes(outcomes);
+
+        logger.info("Replayed webhook events, numLines={}, numEvents={}, durationMs={}, outcomes={}",
+                numLines, outcomes.size(), duration, outcomeCounts);
+        return (report);
+    }
+
+    private void replayEvent(HookEvent event, HandleMode mode, EventOutcome outcome) {
+
+        try {
+            outcome.setOutcome(handle(event, mode));
+        } catch (RuntimeException re) {
+            logger.error("Problem replaying webhook event, line={}, error={}", outcome.getLine(), re.getMessage(), re);
+            outcome.setOutcome(OUTCOME_FAILED);
+            outcome.setError(re.getMessage());
+        }
+    }
+
+    private String handle(HookEvent event, HandleMode mode) {
+
+        if (event instanceof PushHookEvent) {
+            return (gitLabWebHookService.handlePushEvent((PushHookEvent) event, mode).name());
+        }
+
+        boolean updated = gitLabWebHookService.handleMergeRequestEvent((MergeRequestHookEvent) event, mode);
+        return (updated ? OUTCOME_UPDATED : OUTCOME_IGNORED);
+    }
+
+    private String getSecretToken(Integer projectId) {
+        ProjectConfig projectConfig = (projectId != null ? projectConfigSnapshot.getProjectConfig(projectId) : null);
+        return (projectConfig != null ? WebHookTokenRegistry.getSecretToken(projectConfig) : null);
+    }
+}
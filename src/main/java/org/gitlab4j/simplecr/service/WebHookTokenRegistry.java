@@ -0,0 +1,82 @@
+package org.gitlab4j.simplecr.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gitlab4j.simplecr.model.ProjectConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This class holds the set of webhook secret tokens that are currently active. The secret token for a
+ * project's webhook is always "simple-cr-" followed by the ID of its ProjectConfig, so a token can be
+ * checked against the enabled ProjectConfigs in the ProjectConfigSnapshotService without parsing the payload
+ * or accessing the database.
+ */
+@Service
+public class WebHookTokenRegistry implements MetricsSource {
+
+    public static final String SECRET_TOKEN_PREFIX = "simple-cr-";
+
+    @Autowired
+    private ProjectConfigSnapshotService projectConfigSnapshot;
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Gets the webhook secret token for the ProjectConfig.
+     *
+     * @param projectConfig the ProjectConfig to get the secret token for
+     * @return the webhook secret token for the ProjectConfig
+     */
+    public static String getSecretToken(ProjectConfig projectConfig) {
+        return (SECRET_TOKEN_PREFIX + projectConfig.getId());
+    }
+
+    /**
+     * Returns true if the secret token belongs to an enabled ProjectConfig.
+     *
+     * @param secretToken the value of the X-Gitlab-Token header
+     * @return true if the secret token belongs to an enabled ProjectConfig
+     */
+    public boolean isActive(String secretToken) {
+
+        Long configId = getConfigId(secretToken);
+        if (projectConfigSnapshot.isEnabled(configId)) {
+            acceptedCount.incrementAndGet();
+            return (true);
+        }
+
+        rejectedCount.incrementAndGet();
+        return (false);
+    }
+
+    private Long getConfigId(String secretToken) {
+
+        if (secretToken == null || !secretToken.startsWith(SECRET_TOKEN_PREFIX)) {
+            return (null);
+        }
+
+        try {
+            return (Long.valueOf(secretToken.substring(SECRET_TOKEN_PREFIX.length())));
+        } catch (NumberFormatException nfe) {
+            return (null);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return ("webhookTokens");
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("activeTokens", projectConfigSnapshot.getNumEnabled());
+        metrics.put("accepted", acceptedCount.get());
+        metrics.put("rejected", rejectedCount.get());
+        return (metrics);
+    }
+}
@@ -0,0 +1,158 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The branch names of a project, with the target branches of each of its merge specs precomputed.
+ * Resolving the branches a branch can be merged into is then a lookup rather than a scan of every
+ * branch with every target branch regex. The regexes are only run when a branch is added, and for all
+ * the branches when the index is rebuilt for changed merge specs.
+ *
+ * An index is created empty and seeded with the result of a branch scan. Branches can be added and
+ * removed while the scan is running, a branch removed during the scan is not added back by the seed.
+ * Reads do not lock, updates are serialized.
+ */
+public class BranchIndex {
+
+    private final MergeSpecMatcher matcher;
+    private final NavigableSet<String> branchNames = new ConcurrentSkipListSet<>();
+    private final List<NavigableSet<String>> targetsBySpec;
+
+    // The branches removed before the index was seeded, null once seeded
+    private Set<String> removedWhileSeeding = new HashSet<>();
+    private volatile long seededAt;
+
+    /**
+     * Creates a new, unseeded BranchIndex.
+     *
+     * @param matcher the matcher for the merge specs of the project
+     */
+    public BranchIndex(MergeSpecMatcher matcher) {
+
+        this.matcher = matcher;
+        List<NavigableSet<String>> targets = new ArrayList<>(matcher.getNumSpecs());
+        for (int i = 0; i < matcher.getNumSpecs(); i++) {
+            targets.add(new ConcurrentSkipListSet<>());
+        }
+
+        targetsBySpec = Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * Creates a seeded BranchIndex holding the branches of another index, with the target branches
+     * computed for a new matcher.
+     *
+     * @param matcher the matcher for the changed merge specs of the project
+     * @param index the seeded index to take the branch names from
+     */
+    public BranchIndex(MergeSpecMatcher matcher, BranchIndex index) {
+        this(matcher);
+        seed(index.branchNames);
+        seededAt = index.seededAt;
+    }
+
+    public MergeSpecMatcher getMatcher() {
+        return (matcher);
+    }
+
+    /**
+     * Adds the scanned branch names to the index and marks it as seeded.
+     *
+     * @param scannedBranchNames the names of all the branches of the project
+     */
+    public synchronized void seed(Collection<String> scannedBranchNames) {
+
+        for (String branchName : scannedBranchNames) {
+            if (removedWhileSeeding == null || !removedWhileSeeding.contains(branchName)) {
+                addBranch(branchName);
+            }
+        }
+
+        removedWhileSeeding = null;
+        seededAt = System.currentTimeMillis();
+    }
+
+    public boolean isSeeded() {
+        return (seededAt > 0);
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch that the branches were scanned, 0 if not yet seeded
+     */
+    public long getSeededAt() {
+        return (seededAt);
+    }
+
+    /**
+     * Adds a branch that has been created or pushed to.
+     *
+     * @param branchName the name of the branch
+     */
+    public synchronized void add(String branchName) {
+
+        if (removedWhileSeeding != null) {
+            removedWhileSeeding.remove(branchName);
+        }
+
+        addBranch(branchName);
+    }
+
+    /**
+     * Removes a branch that has been deleted.
+     *
+     * @param branchName the name of the branch
+     */
+    public synchronized void remove(String branchName) {
+
+        if (removedWhileSeeding != null) {
+            removedWhileSeeding.add(branchName);
+        }
+
+        if (branchNames.remove(branchName)) {
+            targetsBySpec.forEach(targets -> targets.remove(branchName));
+        }
+    }
+
+    private void addBranch(String branchName) {
+
+        if (!branchNames.add(branchName)) {
+            return;
+        }
+
+        for (int i = 0; i < targetsBySpec.size(); i++) {
+            if (matcher.matchesTarget(i, branchName)) {
+                targetsBySpec.get(i).add(branchName);
+            }
+        }
+    }
+
+    /**
+     * Gets the names of the branches that the branch can be merged into. For each merge spec the branch
+     * matches, the names of the target branches of the spec are added in name order.
+     *
+     * @param branchName the name of the branch to be merged
+     * @return the names of the branches that the branch can be merged into
+     */
+    public List<String> getTargetBranches(String branchName) {
+
+        List<String> targetBranches = new ArrayList<>();
+        for (int i = 0; i < targetsBySpec.size(); i++) {
+            if (matcher.matchesSpec(i, branchName)) {
+                targetBranches.addAll(targetsBySpec.get(i));
+            }
+        }
+
+        return (targetBranches);
+    }
+
+    public int getNumBranches() {
+        return (branchNames.size());
+    }
+}
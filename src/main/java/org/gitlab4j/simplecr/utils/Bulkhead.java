@@ -0,0 +1,75 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of threads that can be blocked on a dependency at the same time, so a slow
+ * dependency can only tie up its own share of the request and worker threads.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWait;
+    private final Semaphore permits;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Creates a new Bulkhead.
+     *
+     * @param name the name of the dependency, used in the metrics
+     * @param maxConcurrent the maximum number of concurrent calls to the dependency
+     * @param maxWait the maximum number of milliseconds to wait for a permit
+     */
+    public Bulkhead(String name, int maxConcurrent, long maxWait) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(this.maxConcurrent, true);
+    }
+
+    public String getName() {
+        return (name);
+    }
+
+    /**
+     * Acquires a permit, waiting up to the maximum wait. A caller that acquires a permit must
+     * call {@link #release()} when done.
+     *
+     * @return true if a permit was acquired
+     */
+    public boolean tryAcquire() {
+
+        try {
+            if (permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                return (true);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        rejectedCount.incrementAndGet();
+        return (false);
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * @return the configuration, in-flight gauge and rejected count of the bulkhead
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("maxConcurrent", maxConcurrent);
+        metrics.put("maxWaitMs", maxWait);
+        metrics.put("inFlight", maxConcurrent - permits.availablePermits());
+        metrics.put("rejected", rejectedCount.get());
+        return (metrics);
+    }
+}
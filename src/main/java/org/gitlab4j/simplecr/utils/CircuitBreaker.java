@@ -0,0 +1,151 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A circuit breaker for calls to a remote dependency. The breaker opens after a number of consecutive
+ * failed calls, and while it is open calls are rejected straight away instead of waiting on a dependency
+ * that is down. Once the open duration has passed the breaker is half-open and lets a limited number of
+ * probe calls through, it closes when they all succeed and opens again if any of them fails.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDuration;
+    private final int halfOpenProbes;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private long openedAt;
+
+    private final AtomicLong openedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Creates a new CircuitBreaker.
+     *
+     * @param name the name of the dependency, used in the metrics
+     * @param failureThreshold the number of consecutive failures that opens the breaker
+     * @param openDuration the number of milliseconds the breaker stays open before probing the dependency
+     * @param halfOpenProbes the number of probe calls that must succeed to close the breaker
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openDuration, int halfOpenProbes) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+    }
+
+    public String getName() {
+        return (name);
+    }
+
+    /**
+     * Gets permission to make a call. A caller that is given permission must report the outcome
+     * of the call with {@link #onSuccess()} or {@link #onFailure()}.
+     *
+     * @return true if the call may be made, false if it is to be rejected
+     */
+    public synchronized boolean tryAcquire() {
+
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDuration) {
+                rejectedCount.incrementAndGet();
+                return (false);
+            }
+
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probeSuccesses >= halfOpenProbes) {
+                rejectedCount.incrementAndGet();
+                return (false);
+            }
+
+            probesInFlight++;
+        }
+
+        return (true);
+    }
+
+    /**
+     * Returns true if calls are currently being rejected without probing the dependency.
+     *
+     * @return true if the breaker is open and the open duration has not passed
+     */
+    public synchronized boolean isOpen() {
+        return (state == State.OPEN && System.currentTimeMillis() - openedAt < openDuration);
+    }
+
+    public synchronized State getState() {
+        return (state);
+    }
+
+    /**
+     * Records a successful call.
+     */
+    public synchronized void onSuccess() {
+
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            if (++probeSuccesses >= halfOpenProbes) {
+                state = State.CLOSED;
+            }
+        }
+    }
+
+    /**
+     * Records a failed call.
+     */
+    public synchronized void onFailure() {
+
+        failureCount.incrementAndGet();
+        if (state == State.HALF_OPEN || (state == State.CLOSED && ++consecutiveFailures >= failureThreshold)) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        consecutiveFailures = 0;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        openedCount.incrementAndGet();
+    }
+
+    /**
+     * @return the state and configuration of the breaker, and the failed, rejected and opened counts
+     */
+    public Map<String, Object> getMetrics() {
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (this) {
+            metrics.put("state", (state == State.OPEN && !isOpen() ? State.HALF_OPEN : state).name());
+            metrics.put("consecutiveFailures", consecutiveFailures);
+            metrics.put("lastOpenedAt", openedAt > 0 ? new Date(openedAt) : null);
+        }
+
+        metrics.put("failureThreshold", failureThreshold);
+        metrics.put("openDurationMs", openDuration);
+        metrics.put("failures", failureCount.get());
+        metrics.put("rejected", rejectedCount.get());
+        metrics.put("opened", openedCount.get());
+        return (metrics);
+    }
+}
@@ -0,0 +1,308 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Date;
+
+import org.gitlab4j.api.utils.ISO8601;
+import org.gitlab4j.simplecr.beans.HookEvent;
+import org.gitlab4j.simplecr.beans.MergeRequestHookEvent;
+import org.gitlab4j.simplecr.beans.PushHookEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * This class parses push and merge request webhook payloads with a streaming JsonParser. Only the
+ * fields Simple-CR acts on are extracted, the rest of the payload (commits, changes, labels, repository
+ * info, etc.) is skipped over without being bound to objects.
+ */
+public class HookEventParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(HookEventParser.class);
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private HookEventParser() {
+    }
+
+    /**
+     * Parses a push or merge request webhook payload into a compact event.
+     *
+     * @param payload the JSON payload of the webhook request
+     * @return a PushHookEvent or MergeRequestHookEvent, depending on the object_kind of the payload
+     * @throws IOException if the payload is not valid JSON or is not for a push or merge request event
+     */
+    public static HookEvent parse(String payload) throws IOException {
+
+        Fields fields = new Fields();
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Webhook payload is not a JSON object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+                String name = parser.getCurrentName();
+                parser.nextToken();
+
+                switch (name) {
+                case "object_kind":
+                    fields.objectKind = parser.getValueAsString();
+                    break;
+                case "project_id":
+                    fields.projectId = getInteger(parser);
+                    break;
+                case "user_id":
+                    fields.userId = getInteger(parser);
+                    break;
+                case "user_name":
+                    fields.userName = parser.getValueAsString();
+                    break;
+                case "user_username":
+                    fields.userUsername = parser.getValueAsString();
+                    break;
+                case "user_email":
+                    fields.userEmail = parser.getValueAsString();
+                    break;
+                case "ref":
+                    fields.ref = parser.getValueAsString();
+                    break;
+                case "before":
+                    fields.before = parser.getValueAsString();
+                    break;
+                case "after":
+                    fields.after = parser.getValueAsString();
+                    break;
+                case "project":
+                    parseProject(parser, fields);
+                    break;
+                case "user":
+                    parseUser(parser, fields);
+                    break;
+                case "object_attributes":
+                    parseObjectAttributes(parser, fields);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+                }
+            }
+        }
+
+        if (HookEvent.PUSH.equals(fields.objectKind)) {
+            return (fields.toPushHookEvent());
+        } else if (HookEvent.MERGE_REQUEST.equals(fields.objectKind)) {
+            return (fields.toMergeRequestHookEvent());
+        }
+
+        throw new IOException("Unsupported webhook object_kind: " + fields.objectKind);
+    }
+
+    private static void parseProject(JsonParser parser, Fields fields) throws IOException {
+
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+            String name = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (name) {
+            case "id":
+                fields.projectObjectId = getInteger(parser);
+                break;
+            case "name":
+                fields.projectName = parser.getValueAsString();
+                break;
+            case "namespace":
+                fields.projectNamespace = parser.getValueAsString();
+                break;
+            case "path_with_namespace":
+                fields.projectPathWithNamespace = parser.getValueAsString();
+                break;
+            case "web_url":
+                fields.projectWebUrl = parser.getValueAsString();
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+    }
+
+    private static void parseUser(JsonParser parser, Fields fields) throws IOException {
+
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+            String name = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (name) {
+            case "id":
+                fields.userId = getInteger(parser);
+                break;
+            case "name":
+                fields.userName = parser.getValueAsString();
+                break;
+            case "username":
+                fields.userUsername = parser.getValueAsString();
+                break;
+            case "email":
+                fields.userEmail = parser.getValueAsString();
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+    }
+
+    private static void parseObjectAttributes(JsonParser parser, Fields fields) throws IOException {
+
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+            String name = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (name) {
+            case "id":
+                fields.mergeRequestId = getInteger(parser);
+                break;
+            case "iid":
+                fields.iid = getInteger(parser);
+                break;
+            case "target_project_id":
+                fields.targetProjectId = getInteger(parser);
+                break;
+            case "source_branch":
+                fields.sourceBranch = parser.getValueAsString();
+                break;
+            case "author_id":
+                fields.authorId = getInteger(parser);
+                break;
+            case "state":
+                fields.state = parser.getValueAsString();
+                break;
+            case "merge_status":
+                fields.mergeStatus = parser.getValueAsString();
+                break;
+            case "updated_at":
+                fields.updatedAt = getDate(parser);
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+    }
+
+    private static Integer getInteger(JsonParser parser) throws IOException {
+        return (parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsInt());
+    }
+
+    private static Date getDate(JsonParser parser) throws IOException {
+
+        String value = parser.getValueAsString();
+        if (value == null) {
+            return (null);
+        }
+
+        try {
+            return (ISO8601.toDate(value));
+        } catch (ParseException pe) {
+            logger.warn("Ignoring malformed {} in webhook payload: {}", parser.getCurrentName(), value);
+            return (null);
+        }
+    }
+
+    /**
+     * Holds the extracted fields until the object_kind is known, it need not be the first field.
+     */
+    private static class Fields {
+
+        private String objectKind;
+        private Integer projectId;
+        private Integer userId;
+        private String userName;
+        private String userUsername;
+        private String userEmail;
+        private String ref;
+        private String before;
+        private String after;
+
+        private Integer projectObjectId;
+        private String projectName;
+        private String projectNamespace;
+        private String projectPathWithNamespace;
+        private String projectWebUrl;
+
+        private Integer mergeRequestId;
+        private Integer iid;
+        private Integer targetProjectId;
+        private String sourceBranch;
+        private Integer authorId;
+        private String state;
+        private String mergeStatus;
+        private Date updatedAt;
+
+        PushHookEvent toPushHookEvent() {
+
+            PushHookEvent pushHookEvent = new PushHookEvent();
+            pushHookEvent.setProjectId(projectId != null ? projectId : projectObjectId);
+            pushHookEvent.setUserId(userId);
+            pushHookEvent.setUserName(userName);
+            pushHookEvent.setUserUsername(userUsername);
+            pushHookEvent.setUserEmail(userEmail);
+            pushHookEvent.setRef(ref);
+            pushHookEvent.setBefore(before);
+            pushHookEvent.setAfter(after);
+            setProject(pushHookEvent);
+            return (pushHookEvent);
+        }
+
+        MergeRequestHookEvent toMergeRequestHookEvent() {
+
+            MergeRequestHookEvent mergeRequestHookEvent = new MergeRequestHookEvent();
+            mergeRequestHookEvent.setMergeRequestId(mergeRequestId);
+            mergeRequestHookEvent.setIid(iid);
+            mergeRequestHookEvent.setTargetProjectId(targetProjectId);
+            mergeRequestHookEvent.setSourceBranch(sourceBranch);
+            mergeRequestHookEvent.setAuthorId(authorId);
+            mergeRequestHookEvent.setState(state);
+            mergeRequestHookEvent.setMergeStatus(mergeStatus);
+            mergeRequestHookEvent.setUpdatedAt(updatedAt);
+            mergeRequestHookEvent.setUserId(userId);
+            mergeRequestHookEvent.setUserName(userName);
+            mergeRequestHookEvent.setUserUsername(userUsername);
+            mergeRequestHookEvent.setUserEmail(userEmail);
+            setProject(mergeRequestHookEvent);
+            return (mergeRequestHookEvent);
+        }
+
+        private void setProject(HookEvent hookEvent) {
+            hookEvent.setProjectName(projectName);
+            hookEvent.setProjectNamespace(projectNamespace);
+            hookEvent.setProjectPathWithNamespace(projectPathWithNamespace);
+            hookEvent.setProjectWebUrl(projectWebUrl);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records latencies into a fixed set of log scaled buckets, four per power of two from 1 ms to over
+ * 15 minutes, so percentiles can be reported without keeping the samples. A reported percentile is
+ * the upper bound of its bucket, within 19% of the true value.
+ */
+public class LatencyRecorder {
+
+    private static final int BUCKETS_PER_DOUBLING = 4;
+    private static final int NUM_BUCKETS = 20 * BUCKETS_PER_DOUBLING + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param millis the latency in milliseconds
+     */
+    public void record(long millis) {
+
+        millis = Math.max(0, millis);
+        buckets.incrementAndGet(getBucket(millis));
+        count.incrementAndGet();
+        totalTime.addAndGet(millis);
+        maxTime.accumulateAndGet(millis, Math::max);
+    }
+
+    /**
+     * Gets a percentile of the recorded latencies.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the upper bound in milliseconds of the bucket holding the percentile, 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+
+        long numRecorded = 0;
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            numRecorded += counts[i];
+        }
+
+        if (numRecorded == 0) {
+            return (0);
+        }
+
+        long rank = (long) Math.ceil(numRecorded * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return (Math.min(getUpperBound(i), maxTime.get()));
+            }
+        }
+
+        return (maxTime.get());
+    }
+
+    private static int getBucket(long millis) {
+
+        if (millis <= 1) {
+            return (0);
+        }
+
+        int bucket = (int) Math.ceil(Math.log(millis) / Math.log(2) * BUCKETS_PER_DOUBLING);
+        return (Math.min(bucket, NUM_BUCKETS - 1));
+    }
+
+    private static long getUpperBound(int bucket) {
+        return (bucket == NUM_BUCKETS - 1 ? Long.MAX_VALUE : (long) Math.floor(Math.pow(2, (double) bucket / BUCKETS_PER_DOUBLING)));
+    }
+
+    /**
+     * @return the count, average, p50, p90, p99 and maximum of the recorded latencies
+     */
+    public Map<String, Object> getMetrics() {
+
+        long numRecorded = count.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("count", numRecorded);
+        metrics.put("avgMs", numRecorded > 0 ? totalTime.get() / numRecorded : 0);
+        metrics.put("p50Ms", getPercentile(50));
+        metrics.put("p90Ms", getPercentile(90));
+        metrics.put("p99Ms", getPercentile(99));
+        metrics.put("maxMs", maxTime.get());
+        return (metrics);
+    }
+}
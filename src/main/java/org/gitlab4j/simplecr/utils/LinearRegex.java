@@ -0,0 +1,780 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A regular expression matcher that runs in time linear to the length of the input. The regex is
+ * compiled to a Thompson NFA and matched by simulating all the NFA states in lock step (a Pike VM), so
+ * there is no backtracking and no input can cause catastrophic backtracking.
+ *
+ * Only a subset of the java.util.regex syntax is supported: literals, escaped metacharacters, ".",
+ * character classes with ranges and negation, the \d \w \s \D \W \S classes, the ^ and $ anchors,
+ * capturing and non-capturing groups, alternation, and the greedy and reluctant * + ? {n} {n,} {n,m}
+ * quantifiers. Anything else (backreferences, lookaround, possessive quantifiers, inline flags, etc.)
+ * causes compile() to throw an UnsupportedRegexException. So do the constructs whose java.util.regex
+ * meaning the NFA does not reproduce: stacked quantifiers such as a*{2}, quantified groups containing an
+ * anchor such as (^|b){2}, and a $ that can be followed by something that consumes a line terminator
+ * (java.util.regex also lets $ match before a final line terminator). Matching is always against the
+ * whole input, like String.matches(), and steps through the input a code point at a time, like
+ * java.util.regex.
+ */
+public final class LinearRegex {
+
+    /** Thrown when a regex uses syntax outside the supported subset, or is too large. */
+    public static class UnsupportedRegexException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedRegexException(String message) {
+            super(message);
+        }
+    }
+
+    // The maximum number of instructions in a compiled program, and the maximum count in a {n,m} quantifier
+    public static final int MAX_PROGRAM_SIZE = 10000;
+    public static final int MAX_REPEAT = 1000;
+
+    private static final int CHAR = 0;
+    private static final int ANY = 1;
+    private static final int CLASS = 2;
+    private static final int SPLIT = 3;
+    private static final int JMP = 4;
+    private static final int BEGIN = 5;
+    private static final int END = 6;
+    private static final int MATCH = 7;
+
+    private static final int[] DIGIT_RANGES = { '0', '9' };
+    private static final int[] WORD_RANGES = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+    private static final int[] SPACE_RANGES = { '\t', '\r', ' ', ' ' };
+    private static final int[] LINE_TERMINATORS = { '\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029' };
+
+    private final String regex;
+    private final int[] ops;
+    private final int[] args1;
+    private final int[] args2;
+    private final int[][] classes;
+
+    private LinearRegex(String regex, Program program) {
+        this.regex = regex;
+        int size = program.ops.size();
+        ops = new int[size];
+        args1 = new int[size];
+        args2 = new int[size];
+        for (int i = 0; i < size; i++) {
+            ops[i] = program.ops.get(i);
+            args1[i] = program.args1.get(i);
+            args2[i] = program.args2.get(i);
+        }
+
+        classes = program.classes.toArray(new int[program.classes.size()][]);
+    }
+
+    /**
+     * Compiles the regex to a linear-time matcher.
+     *
+     * @param regex the regex to compile
+     * @return the compiled LinearRegex
+     * @throws UnsupportedRegexException if the regex uses unsupported syntax or is too large
+     */
+    public static LinearRegex compile(String regex) throws UnsupportedRegexException {
+        Node node = new Parser(regex).parse();
+        Program program = new Program();
+        program.emit(node);
+        program.add(MATCH, 0, 0);
+        LinearRegex linearRegex = new LinearRegex(regex, program);
+        linearRegex.checkEndAnchors();
+        return (linearRegex);
+    }
+
+    public String getRegex() {
+        return (regex);
+    }
+
+    public int getProgramSize() {
+        return (ops.length);
+    }
+
+    /**
+     * Returns true if the regex matches the whole input.
+     *
+     * @param input the input to match
+     * @return true if the regex matches the whole input
+     */
+    public boolean matches(CharSequence input) {
+        return (matches(input, Long.MAX_VALUE) == 1);
+    }
+
+    /**
+     * Returns 1 if the regex matches the whole input, 0 if it does not, and -1 if more than maxSteps
+     * NFA states were visited before the outcome was known.
+     *
+     * @param input the input to match
+     * @param maxSteps the maximum number of NFA states to visit
+     * @return 1 if the regex matches the whole input, 0 if it does not, or -1 if the step budget was exceeded
+     */
+    public int matches(CharSequence input, long maxSteps) {
+
+        int size = ops.length;
+        int length = input.length();
+        int[] current = new int[size];
+        int[] next = new int[size];
+        int[] marks = new int[size];
+        int[] stack = new int[size];
+        long[] steps = new long[1];
+
+        int mark = 1;
+        int numCurrent = addThread(current, 0, 0, 0, length, marks, mark, stack, steps);
+        for (int pos = 0; pos < length && numCurrent > 0; ) {
+
+            if (steps[0] > maxSteps) {
+                return (-1);
+            }
+
+            int c = Character.codePointAt(input, pos);
+            pos += Character.charCount(c);
+            mark++;
+            int numNext = 0;
+            for (int i = 0; i < numCurrent; i++) {
+                int pc = current[i];
+                if (consumes(pc, c)) {
+                    numNext = addThread(next, numNext, pc + 1, pos, length, marks, mark, stack, steps);
+                }
+            }
+
+            int[] swap = current;
+            current = next;
+            next = swap;
+            numCurrent = numNext;
+        }
+
+        if (steps[0] > maxSteps) {
+            return (-1);
+        }
+
+        for (int i = 0; i < numCurrent; i++) {
+            if (ops[current[i]] == MATCH) {
+                return (1);
+            }
+        }
+
+        return (0);
+    }
+
+    /**
+     * Adds the state at pc, and all the states reachable from it without consuming input, to the list.
+     */
+    private int addThread(int[] list, int count, int startPc, int pos, int length, int[] marks, int mark, int[] stack, long[] steps) {
+
+        int top = 0;
+        stack[top++] = startPc;
+        while (top > 0) {
+
+            int pc = stack[--top];
+            if (marks[pc] == mark) {
+                continue;
+            }
+
+            marks[pc] = mark;
+            steps[0]++;
+            switch (ops[pc]) {
+            case JMP:
+                stack[top++] = args1[pc];
+                break;
+            case SPLIT:
+                stack[top++] = args2[pc];
+                stack[top++] = args1[pc];
+                break;
+            case BEGIN:
+                if (pos == 0) {
+                    stack[top++] = pc + 1;
+                }
+                break;
+            case END:
+                if (pos == length) {
+                    stack[top++] = pc + 1;
+                }
+                break;
+            default:
+                list[count++] = pc;
+                break;
+            }
+        }
+
+        return (count);
+    }
+
+    /**
+     * Throws if a line terminator can be consumed right after a $ anchor. java.util.regex lets $ match
+     * before a line terminator at the end of the input, and such a regex can then consume it, while the
+     * END instruction only matches at the very end of the input.
+     */
+    private void checkEndAnchors() throws UnsupportedRegexException {
+
+        int size = ops.length;
+        int[] marks = new int[size];
+        int[] stack = new int[size];
+        for (int end = 0; end < size; end++) {
+
+            if (ops[end] != END) {
+                continue;
+            }
+
+            int top = 0;
+            stack[top++] = end + 1;
+            while (top > 0) {
+
+                int pc = stack[--top];
+                if (marks[pc] == end + 1) {
+                    continue;
+                }
+
+                marks[pc] = end + 1;
+                switch (ops[pc]) {
+                case JMP:
+                    stack[top++] = args1[pc];
+                    break;
+                case SPLIT:
+                    stack[top++] = args2[pc];
+                    stack[top++] = args1[pc];
+                    break;
+                case BEGIN:
+                case END:
+                    stack[top++] = pc + 1;
+                    break;
+                case MATCH:
+                    break;
+                default:
+                    for (int i = 0; i < LINE_TERMINATORS.length; i++) {
+                        for (int c = LINE_TERMINATORS[i]; c <= LINE_TERMINATORS[i + 1]; c++) {
+                            if (consumes(pc, c)) {
+                                throw new UnsupportedRegexException("$ followed by a line terminator");
+                            }
+                        }
+
+                        i++;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean consumes(int pc, int c) {
+
+        switch (ops[pc]) {
+        case CHAR:
+            return (args1[pc] == c);
+        case ANY:
+            return (!inRanges(LINE_TERMINATORS, c));
+        case CLASS:
+            return (inRanges(classes[args1[pc]], c) != (args2[pc] != 0));
+        default:
+            return (false);
+        }
+    }
+
+    private static boolean inRanges(int[] ranges, int c) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (c >= ranges[i] && c <= ranges[i + 1]) {
+                return (true);
+            }
+        }
+
+        return (false);
+    }
+
+    /**
+     * The parsed regex.
+     */
+    private static class Node {
+
+        private static final int EMPTY = 0;
+        private static final int LITERAL = 1;
+        private static final int DOT = 2;
+        private static final int RANGES = 3;
+        private static final int ANCHOR_BEGIN = 4;
+        private static final int ANCHOR_END = 5;
+        private static final int CONCAT = 6;
+        private static final int ALTERNATE = 7;
+        private static final int REPEAT = 8;
+
+        private final int type;
+        private int literal;
+        private int[] ranges;
+        private boolean negated;
+        private List<Node> children;
+        private int min;
+        private int max;
+
+        Node(int type) {
+            this.type = type;
+        }
+
+        static Node literal(int c) {
+            Node node = new Node(LITERAL);
+            node.literal = c;
+            return (node);
+        }
+
+        static Node ranges(int[] ranges, boolean negated) {
+            Node node = new Node(RANGES);
+            node.ranges = ranges;
+            node.negated = negated;
+            return (node);
+        }
+
+        static Node list(int type, List<Node> children) {
+            if (children.size() == 1) {
+                return (children.get(0));
+            }
+
+            Node node = new Node(children.isEmpty() ? EMPTY : type);
+            node.children = children;
+            return (node);
+        }
+
+        static Node repeat(Node child, int min, int max) {
+            Node node = new Node(REPEAT);
+            node.children = new ArrayList<>(1);
+            node.children.add(child);
+            node.min = min;
+            node.max = max;
+            return (node);
+        }
+    }
+
+    /**
+     * A recursive descent parser for the supported subset of the regex syntax.
+     */
+    private static class Parser {
+
+        private final String regex;
+        private int pos;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Node parse() throws UnsupportedRegexException {
+
+            Node node = parseAlternation();
+            if (pos < regex.length()) {
+                throw unsupported("unbalanced ')'");
+            }
+
+            return (node);
+        }
+
+        private Node parseAlternation() throws UnsupportedRegexException {
+
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(parseConcatenation());
+            while (more() && peek() == '|') {
+                pos++;
+                alternatives.add(parseConcatenation());
+            }
+
+            return (Node.list(Node.ALTERNATE, alternatives));
+        }
+
+        private Node parseConcatenation() throws UnsupportedRegexException {
+
+            List<Node> items = new ArrayList<>();
+            while (more() && peek() != '|' && peek() != ')') {
+                items.add(parseRepetition());
+            }
+
+            return (Node.list(Node.CONCAT, items));
+        }
+
+        private Node parseRepetition() throws UnsupportedRegexException {
+
+            Node node = parseAtom();
+            boolean quantified = false;
+            while (more()) {
+
+                int min;
+                int max;
+                char c = peek();
+                if (c == '*') {
+                    min = 0;
+                    max = -1;
+                    pos++;
+                } else if (c == '+') {
+                    min = 1;
+                    max = -1;
+                    pos++;
+                } else if (c == '?') {
+                    min = 0;
+                    max = 1;
+                    pos++;
+                } else if (c == '{') {
+                    pos++;
+                    min = parseNumber();
+                    max = min;
+                    if (more() && peek() == ',') {
+                        pos++;
+                        max = (more() && peek() == '}' ? -1 : parseNumber());
+                    }
+
+                    expect('}');
+                    if (max != -1 && max < min) {
+                        throw unsupported("invalid repetition range");
+                    }
+                } else {
+                    break;
+                }
+
+                // Reluctant quantifiers match the same strings as greedy ones when matching the whole input
+                if (more() && peek() == '?') {
+                    pos++;
+                } else if (more() && peek() == '+') {
+                    throw unsupported("possessive quantifier");
+                }
+
+                // java.util.regex ends a group loop at an iteration that matched nothing, as an anchor can
+                if (containsAnchor(node)) {
+                    throw unsupported("quantified anchor");
+                }
+
+                // java.util.regex does not apply a second quantifier to the repetition, a*{2} is not (a*){2}
+                if (quantified) {
+                    throw unsupported("stacked quantifier");
+                }
+
+                node = Node.repeat(node, min, max);
+                quantified = true;
+            }
+
+            return (node);
+        }
+
+        private static boolean containsAnchor(Node node) {
+
+            if (node.type == Node.ANCHOR_BEGIN || node.type == Node.ANCHOR_END) {
+                return (true);
+            }
+
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    if (containsAnchor(child)) {
+                        return (true);
+                    }
+                }
+            }
+
+            return (false);
+        }
+
+        private Node parseAtom() throws UnsupportedRegexException {
+
+            int c = nextCodePoint();
+            switch (c) {
+            case '(':
+                if (more() && peek() == '?') {
+                    if (pos + 1 < regex.length() && regex.charAt(pos + 1) == ':') {
+                        pos += 2;
+                    } else {
+                        throw unsupported("special group");
+                    }
+                }
+
+                Node group = parseAlternation();
+                expect(')');
+                return (group);
+            case '[':
+                return (parseClass());
+            case '.':
+                return (new Node(Node.DOT));
+            case '^':
+                return (new Node(Node.ANCHOR_BEGIN));
+            case '$':
+                return (new Node(Node.ANCHOR_END));
+            case '\\':
+                return (parseEscape(false));
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw unsupported("dangling quantifier");
+            default:
+                return (Node.literal(c));
+            }
+        }
+
+        private Node parseEscape(boolean inClass) throws UnsupportedRegexException {
+
+            if (!more()) {
+                throw unsupported("trailing backslash");
+            }
+
+            int c = nextCodePoint();
+            switch (c) {
+            case 'd':
+                return (Node.ranges(DIGIT_RANGES, false));
+            case 'w':
+                return (Node.ranges(WORD_RANGES, false));
+            case 's':
+                return (Node.ranges(SPACE_RANGES, false));
+            case 'D':
+            case 'W':
+            case 'S':
+                if (inClass) {
+                    throw unsupported("negated class escape in a character class");
+                }
+
+                return (Node.ranges(c == 'D' ? DIGIT_RANGES : c == 'W' ? WORD_RANGES : SPACE_RANGES, true));
+            case 't':
+                return (Node.literal('\t'));
+            case 'n':
+                return (Node.literal('\n'));
+            case 'r':
+                return (Node.literal('\r'));
+            case 'f':
+                return (Node.literal('\f'));
+            case 'e':
+                return (Node.literal('\u001B'));
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    throw unsupported("escape \\" + new String(Character.toChars(c)));
+                }
+
+                return (Node.literal(c));
+            }
+        }
+
+        private Node parseClass() throws UnsupportedRegexException {
+
+            boolean negated = false;
+            if (more() && peek() == '^') {
+                negated = true;
+                pos++;
+            }
+
+            if (more() && peek() == ']') {
+                throw unsupported("empty character class");
+            }
+
+            List<Integer> ranges = new ArrayList<>();
+            while (more() && peek() != ']') {
+
+                int c = nextCodePoint();
+                if (c == '[' || (c == '&' && more() && peek() == '&')) {
+                    throw unsupported("nested character class");
+                }
+
+                int low;
+                if (c == '\\') {
+                    Node escape = parseEscape(true);
+                    if (escape.type == Node.RANGES) {
+                        for (int range : escape.ranges) {
+                            ranges.add(range);
+                        }
+
+                        continue;
+                    }
+
+                    low = escape.literal;
+                } else {
+                    low = c;
+                }
+
+                int high = low;
+                if (pos + 1 < regex.length() && peek() == '-' && regex.charAt(pos + 1) != ']') {
+                    pos++;
+                    int h = nextCodePoint();
+                    if (h == '\\') {
+                        Node escape = parseEscape(true);
+                        if (escape.type != Node.LITERAL) {
+                            throw unsupported("class escape as a range bound");
+                        }
+
+                        high = escape.literal;
+                    } else if (h == '[') {
+                        throw unsupported("nested character class");
+                    } else {
+                        high = h;
+                    }
+
+                    if (high < low) {
+                        throw unsupported("invalid character range");
+                    }
+                }
+
+                ranges.add(low);
+                ranges.add(high);
+            }
+
+            expect(']');
+            int[] rangeArray = new int[ranges.size()];
+            for (int i = 0; i < rangeArray.length; i++) {
+                rangeArray[i] = ranges.get(i);
+            }
+
+            return (Node.ranges(rangeArray, negated));
+        }
+
+        private int parseNumber() throws UnsupportedRegexException {
+
+            int start = pos;
+            while (more() && Character.isDigit(peek())) {
+                pos++;
+            }
+
+            if (start == pos || pos - start > 4) {
+                throw unsupported("invalid repetition count");
+            }
+
+            int number = Integer.parseInt(regex.substring(start, pos));
+            if (number > MAX_REPEAT) {
+                throw unsupported("repetition count over " + MAX_REPEAT);
+            }
+
+            return (number);
+        }
+
+        private void expect(char c) throws UnsupportedRegexException {
+            if (!more() || peek() != c) {
+                throw unsupported("expected '" + c + "'");
+            }
+
+            pos++;
+        }
+
+        private int nextCodePoint() {
+            int c = regex.codePointAt(pos);
+            pos += Character.charCount(c);
+            return (c);
+        }
+
+        private boolean more() {
+            return (pos < regex.length());
+        }
+
+        private char peek() {
+            return (regex.charAt(pos));
+        }
+
+        private UnsupportedRegexException unsupported(String reason) {
+            return (new UnsupportedRegexException(reason + " at index " + pos));
+        }
+    }
+
+    /**
+     * Emits the NFA program for the parsed regex.
+     */
+    private static class Program {
+
+        private final List<Integer> ops = new ArrayList<>();
+        private final List<Integer> args1 = new ArrayList<>();
+        private final List<Integer> args2 = new ArrayList<>();
+        private final List<int[]> classes = new ArrayList<>();
+
+        int add(int op, int arg1, int arg2) throws UnsupportedRegexException {
+
+            if (ops.size() >= MAX_PROGRAM_SIZE) {
+                throw new UnsupportedRegexException("compiled regex is larger than " + MAX_PROGRAM_SIZE + " instructions");
+            }
+
+            ops.add(op);
+            args1.add(arg1);
+            args2.add(arg2);
+            return (ops.size() - 1);
+        }
+
+        void set(int pc, int arg1, int arg2) {
+            args1.set(pc, arg1);
+            args2.set(pc, arg2);
+        }
+
+        int next() {
+            return (ops.size());
+        }
+
+        void emit(Node node) throws UnsupportedRegexException {
+
+            switch (node.type) {
+            case Node.EMPTY:
+                break;
+            case Node.LITERAL:
+                add(CHAR, node.literal, 0);
+                break;
+            case Node.DOT:
+                add(ANY, 0, 0);
+                break;
+            case Node.RANGES:
+                classes.add(Arrays.copyOf(node.ranges, node.ranges.length));
+                add(CLASS, classes.size() - 1, node.negated ? 1 : 0);
+                break;
+            case Node.ANCHOR_BEGIN:
+                add(BEGIN, 0, 0);
+                break;
+            case Node.ANCHOR_END:
+                add(END, 0, 0);
+                break;
+            case Node.CONCAT:
+                for (Node child : node.children) {
+                    emit(child);
+                }
+                break;
+            case Node.ALTERNATE:
+                emitAlternation(node.children);
+                break;
+            case Node.REPEAT:
+                emitRepeat(node.children.get(0), node.min, node.max);
+                break;
+            default:
+                throw new UnsupportedRegexException("unknown node type " + node.type);
+            }
+        }
+
+        private void emitAlternation(List<Node> alternatives) throws UnsupportedRegexException {
+
+            List<Integer> jumps = new ArrayList<>();
+            for (int i = 0; i < alternatives.size(); i++) {
+
+                if (i < alternatives.size() - 1) {
+                    int split = add(SPLIT, 0, 0);
+                    emit(alternatives.get(i));
+                    jumps.add(add(JMP, 0, 0));
+                    set(split, split + 1, next());
+                } else {
+                    emit(alternatives.get(i));
+                }
+            }
+
+            int end = next();
+            for (int jump : jumps) {
+                set(jump, end, 0);
+            }
+        }
+
+        private void emitRepeat(Node child, int min, int max) throws UnsupportedRegexException {
+
+            for (int i = 0; i < min; i++) {
+                emit(child);
+            }
+
+            if (max == -1) {
+                int split = add(SPLIT, 0, 0);
+                emit(child);
+                add(JMP, split, 0);
+                set(split, split + 1, next());
+                return;
+            }
+
+            List<Integer> splits = new ArrayList<>();
+            for (int i = min; i < max; i++) {
+                splits.add(add(SPLIT, 0, 0));
+                emit(child);
+            }
+
+            int end = next();
+            for (int split : splits) {
+                set(split, split + 1, end);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.gitlab4j.simplecr.model.MergeSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An immutable, precompiled matcher for the merge specs of a project. The branch regexes of all the
+ * specs are also combined into a single alternation, so checking whether a pushed branch triggers a
+ * code review is a single match no matter how many specs the project has. Specs with an invalid regex
+ * are logged and never match. All the regexes are SafeRegex instances, so a match runs in linear time or
+ * is cut off at the step budget.
+ */
+public class MergeSpecMatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MergeSpecMatcher.class);
+
+    // Group numbers and names are not preserved by combining, these specs are matched one at a time
+    private static final Pattern GROUP_REFERENCE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]");
+
+    /** A matcher for a project with no merge specs. */
+    public static final MergeSpecMatcher EMPTY = new MergeSpecMatcher(Collections.emptyList(), 0, new AtomicLong());
+
+    private final List<CompiledSpec> specs;
+    private final SafeRegex combinedBranchRegex;
+
+    /**
+     * Creates a matcher for the provided merge specs.
+     *
+     * @param mergeSpecs the merge specs of the project
+     * @param stepBudget the maximum number of steps a single regex match may take, 0 for no limit
+     * @param budgetExceededCount incremented each time a regex match exceeds the step budget
+     */
+    public MergeSpecMatcher(Collection<MergeSpec> mergeSpecs, long stepBudget, AtomicLong budgetExceededCount) {
+
+        List<CompiledSpec> compiledSpecs = new ArrayList<>();
+        boolean combinable = true;
+        StringBuilder combinedRegex = new StringBuilder();
+        for (MergeSpec mergeSpec : mergeSpecs) {
+
+            CompiledSpec compiledSpec = compile(mergeSpec, stepBudget, budgetExceededCount);
+            if (compiledSpec == null) {
+                continue;
+            }
+
+            compiledSpecs.add(compiledSpec);
+            combinable &= !GROUP_REFERENCE.matcher(mergeSpec.getBranchRegex()).find();
+            if (combinedRegex.length() > 0) {
+                combinedRegex.append('|');
+            }
+
+            combinedRegex.append("(?:").append(mergeSpec.getBranchRegex()).append(')');
+        }
+
+        specs = Collections.unmodifiableList(compiledSpecs);
+        combinedBranchRegex = (combinable && !compiledSpecs.isEmpty() ?
+                compileCombined(combinedRegex.toString(), stepBudget, budgetExceededCount) : null);
+    }
+
+    /**
+     * Returns true if the branch name matches the branch regex of any of the merge specs.
+     *
+     * @param branchName the name of the branch
+     * @return true if the branch name matches the branch regex of any of the merge specs
+     */
+    public boolean matches(String branchName) {
+
+        if (combinedBranchRegex != null) {
+            return (combinedBranchRegex.matches(branchName));
+        }
+
+        for (CompiledSpec spec : specs) {
+            if (spec.branchRegex.matches(branchName)) {
+                return (true);
+            }
+        }
+
+        return (false);
+    }
+
+    /**
+     * Gets the names of the branches that the branch can be merged into. For each merge spec the branch
+     * matches, the branch names that match the target branch regex of the spec are added in order.
+     *
+     * @param branchName the name of the branch to be merged
+     * @param branchNames the names of all the branches of the project
+     * @return the names of the branches that the branch can be merged into
+     */
+    public List<String> getTargetBranches(String branchName, List<String> branchNames) {
+
+        List<String> targetBranches = new ArrayList<>();
+        for (CompiledSpec spec : specs) {
+            if (spec.branchRegex.matches(branchName)) {
+                for (String name : branchNames) {
+                    if (spec.targetBranchRegex.matches(name)) {
+                        targetBranches.add(name);
+                    }
+                }
+            }
+        }
+
+        return (targetBranches);
+    }
+
+    /**
+     * Returns true if the branch name matches the branch regex of the merge spec at the index.
+     *
+     * @param specIndex the index of the merge spec, from 0 to getNumSpecs() - 1
+     * @param branchName the name of the branch
+     * @return true if the branch name matches the branch regex of the merge spec
+     */
+    public boolean matchesSpec(int specIndex, String branchName) {
+        return (specs.get(specIndex).branchRegex.matches(branchName));
+    }
+
+    /**
+     * Returns true if the branch name matches the target branch regex of the merge spec at the index.
+     *
+     * @param specIndex the index of the merge spec, from 0 to getNumSpecs() - 1
+     * @param branchName the name of the branch
+     * @return true if the branch name matches the target branch regex of the merge spec
+     */
+    public boolean matchesTarget(int specIndex, String branchName) {
+        return (specs.get(specIndex).targetBranchRegex.matches(branchName));
+    }
+
+    public int getNumSpecs() {
+        return (specs.size());
+    }
+
+    /**
+     * @return true if the branch regexes are matched as a single combined pattern
+     */
+    public boolean isCombined() {
+        return (combinedBranchRegex != null);
+    }
+
+    /**
+     * @return true if every branch and target branch regex is matched in linear time
+     */
+    public boolean isLinear() {
+
+        if (combinedBranchRegex != null && !combinedBranchRegex.isLinear()) {
+            return (false);
+        }
+
+        for (CompiledSpec spec : specs) {
+            if (!spec.branchRegex.isLinear() || !spec.targetBranchRegex.isLinear()) {
+                return (false);
+            }
+        }
+
+        return (true);
+    }
+
+    private static CompiledSpec compile(MergeSpec mergeSpec, long stepBudget, AtomicLong budgetExceededCount) {
+        try {
+            return (new CompiledSpec(SafeRegex.compile(mergeSpec.getBranchRegex(), stepBudget, budgetExceededCount),
+                    SafeRegex.compile(mergeSpec.getTargetBranchRegex(), stepBudget, budgetExceededCount)));
+        } catch (PatternSyntaxException pse) {
+            logger.warn("Ignoring merge spec with an invalid regex, projectId={}, branchRegex={}, targetBranchRegex={}, error={}",
+                    mergeSpec.getProjectId(), mergeSpec.getBranchRegex(), mergeSpec.getTargetBranchRegex(), pse.getDescription());
+            return (null);
+        }
+    }
+
+    private static SafeRegex compileCombined(String combinedRegex, long stepBudget, AtomicLong budgetExceededCount) {
+        try {
+            return (SafeRegex.compile(combinedRegex, stepBudget, budgetExceededCount));
+        } catch (PatternSyntaxException pse) {
+            return (null);
+        }
+    }
+
+    private static class CompiledSpec {
+
+        private final SafeRegex branchRegex;
+        private final SafeRegex targetBranchRegex;
+
+        CompiledSpec(SafeRegex branchRegex, SafeRegex targetBranchRegex) {
+            this.branchRegex = branchRegex;
+            this.targetBranchRegex = targetBranchRegex;
+        }
+    }
+}
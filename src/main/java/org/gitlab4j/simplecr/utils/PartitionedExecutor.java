@@ -0,0 +1,242 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * An executor made up of a fixed number of single threaded lanes. Tasks are assigned to a lane by
+ * hashing a partition key, so tasks with the same key are always run in the order they were submitted,
+ * while tasks with different keys are spread over all the lanes and run in parallel.
+ */
+public class PartitionedExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedExecutor.class);
+
+    private final String name;
+    private final Lane[] lanes;
+    private final int laneQueueSize;
+    private final long latencyThreshold;
+
+    /**
+     * Creates a new PartitionedExecutor.
+     *
+     * @param name the name of the executor, used to name the lane threads
+     * @param numLanes the number of lanes (threads)
+     * @param laneQueueSize the maximum number of tasks that can be waiting in a lane
+     * @param latencyThreshold the number of milliseconds from submit to completion after which a task is reported as slow
+     */
+    public PartitionedExecutor(String name, int numLanes, int laneQueueSize, long latencyThreshold) {
+
+        this.name = name;
+        this.laneQueueSize = Math.max(1, laneQueueSize);
+        this.latencyThreshold = latencyThreshold;
+
+        lanes = new Lane[Math.max(1, numLanes)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i);
+        }
+    }
+
+    public int getNumLanes() {
+        return (lanes.length);
+    }
+
+    public int getLaneQueueSize() {
+        return (laneQueueSize);
+    }
+
+    public long getLatencyThreshold() {
+        return (latencyThreshold);
+    }
+
+    /**
+     * Gets the non-negative hash of a partition key, the lane for the key is the hash modulo the number
+     * of lanes. Storing the hash along with a task lets the tasks for a lane be looked up.
+     *
+     * @param partitionKey the partition key
+     * @return the partition hash for the partition key
+     */
+    public static int getPartitionHash(Object partitionKey) {
+        int hash = (partitionKey != null ? partitionKey.hashCode() : 0);
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the index of the lane that tasks with the specified partition key are run on.
+     *
+     * @param partitionKey the partition key
+     * @return the lane index for the partition key
+     */
+    public int getLaneIndex(Object partitionKey) {
+        return (getPartitionHash(partitionKey) % lanes.length);
+    }
+
+    /**
+     * Submits a task to the lane for the specified partition key.
+     *
+     * @param partitionKey the partition key
+     * @param task the task to run
+     * @return true if the task was queued, false if the lane is full
+     */
+    public boolean submit(Object partitionKey, Runnable task) {
+        return (submit(getLaneIndex(partitionKey), task));
+    }
+
+    /**
+     * Submits a task to the specified lane.
+     *
+     * @param laneIndex the index of the lane to run the task on
+     * @param task the task to run
+     * @return true if the task was queued, false if the lane is full
+     */
+    public boolean submit(int laneIndex, Runnable task) {
+        return (lanes[laneIndex].submit(task));
+    }
+
+    /**
+     * @return true if the executor has been shut down and no longer accepts tasks
+     */
+    public boolean isShutdown() {
+        return (lanes[0].executor.isShutdown());
+    }
+
+    /**
+     * Stops accepting tasks and waits for the queued tasks to finish.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return true if all the lanes finished, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+        for (Lane lane : lanes) {
+            long remaining = deadline - System.nanoTime();
+            if (!lane.executor.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+                lane.executor.shutdownNow();
+                terminated = false;
+            }
+        }
+
+        return (terminated);
+    }
+
+    /**
+     * @return the number of tasks waiting in all the lanes
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.executor.getQueue().size();
+        }
+
+        return (queued);
+    }
+
+    /**
+     * @return the configuration of the executor and the metrics for each of its lanes
+     */
+    public Map<String, Object> getMetrics() {
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("numLanes", lanes.length);
+        metrics.put("laneQueueSize", laneQueueSize);
+        metrics.put("latencyThresholdMs", latencyThreshold);
+
+        List<Map<String, Object>> laneMetrics = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            laneMetrics.add(lane.getMetrics());
+        }
+
+        metrics.put("lanes", laneMetrics);
+        return (metrics);
+    }
+
+    private class Lane {
+
+        private final int index;
+        private final ThreadPoolExecutor executor;
+
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong slow = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+        private final AtomicLong lastLatency = new AtomicLong();
+
+        Lane(int index) {
+            this.index = index;
+            executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(laneQueueSize),
+                    new CustomizableThreadFactory(name + "-lane-" + index + "-"));
+        }
+
+        boolean submit(Runnable task) {
+
+            long submittedAt = System.currentTimeMillis();
+            try {
+                executor.execute(() -> run(task, submittedAt));
+                return (true);
+            } catch (RejectedExecutionException ree) {
+                rejected.incrementAndGet();
+                return (false);
+            }
+        }
+
+        private void run(Runnable task, long submittedAt) {
+
+            try {
+                task.run();
+            } catch (RuntimeException re) {
+                logger.error("Unhandled exception in {} lane {}, error={}", name, index, re.getMessage(), re);
+            } finally {
+
+                long latency = System.currentTimeMillis() - submittedAt;
+                completed.incrementAndGet();
+                totalLatency.addAndGet(latency);
+                lastLatency.set(latency);
+                maxLatency.accumulateAndGet(latency, Math::max);
+
+                if (latencyThreshold > 0 && latency > latencyThreshold) {
+                    slow.incrementAndGet();
+                    logger.warn("Slow task in {} lane {}, latency={}ms, threshold={}ms, queued={}",
+                            name, index, latency, latencyThreshold, executor.getQueue().size());
+                }
+            }
+        }
+
+        Map<String, Object> getMetrics() {
+
+            long numCompleted = completed.get();
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("lane", index);
+            metrics.put("queued", executor.getQueue().size());
+            metrics.put("active", executor.getActiveCount() > 0);
+            metrics.put("completed", numCompleted);
+            metrics.put("rejected", rejected.get());
+            metrics.put("slow", slow.get());
+            metrics.put("lastLatencyMs", lastLatency.get());
+            metrics.put("avgLatencyMs", numCompleted > 0 ? totalLatency.get() / numCompleted : 0L);
+            metrics.put("maxLatencyMs", maxLatency.get());
+            return (metrics);
+        }
+    }
+}
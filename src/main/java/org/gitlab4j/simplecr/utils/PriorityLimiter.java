@@ -0,0 +1,251 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of concurrent holders of a resource, callers that can't be admitted straight away
+ * wait in a bounded queue. Waiting callers are admitted highest priority first, and in arrival order for
+ * the same priority. When the queue is full a caller displaces the lowest priority waiter if it has a
+ * higher priority, otherwise it is rejected. The concurrency limit may be changed while the limiter is
+ * in use, lowering it lets the callers in flight finish and admits no one until they are under the new limit.
+ */
+public class PriorityLimiter {
+
+    private final String name;
+    private int maxConcurrent;
+    private final int maxQueued;
+    private final int numPriorities;
+
+    private final PriorityQueue<Waiter> waiters;
+    private int inFlight;
+    private long sequence;
+
+    private final AtomicLong[] admittedCounts;
+    private final AtomicLong[] rejectedCounts;
+
+    /**
+     * Creates a new PriorityLimiter.
+     *
+     * @param name the name of the limiter, used in the metrics
+     * @param maxConcurrent the maximum number of concurrent holders
+     * @param maxQueued the maximum number of callers waiting to be admitted
+     * @param numPriorities the number of priorities, 0 is the lowest
+     */
+    public PriorityLimiter(String name, int maxConcurrent, int maxQueued, int numPriorities) {
+
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.numPriorities = Math.max(1, numPriorities);
+
+        waiters = new PriorityQueue<>(Comparator.comparingInt((Waiter waiter) -> -waiter.priority)
+                .thenComparingLong(waiter -> waiter.sequence));
+
+        admittedCounts = new AtomicLong[this.numPriorities];
+        rejectedCounts = new AtomicLong[this.numPriorities];
+        for (int i = 0; i < this.numPriorities; i++) {
+            admittedCounts[i] = new AtomicLong();
+            rejectedCounts[i] = new AtomicLong();
+        }
+    }
+
+    public String getName() {
+        return (name);
+    }
+
+    /**
+     * Acquires a permit, waiting up to maxWait milliseconds in the queue. A caller that acquires a
+     * permit must call {@link #release()} when done.
+     *
+     * @param priority the priority of the caller, 0 is the lowest
+     * @param maxWait the maximum number of milliseconds to wait for a permit
+     * @return true if a permit was acquired, false if the caller was rejected
+     */
+    public boolean acquire(int priority, long maxWait) {
+
+        priority = Math.min(Math.max(0, priority), numPriorities - 1);
+
+        Waiter waiter;
+        synchronized (this) {
+
+            if (inFlight < maxConcurrent && waiters.isEmpty()) {
+                inFlight++;
+                admittedCounts[priority].incrementAndGet();
+                return (true);
+            }
+
+            if (waiters.size() >= maxQueued && !displaceLowest(priority)) {
+                rejectedCounts[priority].incrementAndGet();
+                return (false);
+            }
+
+            waiter = new Waiter(priority, sequence++);
+            waiters.add(waiter);
+
+            long deadline = System.currentTimeMillis() + maxWait;
+            try {
+
+                long remaining = maxWait;
+                while (waiter.state == Waiter.WAITING && remaining > 0) {
+                    wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (waiter.state == Waiter.ADMITTED) {
+                admittedCounts[priority].incrementAndGet();
+                return (true);
+            }
+
+            waiters.remove(waiter);
+            rejectedCounts[priority].incrementAndGet();
+            return (false);
+        }
+    }
+
+    /**
+     * Acquires a permit without waiting. Callers below the highest priority are only admitted while
+     * more than reserved permits are free, leaving those for the highest priority callers. A caller
+     * that acquires a permit must call {@link #release()} when done.
+     *
+     * @param priority the priority of the caller, 0 is the lowest
+     * @param reserved the number of permits only the highest priority callers may take
+     * @return true if a permit was acquired, false if the caller was rejected
+     */
+    public boolean tryAcquire(int priority, int reserved) {
+
+        priority = Math.min(Math.max(0, priority), numPriorities - 1);
+        synchronized (this) {
+
+            int limit = (priority == numPriorities - 1 ? maxConcurrent : maxConcurrent - Math.max(0, reserved));
+            if (inFlight < limit && waiters.isEmpty()) {
+                inFlight++;
+                admittedCounts[priority].incrementAndGet();
+                return (true);
+            }
+
+            rejectedCounts[priority].incrementAndGet();
+            return (false);
+        }
+    }
+
+    /**
+     * Releases a permit, handing it to the highest priority waiter if there is one and the
+     * limiter is not over its concurrency limit.
+     */
+    public synchronized void release() {
+
+        if (inFlight <= maxConcurrent) {
+            Waiter waiter = waiters.poll();
+            if (waiter != null) {
+                waiter.state = Waiter.ADMITTED;
+                notifyAll();
+                return;
+            }
+        }
+
+        if (inFlight > 0) {
+            inFlight--;
+        }
+    }
+
+    public synchronized int getMaxConcurrent() {
+        return (maxConcurrent);
+    }
+
+    /**
+     * Changes the concurrency limit, admitting waiters if it was raised.
+     *
+     * @param maxConcurrent the new maximum number of concurrent holders
+     */
+    public synchronized void setMaxConcurrent(int maxConcurrent) {
+
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        boolean admitted = false;
+        while (inFlight < this.maxConcurrent && !waiters.isEmpty()) {
+            waiters.poll().state = Waiter.ADMITTED;
+            inFlight++;
+            admitted = true;
+        }
+
+        if (admitted) {
+            notifyAll();
+        }
+    }
+
+    private boolean displaceLowest(int priority) {
+
+        Waiter lowest = null;
+        for (Waiter waiter : waiters) {
+            if (lowest == null || waiter.priority < lowest.priority ||
+                    (waiter.priority == lowest.priority && waiter.sequence > lowest.sequence)) {
+                lowest = waiter;
+            }
+        }
+
+        if (lowest == null || lowest.priority >= priority) {
+            return (false);
+        }
+
+        waiters.remove(lowest);
+        lowest.state = Waiter.DISPLACED;
+        notifyAll();
+        return (true);
+    }
+
+    public synchronized int getInFlight() {
+        return (inFlight);
+    }
+
+    public synchronized int getQueued() {
+        return (waiters.size());
+    }
+
+    /**
+     * @return the in-flight and queued gauges, and the admitted and rejected counts by priority
+     */
+    public Map<String, Object> getMetrics() {
+
+        Map<String, Object> admitted = new LinkedHashMap<>();
+        Map<String, Object> rejected = new LinkedHashMap<>();
+        for (int i = 0; i < numPriorities; i++) {
+            admitted.put(String.valueOf(i), admittedCounts[i].get());
+            rejected.put(String.valueOf(i), rejectedCounts[i].get());
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("maxQueued", maxQueued);
+        synchronized (this) {
+            metrics.put("maxConcurrent", maxConcurrent);
+            metrics.put("inFlight", inFlight);
+            metrics.put("queued", waiters.size());
+        }
+
+        metrics.put("admitted", admitted);
+        metrics.put("rejected", rejected);
+        return (metrics);
+    }
+
+    private static class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int ADMITTED = 1;
+        private static final int DISPLACED = 2;
+
+        private final int priority;
+        private final long sequence;
+        private int state = WAITING;
+
+        Waiter(int priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
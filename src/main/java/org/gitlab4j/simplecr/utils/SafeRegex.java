@@ -0,0 +1,243 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.gitlab4j.simplecr.utils.LinearRegex.UnsupportedRegexException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compiled regex whose evaluation time is bounded. Regexes in the subset supported by LinearRegex are
+ * matched in linear time, all others are matched by java.util.regex against an input that aborts the
+ * match once the step budget is used up. A match that exceeds the budget is counted and treated as
+ * not matching.
+ */
+public final class SafeRegex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SafeRegex.class);
+
+    private final String regex;
+    private final LinearRegex linearRegex;
+    private final Pattern pattern;
+    private final long stepBudget;
+    private final AtomicLong budgetExceededCount;
+
+    private SafeRegex(String regex, LinearRegex linearRegex, Pattern pattern, long stepBudget, AtomicLong budgetExceededCount) {
+        this.regex = regex;
+        this.linearRegex = linearRegex;
+        this.pattern = pattern;
+        this.stepBudget = (stepBudget > 0 ? stepBudget : Long.MAX_VALUE);
+        this.budgetExceededCount = budgetExceededCount;
+    }
+
+    /**
+     * Compiles the regex.
+     *
+     * @param regex the regex to compile
+     * @param stepBudget the maximum number of steps a single match may take, 0 for no limit
+     * @param budgetExceededCount incremented each time a match exceeds the step budget
+     * @return the compiled SafeRegex
+     * @throws PatternSyntaxException if the regex is not valid
+     */
+    public static SafeRegex compile(String regex, long stepBudget, AtomicLong budgetExceededCount) {
+
+        Pattern pattern = Pattern.compile(regex);
+        LinearRegex linearRegex;
+        try {
+            linearRegex = LinearRegex.compile(regex);
+        } catch (UnsupportedRegexException ure) {
+            logger.debug("Regex is not supported by the linear-time matcher, regex={}, reason={}", regex, ure.getMessage());
+            linearRegex = null;
+        }
+
+        return (new SafeRegex(regex, linearRegex, pattern, stepBudget, budgetExceededCount));
+    }
+
+    public String getRegex() {
+        return (regex);
+    }
+
+    /**
+     * @return true if the regex is matched in linear time
+     */
+    public boolean isLinear() {
+        return (linearRegex != null);
+    }
+
+    /**
+     * Returns true if the regex matches the whole input within the step budget.
+     *
+     * @param input the input to match
+     * @return true if the regex matches the whole input within the step budget
+     */
+    public boolean matches(CharSequence input) {
+
+        if (linearRegex != null) {
+            int result = linearRegex.matches(input, stepBudget);
+            if (result < 0) {
+                onBudgetExceeded(input);
+            }
+
+            return (result > 0);
+        }
+
+        try {
+            return (pattern.matcher(new BudgetedCharSequence(input, stepBudget)).matches());
+        } catch (StepBudgetExceededException sbee) {
+            onBudgetExceeded(input);
+            return (false);
+        }
+    }
+
+    private void onBudgetExceeded(CharSequence input) {
+        budgetExceededCount.incrementAndGet();
+        logger.warn("Regex evaluation exceeded the step budget, regex={}, inputLength={}, stepBudget={}", regex, input.length(), stepBudget);
+    }
+
+    /**
+     * Checks whether the regex is safe to accept. A regex is accepted if it is valid and either is in the
+     * linear-time subset or has no quantified group that itself contains an unbounded quantifier, the
+     * shape that causes catastrophic backtracking, for example "(a+)+" or "(\w*\.?)*".
+     *
+     * @param regex the regex to check
+     * @return null if the regex is accepted, otherwise the reason it is rejected
+     */
+    public static String checkComplexity(String regex) {
+
+        if (regex == null || regex.isEmpty()) {
+            return ("regex is empty");
+        }
+
+        try {
+            Pattern.compile(regex);
+        } catch (PatternSyntaxException pse) {
+            return ("invalid regex: " + pse.getDescription());
+        }
+
+        try {
+            LinearRegex.compile(regex);
+            return (null);
+        } catch (UnsupportedRegexException ure) {
+            // Not in the linear-time subset, accept it unless it is prone to catastrophic backtracking
+        }
+
+        if (hasNestedQuantifier(regex)) {
+            return ("regex has a repeated group containing an unbounded quantifier and could take exponential time to match");
+        }
+
+        return (null);
+    }
+
+    /**
+     * Returns true if a group that is repeated without bound contains an unbounded quantifier.
+     */
+    private static boolean hasNestedQuantifier(String regex) {
+
+        Deque<Boolean> groups = new ArrayDeque<>();
+        boolean inClass = false;
+        int length = regex.length();
+        for (int i = 0; i < length; i++) {
+
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < length && regex.charAt(i + 1) == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    i = (end < 0 ? length : end + 1);
+                } else {
+                    i++;
+                }
+            } else if (inClass) {
+                inClass = (c != ']');
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                groups.push(Boolean.FALSE);
+            } else if (c == ')' && !groups.isEmpty()) {
+
+                boolean containsQuantifier = groups.pop();
+                boolean repeated = (i + 1 < length && isUnboundedQuantifier(regex, i + 1));
+                if (containsQuantifier && repeated) {
+                    return (true);
+                }
+
+                if ((containsQuantifier || repeated) && !groups.isEmpty()) {
+                    groups.pop();
+                    groups.push(Boolean.TRUE);
+                }
+            } else if (isUnboundedQuantifier(regex, i) && !groups.isEmpty()) {
+                groups.pop();
+                groups.push(Boolean.TRUE);
+            }
+        }
+
+        return (false);
+    }
+
+    private static boolean isUnboundedQuantifier(String regex, int index) {
+
+        char c = regex.charAt(index);
+        if (c == '*' || c == '+') {
+            return (true);
+        }
+
+        if (c != '{') {
+            return (false);
+        }
+
+        int end = regex.indexOf('}', index);
+        return (end > 0 && regex.charAt(end - 1) == ',');
+    }
+
+    private static class StepBudgetExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        StepBudgetExceededException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * A CharSequence that counts the characters read by the regex engine and aborts the match when
+     * the count exceeds the budget. Backtracking re-reads the input, so this bounds the work done.
+     */
+    private static class BudgetedCharSequence implements CharSequence {
+
+        private final CharSequence input;
+        private final long budget;
+        private long steps;
+
+        BudgetedCharSequence(CharSequence input, long budget) {
+            this.input = input;
+            this.budget = budget;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++steps > budget) {
+                throw new StepBudgetExceededException();
+            }
+
+            return (input.charAt(index));
+        }
+
+        @Override
+        public int length() {
+            return (input.length());
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return (input.subSequence(start, end));
+        }
+
+        @Override
+        public String toString() {
+            return (input.toString());
+        }
+    }
+}
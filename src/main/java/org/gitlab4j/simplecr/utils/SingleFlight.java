@@ -0,0 +1,89 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent identical calls. The first caller for a key runs the call, callers that arrive
+ * with the same key while it is in flight wait for it and share its result or exception. Once the call
+ * completes the next caller for the key starts a new call, nothing is cached.
+ *
+ * @param <K> the type of the keys that identify identical calls
+ */
+public class SingleFlight<K> {
+
+    /**
+     * A call that may throw a checked exception.
+     *
+     * @param <V> the type of the result
+     * @param <E> the type of the exception
+     */
+    @FunctionalInterface
+    public interface Call<V, E extends Exception> {
+        V call() throws E;
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong savedCount = new AtomicLong();
+
+    /**
+     * Runs the call, or waits for the in-flight call with the same key and returns its result.
+     * All the callers for a key must pass calls with the same result and exception types.
+     *
+     * @param key the key that identifies identical calls
+     * @param call the call to run
+     * @return the result of the call
+     * @throws E the exception thrown by the call
+     */
+    @SuppressWarnings("unchecked")
+    public <V, E extends Exception> V execute(K key, Call<V, E> call) throws E {
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+
+            savedCount.incrementAndGet();
+            try {
+                return ((V) existing.join());
+            } catch (CompletionException ce) {
+                Throwable cause = ce.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+
+                throw (E) cause;
+            }
+        }
+
+        executedCount.incrementAndGet();
+        try {
+            V result = call.call();
+            future.complete(result);
+            return (result);
+        } catch (Exception | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * @return the number of calls run, saved by sharing an in-flight call, and currently in flight
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("inFlight", inFlight.size());
+        metrics.put("executed", executedCount.get());
+        metrics.put("saved", savedCount.get());
+        return (metrics);
+    }
+}
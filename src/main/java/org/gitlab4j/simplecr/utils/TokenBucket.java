@@ -0,0 +1,111 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Paces calls to a rate. The bucket holds up to burst tokens and is refilled at the rate, each call
+ * takes a token and callers that find the bucket empty are told how long to wait for their token.
+ * The bucket can also be paused, for example when the server asks for calls to stop for a while.
+ */
+public class TokenBucket {
+
+    private final int burst;
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+    private long pausedUntil;
+
+    private final AtomicLong delayedCount = new AtomicLong();
+    private final AtomicLong delayTime = new AtomicLong();
+
+    /**
+     * Creates a new TokenBucket that starts full.
+     *
+     * @param rate the number of tokens added per second, 0 or less for no pacing
+     * @param burst the maximum number of tokens held
+     */
+    public TokenBucket(double rate, int burst) {
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.refilledAt = System.nanoTime();
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Takes a token, the caller must wait for the returned number of milliseconds before making its call.
+     *
+     * @return the number of milliseconds to wait before the call, 0 if it can be made now
+     */
+    public synchronized long reserve() {
+
+        long now = System.nanoTime();
+        refill(now);
+
+        long waitNanos = Math.max(0, pausedUntil - now);
+        if (rate > 0) {
+            tokens -= 1;
+            if (tokens < 0) {
+                waitNanos = Math.max(waitNanos, (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1)));
+            }
+        }
+
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        if (waitMs > 0) {
+            delayedCount.incrementAndGet();
+            delayTime.addAndGet(waitMs);
+        }
+
+        return (waitMs);
+    }
+
+    /**
+     * Stops handing out tokens that can be used before the pause is over.
+     *
+     * @param pause the number of milliseconds to pause for
+     */
+    public synchronized void pause(long pause) {
+        pausedUntil = Math.max(pausedUntil, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pause));
+    }
+
+    public synchronized double getRate() {
+        return (rate);
+    }
+
+    /**
+     * Changes the rate the bucket is refilled at.
+     *
+     * @param rate the number of tokens added per second, 0 or less for no pacing
+     */
+    public synchronized void setRate(double rate) {
+        refill(System.nanoTime());
+        this.rate = rate;
+    }
+
+    private void refill(long now) {
+        if (rate > 0) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+        }
+
+        refilledAt = now;
+    }
+
+    /**
+     * @return the rate, the burst, and the number and total milliseconds of delayed calls
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (this) {
+            metrics.put("rate", rate);
+            metrics.put("burst", burst);
+            metrics.put("pausedMs", Math.max(0, TimeUnit.NANOSECONDS.toMillis(pausedUntil - System.nanoTime())));
+        }
+
+        metrics.put("delayed", delayedCount.get());
+        metrics.put("delayMs", delayTime.get());
+        return (metrics);
+    }
+}
@@ -0,0 +1,233 @@
+package org.gitlab4j.simplecr.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size bounded cache whose entries expire after a time-to-live. When the cache is full the
+ * least recently used entry is evicted.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class TtlCache<K, V> {
+
+    private final long ttl;
+    private final int maxSize;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * Creates a new TtlCache.
+     *
+     * @param ttl the number of milliseconds an entry lives for
+     * @param maxSize the maximum number of entries to hold
+     */
+    public TtlCache(long ttl, int maxSize) {
+
+        this.ttl = ttl;
+        this.maxSize = Math.max(1, maxSize);
+
+        entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TtlCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return (true);
+                }
+
+                return (false);
+            }
+        };
+    }
+
+    public long getTtl() {
+        return (ttl);
+    }
+
+    public int getMaxSize() {
+        return (maxSize);
+    }
+
+    /**
+     * Gets the value for the key.
+     *
+     * @param key the key of the value to get
+     * @return the value for the key, or null if there is no value or it has expired
+     */
+    public synchronized V get(K key) {
+
+        Entry<V> entry = getEntry(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return (null);
+        }
+
+        hits.incrementAndGet();
+        return (entry.value);
+    }
+
+    /**
+     * Gets the value for the key without counting it as a hit or miss, for checking a cached value
+     * rather than serving it.
+     *
+     * @param key the key of the value to get
+     * @return the value for the key, or null if there is no value or it has expired
+     */
+    public synchronized V peek(K key) {
+        Entry<V> entry = getEntry(key);
+        return (entry != null ? entry.value : null);
+    }
+
+    /**
+     * Returns true if the cache holds an unexpired value for the key, does not count as a hit or miss.
+     *
+     * @param key the key to look for
+     * @return true if the cache holds an unexpired value for the key
+     */
+    public synchronized boolean containsKey(K key) {
+        return (getEntry(key) != null);
+    }
+
+    /**
+     * Puts the value for the key using the default time-to-live.
+     *
+     * @param key the key of the value
+     * @param value the value to cache
+     */
+    public void put(K key, V value) {
+        put(key, value, ttl);
+    }
+
+    /**
+     * Puts the value for the key.
+     *
+     * @param key the key of the value
+     * @param value the value to cache
+     * @param ttl the number of milliseconds the entry lives for
+     */
+    public synchronized void put(K key, V value, long ttl) {
+        entries.put(key, new Entry<V>(value, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Puts the value for the key if the cache does not already hold an unexpired value for it.
+     * Counts as a hit if a value is already present and as a miss otherwise.
+     *
+     * @param key the key of the value
+     * @param value the value to cache
+     * @return the value already held for the key, or null if the value was put
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+
+        Entry<V> entry = getEntry(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return (entry.value);
+        }
+
+        misses.incrementAndGet();
+        put(key, value);
+        return (null);
+    }
+
+    /**
+     * Removes the value for the key.
+     *
+     * @param key the key of the value to remove
+     * @return the removed value, or null if there was no unexpired value for the key
+     */
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return (entry != null && !entry.isExpired(System.currentTimeMillis()) ? entry.value : null);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return (entries.size());
+    }
+
+    /**
+     * Removes all the expired entries.
+     *
+     * @return the number of entries removed
+     */
+    public synchronized int removeExpired() {
+
+        int numRemoved = 0;
+        long now = System.currentTimeMillis();
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+                numRemoved++;
+            }
+        }
+
+        expirations.addAndGet(numRemoved);
+        return (numRemoved);
+    }
+
+    /**
+     * @return the size, configuration, and hit and miss counts of the cache
+     */
+    public Map<String, Object> getMetrics() {
+
+        long numHits = hits.get();
+        long numMisses = misses.get();
+        long numLookups = numHits + numMisses;
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size());
+        metrics.put("maxSize", maxSize);
+        metrics.put("ttlMs", ttl);
+        metrics.put("hits", numHits);
+        metrics.put("misses", numMisses);
+        metrics.put("hitRatio", numLookups > 0 ? (double) numHits / numLookups : 0.0);
+        metrics.put("evictions", evictions.get());
+        metrics.put("expirations", expirations.get());
+        return (metrics);
+    }
+
+    private Entry<V> getEntry(K key) {
+
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return (null);
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            expirations.incrementAndGet();
+            return (null);
+        }
+
+        return (entry);
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return (now >= expiresAt);
+        }
+    }
+}
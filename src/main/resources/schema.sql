@@ -39,3 +39,55 @@ CREATE TABLE IF NOT EXISTS merge_spec (
 	FOREIGN KEY (project_config_id) REFERENCES project_config(id) ON DELETE CASCADE);
 
 CREATE UNIQUE INDEX IF NOT EXISTS merge_spec_index ON merge_spec(project_id, branch_regex, target_branch_regex);
+
+
+CREATE TABLE IF NOT EXISTS webhook_queue (
+	id BIGINT AUTO_INCREMENT(1, 1) PRIMARY KEY,
+	received_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+	event_name VARCHAR(64) NOT NULL,
+	project_id INT,
+	branch VARCHAR(255),
+	secret_token VARCHAR(64),
+	payload CLOB NOT NULL,
+	attempts INT DEFAULT 0,
+	lane_hash INT,
+	lane INT);
+
+ALTER TABLE webhook_queue ADD COLUMN IF NOT EXISTS lane_hash INT;
+ALTER TABLE webhook_queue ADD COLUMN IF NOT EXISTS lane INT;
+
+DROP INDEX IF EXISTS webhook_queue_index;
+CREATE INDEX IF NOT EXISTS webhook_queue_lane_index ON webhook_queue(lane, id);
+
+
+CREATE TABLE IF NOT EXISTS webhook_delivery (
+	delivery_key VARCHAR(64) PRIMARY KEY,
+	received_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP);
+
+CREATE INDEX IF NOT EXISTS webhook_delivery_index ON webhook_delivery(received_at);
+
+
+CREATE TABLE IF NOT EXISTS review_snapshot (
+	link_key VARCHAR(512) PRIMARY KEY,
+	project_id INT NOT NULL,
+	branch VARCHAR(255) NOT NULL,
+	user_id INT NOT NULL,
+	created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+	validated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+	payload CLOB NOT NULL);
+
+CREATE INDEX IF NOT EXISTS review_snapshot_index ON review_snapshot(created_at);
+
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+	id BIGINT AUTO_INCREMENT(1, 1) PRIMARY KEY,
+	created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+	status VARCHAR(16) DEFAULT 'PENDING',
+	attempts INT DEFAULT 0,
+	next_attempt_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+	recipients CLOB NOT NULL,
+	subject VARCHAR(255) NOT NULL,
+	html_content CLOB NOT NULL,
+	last_error VARCHAR(1024));
+
+CREATE INDEX IF NOT EXISTS email_outbox_index ON email_outbox(status, next_attempt_at);
@@ -0,0 +1,158 @@
+package org.gitlab4j.simplecr.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gitlab4j.api.models.Project;
+import org.gitlab4j.api.models.User;
+import org.gitlab4j.api.utils.JacksonJson;
+import org.gitlab4j.simplecr.beans.AppResponse;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.MergeSpec;
+import org.gitlab4j.simplecr.model.ProjectConfig;
+import org.gitlab4j.simplecr.model.Push;
+import org.gitlab4j.simplecr.repository.PushRepository;
+import org.gitlab4j.simplecr.service.BranchIndexService;
+import org.gitlab4j.simplecr.service.IoExecutorService;
+import org.gitlab4j.simplecr.service.ProjectConfigService;
+import org.gitlab4j.simplecr.service.ProjectConfigSnapshotService;
+import org.gitlab4j.simplecr.service.ReviewSnapshotService;
+import org.gitlab4j.simplecr.service.UserDirectoryService;
+import org.gitlab4j.simplecr.utils.HashUtils;
+import org.gitlab4j.simplecr.utils.MergeSpecMatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Checks that /load answers with the same CodeReviewInfo whether its lookups are made one after the other
+ * or concurrently, with each GitLab lookup taking 10 to 30 ms and each database lookup 1 to 3 ms. The
+ * latency of each path is kept in the sequentialLoadLatency and concurrentLoadLatency metrics.
+ */
+public class CodeReviewLoadTest {
+
+    private static final int PROJECT_ID = 42;
+    private static final int USER_ID = 7;
+    private static final String BRANCH_NAME = "feature/load-latency";
+    private static final int NUM_LOADS = 10;
+
+    private CodeReviewController controller;
+    private SimpleCrConfiguration appConfig;
+    private IoExecutorService ioExecutorService;
+
+    @Before
+    public void setUp() throws Exception {
+
+        appConfig = new SimpleCrConfiguration();
+        ioExecutorService = new IoExecutorService();
+        ReflectionTestUtils.setField(ioExecutorService, "appConfig", appConfig);
+        ReflectionTestUtils.invokeMethod(ioExecutorService, "start");
+
+        ProjectConfig projectConfig = new ProjectConfig();
+        projectConfig.setId(1L);
+        projectConfig.setProjectId(PROJECT_ID);
+        MergeSpecMatcher matcher = new MergeSpecMatcher(Collections.singletonList(
+                new MergeSpec(projectConfig, PROJECT_ID, "feature/.*", "master")), 0, new AtomicLong());
+
+        ProjectConfigSnapshotService projectConfigSnapshot = mock(ProjectConfigSnapshotService.class);
+        when(projectConfigSnapshot.getProjectConfig(PROJECT_ID)).thenReturn(projectConfig);
+        when(projectConfigSnapshot.getMatcher(projectConfig)).thenReturn(matcher);
+
+        Project project = new Project();
+        project.setId(PROJECT_ID);
+        ProjectConfigService projectConfigService = mock(ProjectConfigService.class);
+        when(projectConfigService.getProject(PROJECT_ID)).thenAnswer(after(10, 30, project));
+
+        User user = new User();
+        user.setId(USER_ID);
+        user.setEmail("jdoe@example.com");
+        UserDirectoryService userDirectoryService = mock(UserDirectoryService.class);
+        when(userDirectoryService.getUser(USER_ID)).thenAnswer(after(10, 30, user));
+
+        BranchIndexService branchIndexService = mock(BranchIndexService.class);
+        when(branchIndexService.getTargetBranches(any(ProjectConfig.class), eq(BRANCH_NAME)))
+                .thenAnswer(after(10, 30, Collections.singletonList("master")));
+
+        Push push = new Push();
+        push.setProjectId(PROJECT_ID);
+        push.setUserId(USER_ID);
+        push.setBranch(BRANCH_NAME);
+        PushRepository pushRepository = mock(PushRepository.class);
+        when(pushRepository.findPendingReviews(anyInt(), anyInt(), anyString())).thenAnswer(after(1, 3, Collections.emptyList()));
+        when(pushRepository.find(anyInt(), anyInt(), anyString(), eq(0))).thenAnswer(after(1, 3, Collections.singletonList(push)));
+
+        controller = new CodeReviewController();
+        ReflectionTestUtils.setField(controller, "appConfig", appConfig);
+        ReflectionTestUtils.setField(controller, "ioExecutorService", ioExecutorService);
+        ReflectionTestUtils.setField(controller, "projectConfigSnapshot", projectConfigSnapshot);
+        ReflectionTestUtils.setField(controller, "projectConfigService", projectConfigService);
+        ReflectionTestUtils.setField(controller, "userDirectoryService", userDirectoryService);
+        ReflectionTestUtils.setField(controller, "branchIndexService", branchIndexService);
+        ReflectionTestUtils.setField(controller, "pushRepository", pushRepository);
+        ReflectionTestUtils.setField(controller, "reviewSnapshotService", mock(ReviewSnapshotService.class));
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(ioExecutorService, "stop");
+    }
+
+    @Test
+    public void testSequentialAndConcurrentLoadsMatch() throws Exception {
+
+        String signature = HashUtils.makeHash(HashUtils.SHORT_HASH, PROJECT_ID, BRANCH_NAME, USER_ID);
+
+        appConfig.setLoadFanOutEnabled(false);
+        String sequential = runLoads(signature);
+        appConfig.setLoadFanOutEnabled(true);
+        String concurrent = runLoads(signature);
+
+        assertEquals(sequential, concurrent);
+    }
+
+    /**
+     * Runs the loads and returns the CodeReviewInfo they all answered with, as JSON.
+     */
+    private String runLoads(String signature) throws Exception {
+
+        String codeReviewInfo = null;
+        for (int i = 0; i < NUM_LOADS; i++) {
+
+            AppResponse<?> response = controller.load(new MockHttpServletResponse(), PROJECT_ID, BRANCH_NAME, USER_ID, signature);
+            assertEquals(AppResponse.Status.OK, response.getStatus());
+            assertNotNull(response.getData());
+
+            String json = JacksonJson.toJsonString(response.getData());
+            if (codeReviewInfo != null) {
+                assertEquals(codeReviewInfo, json);
+            }
+
+            codeReviewInfo = json;
+        }
+
+        return (codeReviewInfo);
+    }
+
+    /**
+     * Answers with the result after a random latency between min and max milliseconds.
+     */
+    private static <T> Answer<T> after(int min, int max, T result) {
+        return (invocation -> {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(min, max + 1));
+            return (result);
+        });
+    }
+}
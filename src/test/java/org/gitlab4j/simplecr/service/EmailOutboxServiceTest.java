@@ -0,0 +1,211 @@
+package org.gitlab4j.simplecr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.OutboxEmail;
+import org.gitlab4j.simplecr.model.OutboxEmail.Status;
+import org.gitlab4j.simplecr.repository.EmailOutboxRepository;
+import org.gitlab4j.simplecr.utils.CircuitBreaker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Checks the state transitions of an outbox email: sent, retried with backoff, dead after the last attempt,
+ * and left pending without using an attempt when the SMTP circuit breaker turns it away.
+ */
+public class EmailOutboxServiceTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long OPEN_DURATION = 50;
+
+    private SimpleCrConfiguration appConfig;
+    private EmailOutboxRepository emailOutboxRepository;
+    private JavaMailSender emailSender;
+    private CircuitBreakerService circuitBreakerService;
+    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
+
+    @Before
+    public void setUp() {
+
+        appConfig = new SimpleCrConfiguration();
+        appConfig.setFromEmail("simple-cr@example.com");
+        appConfig.setFromName("Simple-CR");
+        appConfig.setEmailOutboxMaxAttempts(MAX_ATTEMPTS);
+        appConfig.setSmtpBreakerFailureThreshold(1);
+        appConfig.setSmtpBreakerOpenDuration(OPEN_DURATION);
+        appConfig.setBreakerHalfOpenProbes(1);
+
+        circuitBreakerService = new CircuitBreakerService();
+        ReflectionTestUtils.setField(circuitBreakerService, "appConfig", appConfig);
+        circuitBreakerService.createBreakers();
+
+        emailSender = mock(JavaMailSender.class);
+        when(emailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+
+        emailService = new EmailService();
+        ReflectionTestUtils.setField(emailService, "appConfig", appConfig);
+        ReflectionTestUtils.setField(emailService, "emailSender", emailSender);
+        ReflectionTestUtils.setField(emailService, "circuitBreakerService", circuitBreakerService);
+
+        emailOutboxRepository = mock(EmailOutboxRepository.class);
+        emailOutboxService = new EmailOutboxService();
+        ReflectionTestUtils.setField(emailOutboxService, "appConfig", appConfig);
+        ReflectionTestUtils.setField(emailOutboxService, "emailOutboxRepository", emailOutboxRepository);
+        ReflectionTestUtils.setField(emailOutboxService, "emailService", emailService);
+        ReflectionTestUtils.setField(emailOutboxService, "circuitBreakerService", circuitBreakerService);
+        emailOutboxService.start();
+    }
+
+    @After
+    public void tearDown() {
+        emailOutboxService.stop();
+    }
+
+    @Test
+    public void testPendingToSent() throws Exception {
+
+        OutboxEmail email = createEmail(1L);
+        emailOutboxService.enqueue(email);
+        assertEquals(Status.PENDING, email.getStatus());
+        assertEquals(0, email.getAttempts());
+        assertNotNull(email.getNextAttemptAt());
+        verify(emailOutboxRepository).save(email);
+
+        drain(email);
+        verify(emailSender).send(any(MimeMessage.class));
+        verify(emailOutboxRepository).delete(email);
+    }
+
+    @Test
+    public void testFailedSendIsRetried() throws Exception {
+
+        appConfig.setSmtpBreakerFailureThreshold(100);
+        circuitBreakerService.createBreakers();
+        doThrow(new MailSendException("Connection refused")).when(emailSender).send(any(MimeMessage.class));
+
+        OutboxEmail email = createEmail(1L);
+        emailOutboxService.enqueue(email);
+        long before = System.currentTimeMillis();
+        drain(email);
+
+        assertEquals(Status.PENDING, email.getStatus());
+        assertEquals(1, email.getAttempts());
+        assertEquals("Connection refused", email.getLastError());
+        assertTrue(email.getNextAttemptAt().getTime() >= before + appConfig.getEmailOutboxBackoff());
+        verify(emailOutboxRepository, never()).delete(email);
+    }
+
+    @Test
+    public void testLastFailedAttemptIsDead() throws Exception {
+
+        appConfig.setSmtpBreakerFailureThreshold(100);
+        circuitBreakerService.createBreakers();
+        doThrow(new MailSendException("Connection refused")).when(emailSender).send(any(MimeMessage.class));
+
+        OutboxEmail email = createEmail(1L);
+        emailOutboxService.enqueue(email);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            drain(email);
+            assertEquals(attempt, email.getAttempts());
+            assertEquals(attempt < MAX_ATTEMPTS ? Status.PENDING : Status.DEAD, email.getStatus());
+        }
+
+        verify(emailOutboxRepository, never()).delete(email);
+    }
+
+    @Test
+    public void testHalfOpenRejectionIsDeferred() throws Exception {
+
+        // Open the breaker with a failed send, which is a real attempt
+        doThrow(new MailSendException("Connection refused")).when(emailSender).send(any(MimeMessage.class));
+        OutboxEmail failed = createEmail(1L);
+        emailOutboxService.enqueue(failed);
+        drain(failed);
+        assertEquals(1, failed.getAttempts());
+
+        CircuitBreaker breaker = circuitBreakerService.getSmtpBreaker();
+        assertTrue(breaker.isOpen());
+        Thread.sleep(OPEN_DURATION * 2);
+
+        // Hold the half-open probe in flight, so the breaker is not open but turns other sends away
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return (null);
+        }).when(emailSender).send(any(MimeMessage.class));
+
+        Thread probe = new Thread(() -> {
+            try {
+                emailService.deliver(createEmail(2L));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        probe.start();
+        try {
+            assertTrue(sending.await(10, TimeUnit.SECONDS));
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+            OutboxEmail rejected = createEmail(3L);
+            emailOutboxService.enqueue(rejected);
+            drain(rejected);
+
+            assertEquals(Status.PENDING, rejected.getStatus());
+            assertEquals(0, rejected.getAttempts());
+            verify(emailOutboxRepository, never()).delete(rejected);
+            verify(emailOutboxRepository).save(rejected);
+            assertEquals(1L, emailOutboxService.getMetrics().get("deferred"));
+
+        } finally {
+            release.countDown();
+            probe.join();
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * Runs one drain of the outbox with the email as the only due email.
+     */
+    private void drain(OutboxEmail email) {
+        when(emailOutboxRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                eq(Status.PENDING), any(Date.class), any(Pageable.class))).thenReturn(Collections.singletonList(email));
+        emailOutboxService.drainOutbox();
+    }
+
+    private static OutboxEmail createEmail(long id) {
+        OutboxEmail email = new OutboxEmail();
+        email.setId(id);
+        email.setRecipients("jdoe@example.com");
+        email.setSubject("Your Branch Push");
+        email.setHtmlContent("<html><body>Review</body></html>");
+        return (email);
+    }
+}
@@ -0,0 +1,239 @@
+package org.gitlab4j.simplecr.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the GitLab API that answers each request after a simulated latency. Routes are
+ * matched against the path below /api/v4, a route that returns null is answered with a 404. Paths can
+ * also be set up to fail with an error status. The stub keeps the highest number of requests each route
+ * was answering at the same time.
+ */
+class GitLabStub implements AutoCloseable {
+
+    private static final String API_PREFIX = "/api/v4";
+
+    /**
+     * Answers a request to the stub.
+     */
+    @FunctionalInterface
+    interface Route {
+
+        /**
+         * @param path the matcher of the route pattern against the request path
+         * @param query the query parameters of the request
+         * @param responseHeaders the headers of the response, for the paging headers
+         * @return the JSON body of the response, or null to answer with a 404
+         */
+        String handle(Matcher path, Map<String, String> query, Headers responseHeaders);
+    }
+
+    private final long latency;
+    private final Map<Pattern, Route> routes = new LinkedHashMap<>();
+    private final Map<Pattern, Integer> failures = new LinkedHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final Map<String, AtomicInteger> activeCounts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> maxActiveCounts = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates and starts a stub listening on an ephemeral port.
+     *
+     * @param latency the number of milliseconds to wait before answering each request
+     * @throws IOException if the stub could not be started
+     */
+    GitLabStub(long latency) throws IOException {
+
+        this.latency = latency;
+        executor = Executors.newFixedThreadPool(64);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(API_PREFIX, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    GitLabStub route(String pathRegex, Route route) {
+        routes.put(Pattern.compile(pathRegex), route);
+        return (this);
+    }
+
+    /**
+     * Answers the requests whose path matches with an error status, ahead of the routes.
+     */
+    GitLabStub fail(String pathRegex, int status) {
+        failures.put(Pattern.compile(pathRegex), status);
+        return (this);
+    }
+
+    String getUrl() {
+        return ("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    long getRequestCount() {
+        return (requestCount.get());
+    }
+
+    /**
+     * Gets the highest number of requests to a route, or set up to fail, that were in progress at the same time.
+     *
+     * @param pathRegex the path regex the route or failure was added with
+     * @return the highest number of concurrent requests matching the path regex
+     */
+    int getMaxConcurrent(String pathRegex) {
+        AtomicInteger maxActive = maxActiveCounts.get(pathRegex);
+        return (maxActive != null ? maxActive.get() : 0);
+    }
+
+    /**
+     * Sets the paging headers the gitlab4j Pager reads for a page of a list.
+     */
+    static void setPageHeaders(Headers headers, int page, int perPage, int total) {
+        int totalPages = Math.max(1, (total + perPage - 1) / perPage);
+        headers.set("X-Page", String.valueOf(page));
+        headers.set("X-Per-Page", String.valueOf(perPage));
+        headers.set("X-Total", String.valueOf(total));
+        headers.set("X-Total-Pages", String.valueOf(totalPages));
+        headers.set("X-Next-Page", page < totalPages ? String.valueOf(page + 1) : "");
+        headers.set("X-Prev-Page", page > 1 ? String.valueOf(page - 1) : "");
+    }
+
+    /**
+     * Creates a GitLabClient that calls this stub, with no rate limit so the latency is what is measured.
+     */
+    GitLabClient createClient(SimpleCrConfiguration appConfig) {
+
+        appConfig.setGitLabRateLimit(0);
+
+        CircuitBreakerService circuitBreakerService = new CircuitBreakerService();
+        ReflectionTestUtils.setField(circuitBreakerService, "appConfig", appConfig);
+        circuitBreakerService.createBreakers();
+
+        GitLabClient gitLabClient = new GitLabClient();
+        ReflectionTestUtils.setField(gitLabClient, "appConfig", appConfig);
+        ReflectionTestUtils.setField(gitLabClient, "gitLabApi", new GitLabApi(getUrl(), "stub-token"));
+        ReflectionTestUtils.setField(gitLabClient, "circuitBreakerService", circuitBreakerService);
+        gitLabClient.createLimiters();
+        return (gitLabClient);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        requestCount.incrementAndGet();
+        String path = exchange.getRequestURI().getPath().substring(API_PREFIX.length());
+        String pathRegex = findPathRegex(path);
+        AtomicInteger active = (pathRegex != null ? activeCounts.computeIfAbsent(pathRegex, key -> new AtomicInteger()) : null);
+        if (active != null) {
+            int numActive = active.incrementAndGet();
+            maxActiveCounts.computeIfAbsent(pathRegex, key -> new AtomicInteger()).accumulateAndGet(numActive, Math::max);
+        }
+
+        try {
+
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+
+            respond(exchange, path);
+
+        } finally {
+            if (active != null) {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    private String findPathRegex(String path) {
+
+        for (Pattern pattern : failures.keySet()) {
+            if (pattern.matcher(path).matches()) {
+                return (pattern.pattern());
+            }
+        }
+
+        for (Pattern pattern : routes.keySet()) {
+            if (pattern.matcher(path).matches()) {
+                return (pattern.pattern());
+            }
+        }
+
+        return (null);
+    }
+
+    private void respond(HttpExchange exchange, String path) throws IOException {
+
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        int status = 404;
+        String body = null;
+        for (Map.Entry<Pattern, Integer> entry : failures.entrySet()) {
+            if (entry.getKey().matcher(path).matches()) {
+                status = entry.getValue();
+                break;
+            }
+        }
+
+        if (status == 404) {
+            for (Map.Entry<Pattern, Route> entry : routes.entrySet()) {
+                Matcher matcher = entry.getKey().matcher(path);
+                if (matcher.matches()) {
+                    body = entry.getValue().handle(matcher, query, exchange.getResponseHeaders());
+                    status = (body != null ? 200 : 404);
+                    break;
+                }
+            }
+        }
+
+        byte[] bytes = (body != null ? body : "{\"message\":\"" + status + " stub error\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+
+        Map<String, String> query = new LinkedHashMap<>();
+        if (rawQuery == null) {
+            return (query);
+        }
+
+        for (String param : rawQuery.split("&")) {
+            int index = param.indexOf('=');
+            String name = URLDecoder.decode(index >= 0 ? param.substring(0, index) : param, "UTF-8");
+            String value = (index >= 0 ? URLDecoder.decode(param.substring(index + 1), "UTF-8") : "");
+            query.put(name, value);
+        }
+
+        return (query);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,201 @@
+package org.gitlab4j.simplecr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+
+import org.gitlab4j.api.Pager;
+import org.gitlab4j.api.models.Member;
+import org.gitlab4j.api.models.User;
+import org.gitlab4j.simplecr.config.SimpleCrConfiguration;
+import org.gitlab4j.simplecr.model.ProjectConfig;
+import org.gitlab4j.simplecr.model.ProjectConfig.MailToType;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.Headers;
+
+/**
+ * Checks ReviewerResolutionService against a GitLab stub that answers every call after a fixed latency,
+ * comparing the resolved emails with the sequential member-by-member lookup it replaced.
+ */
+public class ReviewerResolutionServiceTest {
+
+    private static final int GROUP_ID = 12;
+    private static final int NUM_MEMBERS = 200;
+    private static final int PAGE_SIZE = 50;
+    private static final int CONCURRENCY = 4;
+    private static final long LATENCY = 10;
+    private static final String USER_PATH = "/users/(\\d+)";
+
+    @Test
+    public void testGroupMembers() throws Exception {
+
+        try (GitLabStub stub = createStub()) {
+
+            SimpleCrConfiguration appConfig = createConfig();
+            GitLabClient gitLabClient = stub.createClient(appConfig);
+            Set<String> expected = resolveSequentially(gitLabClient, createUserDirectory(appConfig, gitLabClient));
+            assertEquals(NUM_MEMBERS, expected.size());
+            assertEquals(1, stub.getMaxConcurrent(USER_PATH));
+
+            ReviewerResolutionService resolver = createResolver(appConfig, gitLabClient);
+            try {
+                Set<String> emails = resolver.getMemberEmails(createProjectConfig(), GROUP_ID);
+                assertEquals(expected, emails);
+
+                // The members are looked up in parallel, never more at a time than the configured concurrency
+                int maxConcurrent = stub.getMaxConcurrent(USER_PATH);
+                assertTrue("maxConcurrent=" + maxConcurrent, maxConcurrent > 1 && maxConcurrent <= CONCURRENCY);
+
+                // The complete set is memoized, the next resolution makes no calls
+                long requestCount = stub.getRequestCount();
+                assertEquals(emails, resolver.getMemberEmails(createProjectConfig(), GROUP_ID));
+                assertEquals(requestCount, stub.getRequestCount());
+
+            } finally {
+                resolver.stop();
+            }
+        }
+    }
+
+    @Test
+    public void testPartialSetIsNotMemoized() throws Exception {
+
+        try (GitLabStub stub = createStub()) {
+
+            stub.fail("/users/7", 500);
+            SimpleCrConfiguration appConfig = createConfig();
+            ReviewerResolutionService resolver = createResolver(appConfig, stub.createClient(appConfig));
+            try {
+                Set<String> emails = resolver.getMemberEmails(createProjectConfig(), GROUP_ID);
+                assertEquals(NUM_MEMBERS - 1, emails.size());
+                assertFalse(emails.contains(email(7)));
+
+                // The failed member is looked up again by the next resolution
+                long requestCount = stub.getRequestCount();
+                resolver.getMemberEmails(createProjectConfig(), GROUP_ID);
+                assertTrue(stub.getRequestCount() > requestCount);
+
+            } finally {
+                resolver.stop();
+            }
+        }
+    }
+
+    @Test
+    public void testMissingMemberIsMemoized() throws Exception {
+
+        try (GitLabStub stub = createStub()) {
+
+            stub.fail("/users/7", 404);
+            SimpleCrConfiguration appConfig = createConfig();
+            ReviewerResolutionService resolver = createResolver(appConfig, stub.createClient(appConfig));
+            try {
+                Set<String> emails = resolver.getMemberEmails(createProjectConfig(), GROUP_ID);
+                assertEquals(NUM_MEMBERS - 1, emails.size());
+
+                long requestCount = stub.getRequestCount();
+                assertEquals(emails, resolver.getMemberEmails(createProjectConfig(), GROUP_ID));
+                assertEquals(requestCount, stub.getRequestCount());
+
+            } finally {
+                resolver.stop();
+            }
+        }
+    }
+
+    /**
+     * The lookup the resolver replaced, one page and one member at a time.
+     */
+    private static Set<String> resolveSequentially(GitLabClient gitLabClient, UserDirectoryService userDirectoryService) throws Exception {
+
+        Set<String> emails = new TreeSet<>();
+        Pager<Member> pager = gitLabClient.getGroupMembers(GROUP_ID, PAGE_SIZE);
+        while (pager.hasNext()) {
+            for (Member member : gitLabClient.nextPage(pager)) {
+                Optional<User> user = userDirectoryService.getOptionalUser(member.getId());
+                if (user.isPresent() && user.get().getEmail() != null) {
+                    emails.add(user.get().getEmail());
+                }
+            }
+        }
+
+        return (emails);
+    }
+
+    private static GitLabStub createStub() throws Exception {
+
+        GitLabStub stub = new GitLabStub(LATENCY);
+        stub.route("/groups/" + GROUP_ID + "/members", ReviewerResolutionServiceTest::membersPage);
+        stub.route(USER_PATH, (path, query, headers) -> {
+            int userId = Integer.parseInt(path.group(1));
+            return ("{\"id\":" + userId + ",\"username\":\"u" + userId + "\",\"name\":\"User " + userId
+                    + "\",\"email\":\"" + email(userId) + "\",\"state\":\"active\"}");
+        });
+
+        return (stub);
+    }
+
+    private static String membersPage(Matcher path, Map<String, String> query, Headers headers) {
+
+        int page = Integer.parseInt(query.getOrDefault("page", "1"));
+        int perPage = Integer.parseInt(query.getOrDefault("per_page", String.valueOf(PAGE_SIZE)));
+        GitLabStub.setPageHeaders(headers, page, perPage, NUM_MEMBERS);
+
+        StringBuilder json = new StringBuilder("[");
+        int first = (page - 1) * perPage + 1;
+        for (int userId = first; userId < first + perPage && userId <= NUM_MEMBERS; userId++) {
+            if (userId > first) {
+                json.append(',');
+            }
+
+            json.append("{\"id\":").append(userId).append(",\"username\":\"u").append(userId)
+                .append("\",\"name\":\"User ").append(userId).append("\",\"state\":\"active\",\"access_level\":30}");
+        }
+
+        return (json.append(']').toString());
+    }
+
+    private static String email(int userId) {
+        return ("u" + userId + "@example.com");
+    }
+
+    private static SimpleCrConfiguration createConfig() {
+        SimpleCrConfiguration appConfig = new SimpleCrConfiguration();
+        appConfig.setReviewerPageSize(PAGE_SIZE);
+        appConfig.setReviewerResolutionConcurrency(CONCURRENCY);
+        return (appConfig);
+    }
+
+    private static ProjectConfig createProjectConfig() {
+        ProjectConfig projectConfig = new ProjectConfig();
+        projectConfig.setId(1L);
+        projectConfig.setProjectId(42);
+        projectConfig.setMailToType(MailToType.GROUP);
+        return (projectConfig);
+    }
+
+    private static UserDirectoryService createUserDirectory(SimpleCrConfiguration appConfig, GitLabClient gitLabClient) {
+        UserDirectoryService userDirectoryService = new UserDirectoryService();
+        ReflectionTestUtils.setField(userDirectoryService, "appConfig", appConfig);
+        ReflectionTestUtils.setField(userDirectoryService, "gitLabClient", gitLabClient);
+        userDirectoryService.createCache();
+        return (userDirectoryService);
+    }
+
+    private static ReviewerResolutionService createResolver(SimpleCrConfiguration appConfig, GitLabClient gitLabClient) {
+        ReviewerResolutionService resolver = new ReviewerResolutionService();
+        ReflectionTestUtils.setField(resolver, "appConfig", appConfig);
+        ReflectionTestUtils.setField(resolver, "gitLabClient", gitLabClient);
+        ReflectionTestUtils.setField(resolver, "userDirectoryService", createUserDirectory(appConfig, gitLabClient));
+        resolver.start();
+        return (resolver);
+    }
+}
@@ -0,0 +1,200 @@
+package org.gitlab4j.simplecr.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.gitlab4j.api.GitLabApiException;
+import org.gitlab4j.api.webhook.PushEvent;
+import org.gitlab4j.api.webhook.WebHookListener;
+import org.gitlab4j.api.webhook.WebHookManager;
+import org.gitlab4j.simplecr.beans.HookEvent;
+import org.gitlab4j.simplecr.beans.MergeRequestHookEvent;
+import org.gitlab4j.simplecr.beans.PushHookEvent;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * Compares HookEventParser against the WebHookManager path it replaced, using large push payloads
+ * with 20 commits, each carrying a long message and added/modified/removed file lists.
+ */
+public class HookEventParserBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(HookEventParserBenchmarkTest.class);
+
+    private static final int NUM_COMMITS = 20;
+    private static final int NUM_FILES_PER_COMMIT = 50;
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int ITERATIONS = 5000;
+
+    @Test
+    public void testParsePush() throws Exception {
+
+        PushHookEvent pushEvent = (PushHookEvent) HookEventParser.parse(buildPushPayload());
+        assertEquals(Integer.valueOf(42), pushEvent.getProjectId());
+        assertEquals(Integer.valueOf(7), pushEvent.getUserId());
+        assertEquals("jdoe", pushEvent.getUserUsername());
+        assertEquals("jdoe@example.com", pushEvent.getUserEmail());
+        assertEquals("refs/heads/feature/large-push", pushEvent.getRef());
+        assertEquals("feature/large-push", pushEvent.getBranch());
+        assertEquals(sha(0), pushEvent.getBefore());
+        assertEquals(sha(NUM_COMMITS), pushEvent.getAfter());
+        assertEquals("group/project", pushEvent.getProjectPathWithNamespace());
+    }
+
+    @Test
+    public void testParseMergeRequest() throws Exception {
+
+        MergeRequestHookEvent mergeRequestEvent = (MergeRequestHookEvent) HookEventParser.parse(buildMergeRequestPayload("2019-05-01T10:15:30Z"));
+        assertEquals(Integer.valueOf(99), mergeRequestEvent.getMergeRequestId());
+        assertEquals(Integer.valueOf(3), mergeRequestEvent.getIid());
+        assertEquals(Integer.valueOf(42), mergeRequestEvent.getTargetProjectId());
+        assertEquals("feature/large-push", mergeRequestEvent.getSourceBranch());
+        assertEquals("merged", mergeRequestEvent.getState());
+        assertEquals(Integer.valueOf(7), mergeRequestEvent.getUserId());
+        assertEquals(1556705730000L, mergeRequestEvent.getUpdatedAt().getTime());
+    }
+
+    @Test
+    public void testParseMalformedDate() throws Exception {
+        MergeRequestHookEvent mergeRequestEvent = (MergeRequestHookEvent) HookEventParser.parse(buildMergeRequestPayload("not a date"));
+        assertNull(mergeRequestEvent.getUpdatedAt());
+        assertEquals("feature/large-push", mergeRequestEvent.getSourceBranch());
+    }
+
+    @Test
+    public void benchmarkParsePush() throws Exception {
+
+        String payload = buildPushPayload();
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+
+        AtomicReference<PushHookEvent> parsed = new AtomicReference<>();
+        WebHookManager webHookManager = new WebHookManager();
+        webHookManager.addListener(new WebHookListener() {
+            @Override
+            public void onPushEvent(PushEvent pushEvent) {
+                parsed.set(PushHookEvent.from(pushEvent));
+            }
+        });
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            parseWithWebHookManager(webHookManager, body);
+            HookEventParser.parse(payload);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parseWithWebHookManager(webHookManager, body);
+        }
+        long webHookManagerNanos = System.nanoTime() - start;
+
+        HookEvent hookEvent = null;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            hookEvent = HookEventParser.parse(payload);
+        }
+        long parserNanos = System.nanoTime() - start;
+
+        // Both paths must produce the same compact event
+        PushHookEvent expected = parsed.get();
+        PushHookEvent actual = (PushHookEvent) hookEvent;
+        assertEquals(expected.getProjectId(), actual.getProjectId());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getUserUsername(), actual.getUserUsername());
+        assertEquals(expected.getUserEmail(), actual.getUserEmail());
+        assertEquals(expected.getRef(), actual.getRef());
+        assertEquals(expected.getBranch(), actual.getBranch());
+        assertEquals(expected.getBefore(), actual.getBefore());
+        assertEquals(expected.getAfter(), actual.getAfter());
+        assertEquals(expected.getProjectPathWithNamespace(), actual.getProjectPathWithNamespace());
+
+        logger.info("Push payload of {} bytes, {} iterations: WebHookManager={} us/op, HookEventParser={} us/op",
+                body.length, ITERATIONS, webHookManagerNanos / 1000 / ITERATIONS, parserNanos / 1000 / ITERATIONS);
+    }
+
+    private static void parseWithWebHookManager(WebHookManager webHookManager, byte[] body) throws GitLabApiException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/webhook");
+        request.addHeader("X-Gitlab-Event", "Push Hook");
+        request.setContentType("application/json");
+        request.setContent(body);
+        webHookManager.handleEvent(request);
+    }
+
+    private static String sha(int n) {
+        return (String.format("%040x", n + 1));
+    }
+
+    private static String buildPushPayload() {
+
+        StringBuilder json = new StringBuilder(256 * 1024);
+        json.append("{\"object_kind\":\"push\",\"event_name\":\"push\",")
+            .append("\"before\":\"").append(sha(0)).append("\",")
+            .append("\"after\":\"").append(sha(NUM_COMMITS)).append("\",")
+            .append("\"ref\":\"refs/heads/feature/large-push\",")
+            .append("\"checkout_sha\":\"").append(sha(NUM_COMMITS)).append("\",")
+            .append("\"user_id\":7,\"user_name\":\"John Doe\",\"user_username\":\"jdoe\",")
+            .append("\"user_email\":\"jdoe@example.com\",\"user_avatar\":\"https://example.com/avatar.png\",")
+            .append("\"project_id\":42,")
+            .append("\"project\":{\"id\":42,\"name\":\"project\",\"description\":\"A project\",")
+            .append("\"web_url\":\"https://gitlab.example.com/group/project\",\"namespace\":\"group\",")
+            .append("\"path_with_namespace\":\"group/project\",\"default_branch\":\"master\",")
+            .append("\"git_ssh_url\":\"git@gitlab.example.com:group/project.git\",")
+            .append("\"git_http_url\":\"https://gitlab.example.com/group/project.git\",\"visibility_level\":0},")
+            .append("\"commits\":[");
+
+        for (int i = 1; i <= NUM_COMMITS; i++) {
+
+            if (i > 1) {
+                json.append(',');
+            }
+
+            json.append("{\"id\":\"").append(sha(i)).append("\",\"message\":\"");
+            for (int line = 0; line < 20; line++) {
+                json.append("Commit ").append(i).append(" line ").append(line).append(" describing the change in some detail\\n");
+            }
+
+            json.append("\",\"timestamp\":\"2019-05-01T10:15:30Z\",")
+                .append("\"url\":\"https://gitlab.example.com/group/project/commit/").append(sha(i)).append("\",")
+                .append("\"author\":{\"name\":\"John Doe\",\"email\":\"jdoe@example.com\"},");
+            appendFiles(json, "added", i);
+            json.append(',');
+            appendFiles(json, "modified", i);
+            json.append(',');
+            appendFiles(json, "removed", i);
+            json.append('}');
+        }
+
+        json.append("],\"total_commits_count\":").append(NUM_COMMITS).append(",")
+            .append("\"repository\":{\"name\":\"project\",\"url\":\"git@gitlab.example.com:group/project.git\",")
+            .append("\"description\":\"A project\",\"homepage\":\"https://gitlab.example.com/group/project\"}}");
+        return (json.toString());
+    }
+
+    private static void appendFiles(StringBuilder json, String name, int commit) {
+
+        json.append('"').append(name).append("\":[");
+        for (int i = 0; i < NUM_FILES_PER_COMMIT; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+
+            json.append("\"src/main/java/org/example/module").append(commit).append("/").append(name).append("/File").append(i).append(".java\"");
+        }
+
+        json.append(']');
+    }
+
+    private static String buildMergeRequestPayload(String updatedAt) {
+        return ("{\"object_kind\":\"merge_request\","
+                + "\"user\":{\"id\":7,\"name\":\"John Doe\",\"username\":\"jdoe\",\"email\":\"jdoe@example.com\"},"
+                + "\"project\":{\"id\":42,\"name\":\"project\",\"namespace\":\"group\",\"path_with_namespace\":\"group/project\"},"
+                + "\"object_attributes\":{\"id\":99,\"iid\":3,\"target_project_id\":42,\"source_branch\":\"feature/large-push\","
+                + "\"author_id\":7,\"state\":\"merged\",\"merge_status\":\"can_be_merged\",\"updated_at\":\"" + updatedAt + "\","
+                + "\"description\":\"A long description\",\"labels\":[{\"id\":1,\"title\":\"bug\"}]},"
+                + "\"changes\":{\"state\":{\"previous\":\"opened\",\"current\":\"merged\"}}}");
+    }
+}
@@ -0,0 +1,199 @@
+package org.gitlab4j.simplecr.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.gitlab4j.simplecr.utils.LinearRegex.UnsupportedRegexException;
+import org.junit.Test;
+
+/**
+ * Checks LinearRegex against java.util.regex, which it must agree with for every regex it compiles.
+ * The \uD83D\uDE00 pairs are supplementary characters (emoji), which take two chars but one code point.
+ */
+public class LinearRegexTest {
+
+    private static final String[] ATOMS = {
+        "a", "b", "/", "-", "\uD83D\uDE00", ".", "\\d", "\\D", "\\w", "\\W", "\\s", "\\S", "\\n", "\\.",
+        "[ab]", "[^a]", "[a-c]", "[^\\n]", "[\\s/]", "[\uD83D\uDE00-\uD83D\uDE02]", "^", "$"
+    };
+
+    private static final String[] QUANTIFIERS = {
+        "*", "+", "?", "{2}", "{0,2}", "{1,}", "*?", "+?", "??", "{0}"
+    };
+
+    private static final String[] INPUT_CHARS = {
+        "a", "b", "/", "-", "1", " ", "\n", "\r", "\uD83D\uDE00", "\uD83D\uDE01", "\uD83D"
+    };
+
+    private static final int NUM_REGEXES = 3000;
+    private static final int NUM_INPUTS = 40;
+
+    @Test
+    public void testSupplementaryCharacters() throws Exception {
+
+        assertMatchesLikeJava("feature/.", "feature/\uD83D\uDE00");
+        assertMatchesLikeJava("a.b", "a\uD83D\uDE00b");
+        assertMatchesLikeJava("a..b", "a\uD83D\uDE00b");
+        assertMatchesLikeJava("a[^x]b", "a\uD83D\uDE00b");
+        assertMatchesLikeJava("a\\Wb", "a\uD83D\uDE00b");
+        assertMatchesLikeJava("\uD83D\uDE00+", "\uD83D\uDE00\uD83D\uDE00");
+        assertMatchesLikeJava("[\uD83D\uDE00-\uD83D\uDE02]", "\uD83D\uDE01");
+        assertTrue(LinearRegex.compile("feature/.").matches("feature/\uD83D\uDE00"));
+        assertFalse(LinearRegex.compile("a..b").matches("a\uD83D\uDE00b"));
+    }
+
+    @Test
+    public void testStackedQuantifiersAreUnsupported() {
+        assertUnsupported("a*{0}");
+        assertUnsupported("\\D{2,}{2,}");
+        assertUnsupported("a+*");
+        assertUnsupported("a*??");
+        assertUnsupported("(a*)*{2}");
+    }
+
+    @Test
+    public void testQuantifiedAnchorIsUnsupported() {
+        assertUnsupported("^*a");
+        assertUnsupported("(^|b){2}");
+        assertUnsupported("(?:a$)?");
+    }
+
+    @Test
+    public void testEndAnchorFollowedByLineTerminatorIsUnsupported() throws Exception {
+
+        assertUnsupported("a$\\n");
+        assertUnsupported("a$\\s");
+        assertUnsupported("a$[^x]");
+        assertUnsupported("a$(b|\\n)");
+        assertUnsupported("(a$|b)\\S*\\n");
+
+        // Nothing after the $ can consume a line terminator, the END instruction agrees with java.util.regex
+        assertMatchesLikeJava("a$", "a\n");
+        assertMatchesLikeJava("a$.*", "a");
+        assertMatchesLikeJava("(a$|b)c", "bc");
+        assertTrue(LinearRegex.compile("a$b*").matches("a"));
+    }
+
+    @Test
+    public void testFallbackToJavaRegex() {
+
+        SafeRegex safeRegex = SafeRegex.compile("a$\\n", 0, new AtomicLong());
+        assertFalse(safeRegex.isLinear());
+        assertEquals(Pattern.matches("a$\\n", "a\n"), safeRegex.matches("a\n"));
+
+        safeRegex = SafeRegex.compile("\\D{2,}{2,}", 0, new AtomicLong());
+        assertFalse(safeRegex.isLinear());
+        assertEquals(Pattern.matches("\\D{2,}{2,}", "abc"), safeRegex.matches("abc"));
+    }
+
+    @Test
+    public void testDifferentialAgainstJavaRegex() {
+
+        Random random = new Random(20190501L);
+        int numCompared = 0;
+        for (int i = 0; i < NUM_REGEXES; i++) {
+
+            String regex = randomRegex(random, 3);
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(regex);
+            } catch (PatternSyntaxException pse) {
+                continue;
+            }
+
+            LinearRegex linearRegex;
+            try {
+                linearRegex = LinearRegex.compile(regex);
+            } catch (UnsupportedRegexException ure) {
+                continue;
+            }
+
+            for (int j = 0; j < NUM_INPUTS; j++) {
+                String input = randomInput(random);
+                boolean expected = pattern.matcher(input).matches();
+                if (linearRegex.matches(input) != expected) {
+                    fail("regex=" + escape(regex) + ", input=" + escape(input) + ", java.util.regex=" + expected);
+                }
+            }
+
+            numCompared++;
+        }
+
+        // Most of the generated regexes are in the supported subset
+        assertTrue(numCompared > NUM_REGEXES / 2);
+    }
+
+    private static String randomRegex(Random random, int depth) {
+
+        StringBuilder regex = new StringBuilder();
+        int numItems = 1 + random.nextInt(4);
+        for (int i = 0; i < numItems; i++) {
+
+            if (depth > 0 && random.nextInt(5) == 0) {
+                regex.append(random.nextBoolean() ? "(" : "(?:").append(randomRegex(random, depth - 1));
+                if (random.nextInt(3) == 0) {
+                    regex.append('|').append(randomRegex(random, depth - 1));
+                }
+
+                regex.append(')');
+            } else {
+                regex.append(ATOMS[random.nextInt(ATOMS.length)]);
+            }
+
+            if (random.nextInt(3) == 0) {
+                regex.append(QUANTIFIERS[random.nextInt(QUANTIFIERS.length)]);
+            }
+        }
+
+        if (random.nextInt(6) == 0) {
+            regex.append('|').append(randomRegex(random, depth - 1));
+        }
+
+        return (regex.toString());
+    }
+
+    private static String randomInput(Random random) {
+
+        StringBuilder input = new StringBuilder();
+        int length = random.nextInt(7);
+        for (int i = 0; i < length; i++) {
+            input.append(INPUT_CHARS[random.nextInt(INPUT_CHARS.length)]);
+        }
+
+        return (input.toString());
+    }
+
+    private static void assertMatchesLikeJava(String regex, String input) throws UnsupportedRegexException {
+        assertEquals(escape(regex) + " vs " + escape(input), Pattern.matches(regex, input), LinearRegex.compile(regex).matches(input));
+    }
+
+    private static void assertUnsupported(String regex) {
+        try {
+            LinearRegex.compile(regex);
+            fail("expected UnsupportedRegexException for " + escape(regex));
+        } catch (UnsupportedRegexException expected) {
+        }
+    }
+
+    private static String escape(String s) {
+
+        StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < ' ' || c > '~') {
+                escaped.append(String.format("\\u%04X", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+
+        return (escaped.toString());
+    }
+}
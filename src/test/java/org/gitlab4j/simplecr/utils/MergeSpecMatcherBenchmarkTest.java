@@ -0,0 +1,199 @@
+package org.gitlab4j.simplecr.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gitlab4j.simplecr.model.MergeSpec;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares MergeSpecMatcher against the String.matches() loop over the merge specs it replaced, for
+ * both the "does this branch trigger a review" check and the target branch list built by /load. The
+ * results must agree, the timings are only logged.
+ */
+public class MergeSpecMatcherBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MergeSpecMatcherBenchmarkTest.class);
+
+    private static final int NUM_SPECS = 20;
+    private static final int NUM_BRANCHES = 500;
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    public void testMatches() {
+
+        MergeSpecMatcher matcher = new MergeSpecMatcher(buildMergeSpecs(), 0, new AtomicLong());
+        assertTrue(matcher.isCombined());
+        assertTrue(matcher.matches("feature3/login-page"));
+        assertTrue(matcher.matches("release/1.2.3"));
+        assertFalse(matcher.matches("master"));
+        assertFalse(matcher.matches("scratch/feature3"));
+    }
+
+    @Test
+    public void testGroupReferenceIsNotCombined() {
+
+        List<MergeSpec> mergeSpecs = buildMergeSpecs();
+        mergeSpecs.add(new MergeSpec(null, 42, "(a+)-\\1", "master"));
+        MergeSpecMatcher matcher = new MergeSpecMatcher(mergeSpecs, 0, new AtomicLong());
+        assertFalse(matcher.isCombined());
+        assertTrue(matcher.matches("aa-aa"));
+        assertFalse(matcher.matches("aa-a"));
+        assertTrue(matcher.matches("feature3/login-page"));
+    }
+
+    @Test
+    public void testInvalidRegexNeverMatches() {
+
+        List<MergeSpec> mergeSpecs = new ArrayList<>();
+        mergeSpecs.add(new MergeSpec(null, 42, "feature/(", "master"));
+        MergeSpecMatcher matcher = new MergeSpecMatcher(mergeSpecs, 0, new AtomicLong());
+        assertEquals(0, matcher.getNumSpecs());
+        assertFalse(matcher.matches("feature/("));
+    }
+
+    @Test
+    public void benchmarkMergeSpecs() {
+
+        List<MergeSpec> mergeSpecs = buildMergeSpecs();
+        List<String> branchNames = buildBranchNames();
+        MergeSpecMatcher matcher = new MergeSpecMatcher(mergeSpecs, 0, new AtomicLong());
+
+        for (String branchName : branchNames) {
+            assertEquals(branchName, matchesWithLoop(mergeSpecs, branchName), matcher.matches(branchName));
+            assertEquals(branchName, getTargetBranchesWithLoop(mergeSpecs, branchName, branchNames),
+                    matcher.getTargetBranches(branchName, branchNames));
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runLoop(mergeSpecs, branchNames);
+            runMatcher(matcher, branchNames);
+        }
+
+        long start = System.nanoTime();
+        int loopCount = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            loopCount += runLoop(mergeSpecs, branchNames);
+        }
+        long loopNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int matcherCount = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            matcherCount += runMatcher(matcher, branchNames);
+        }
+        long matcherNanos = System.nanoTime() - start;
+
+        assertEquals(loopCount, matcherCount);
+        logger.info("{} specs x {} branches, {} iterations: String.matches loop={} us/op, MergeSpecMatcher={} us/op",
+                NUM_SPECS, NUM_BRANCHES, ITERATIONS, loopNanos / 1000 / ITERATIONS, matcherNanos / 1000 / ITERATIONS);
+    }
+
+    /**
+     * One push check for every branch, plus the /load target list for every tenth branch.
+     */
+    private static int runLoop(List<MergeSpec> mergeSpecs, List<String> branchNames) {
+
+        int count = 0;
+        for (int i = 0; i < branchNames.size(); i++) {
+            String branchName = branchNames.get(i);
+            if (matchesWithLoop(mergeSpecs, branchName)) {
+                count++;
+            }
+
+            if (i % 10 == 0) {
+                count += getTargetBranchesWithLoop(mergeSpecs, branchName, branchNames).size();
+            }
+        }
+
+        return (count);
+    }
+
+    private static int runMatcher(MergeSpecMatcher matcher, List<String> branchNames) {
+
+        int count = 0;
+        for (int i = 0; i < branchNames.size(); i++) {
+            String branchName = branchNames.get(i);
+            if (matcher.matches(branchName)) {
+                count++;
+            }
+
+            if (i % 10 == 0) {
+                count += matcher.getTargetBranches(branchName, branchNames).size();
+            }
+        }
+
+        return (count);
+    }
+
+    private static boolean matchesWithLoop(List<MergeSpec> mergeSpecs, String branchName) {
+
+        for (MergeSpec mergeSpec : mergeSpecs) {
+            if (branchName.matches(mergeSpec.getBranchRegex())) {
+                return (true);
+            }
+        }
+
+        return (false);
+    }
+
+    private static List<String> getTargetBranchesWithLoop(List<MergeSpec> mergeSpecs, String branchName, List<String> branchNames) {
+
+        List<String> targetBranches = new ArrayList<>();
+        for (MergeSpec mergeSpec : mergeSpecs) {
+            if (branchName.matches(mergeSpec.getBranchRegex())) {
+                for (String name : branchNames) {
+                    if (name.matches(mergeSpec.getTargetBranchRegex())) {
+                        targetBranches.add(name);
+                    }
+                }
+            }
+        }
+
+        return (targetBranches);
+    }
+
+    private static List<MergeSpec> buildMergeSpecs() {
+
+        List<MergeSpec> mergeSpecs = new ArrayList<>();
+        for (int i = 0; i < NUM_SPECS - 1; i++) {
+            mergeSpecs.add(new MergeSpec(null, 42, "feature" + i + "/.*", "(develop|release/" + i + "\\..*)"));
+        }
+
+        mergeSpecs.add(new MergeSpec(null, 42, "release/[0-9]+\\.[0-9]+\\.[0-9]+", "master"));
+        return (mergeSpecs);
+    }
+
+    private static List<String> buildBranchNames() {
+
+        List<String> branchNames = new ArrayList<>();
+        branchNames.add("master");
+        branchNames.add("develop");
+        for (int i = 0; branchNames.size() < NUM_BRANCHES; i++) {
+            switch (i % 4) {
+            case 0:
+                branchNames.add("feature" + (i % (NUM_SPECS + 5)) + "/topic-" + i);
+                break;
+            case 1:
+                branchNames.add("release/" + (i % NUM_SPECS) + "." + (i % 7) + "." + i);
+                break;
+            case 2:
+                branchNames.add("bugfix/issue-" + i);
+                break;
+            default:
+                branchNames.add("users/jdoe/scratch-" + i);
+                break;
+            }
+        }
+
+        return (branchNames);
+    }
+}